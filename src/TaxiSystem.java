@@ -1,6 +1,17 @@
 import dispatcher.Dispatcher;
+import dispatcher.OrderQueue;
+import events.EventBus;
+import events.HistoryConsumer;
+import events.JournalConsumer;
+import events.StatisticsConsumer;
+import export.HistoryExporter;
 import generator.ClientGenerator;
+import jfr.FlightRecording;
+import journal.EventJournal;
+import metrics.MetricsServer;
 import model.*;
+import recovery.RecoveryManager;
+import recovery.StateProjection;
 import statistics.Statistics;
 import statistics.RideHistory;
 import taxi.Taxi;
@@ -23,24 +34,35 @@ public class TaxiSystem {
     private static final long CLIENT_GENERATION_INTERVAL_MS = 2000;
     private static final int TOTAL_REQUESTS = 50;
     private static final int ORDER_QUEUE_CAPACITY = 100;
+    private static final String LATENCY_FILE_PROPERTY = "taxi.latency.file";
+    private static final String METRICS_PORT_PROPERTY = "taxi.metrics.port";
+    private static final int DEFAULT_METRICS_PORT = 9404;
 
-    private final PriorityBlockingQueue<RideRequest> orderQueue;
+    private final OrderQueue orderQueue;
     private final ConcurrentHashMap<Integer, BlockingQueue<RideRequest>> taxiQueues;
     private final List<Taxi> taxiFleet;
     private final ExecutorService executorService;
     private final Statistics statistics;
     private final RideHistory history;
+    private final EventBus eventBus;
 
     private Dispatcher dispatcher;
     private ClientGenerator clientGenerator;
+    private MetricsServer metricsServer;
+    private FlightRecording flightRecording;
+    private EventJournal journal;
+    private HistoryExporter exporter;
+    private RecoveryManager recoveryManager;
+    private StateProjection recoveredState;
 
     public TaxiSystem() {
-        this.orderQueue = new PriorityBlockingQueue<>(ORDER_QUEUE_CAPACITY);
+        this.orderQueue = new OrderQueue(ORDER_QUEUE_CAPACITY);
         this.taxiQueues = new ConcurrentHashMap<>();
         this.taxiFleet = new ArrayList<>();
         this.executorService = Executors.newCachedThreadPool();
         this.statistics = new Statistics();
         this.history = new RideHistory();
+        this.eventBus = new EventBus();
 
         setupLogging();
     }
@@ -85,9 +107,9 @@ public class TaxiSystem {
         int taxiId = 1;
 
         for (int i = 0; i < ECONOMY_TAXIS; i++) {
-            Point initialLocation = new Point(random.nextDouble() * 100, random.nextDouble() * 100);
+            Point initialLocation = initialLocation(taxiId, random);
             BlockingQueue<RideRequest> taxiQueue = new LinkedBlockingQueue<>();
-            Taxi taxi = new Taxi(taxiId, TaxiType.ECONOMY, initialLocation, taxiQueue, statistics, history);
+            Taxi taxi = new Taxi(taxiId, TaxiType.ECONOMY, initialLocation, taxiQueue, statistics, eventBus);
 
             taxiFleet.add(taxi);
             taxiQueues.put(taxiId, taxiQueue);
@@ -95,9 +117,9 @@ public class TaxiSystem {
         }
 
         for (int i = 0; i < COMFORT_TAXIS; i++) {
-            Point initialLocation = new Point(random.nextDouble() * 100, random.nextDouble() * 100);
+            Point initialLocation = initialLocation(taxiId, random);
             BlockingQueue<RideRequest> taxiQueue = new LinkedBlockingQueue<>();
-            Taxi taxi = new Taxi(taxiId, TaxiType.COMFORT, initialLocation, taxiQueue, statistics, history);
+            Taxi taxi = new Taxi(taxiId, TaxiType.COMFORT, initialLocation, taxiQueue, statistics, eventBus);
 
             taxiFleet.add(taxi);
             taxiQueues.put(taxiId, taxiQueue);
@@ -105,9 +127,9 @@ public class TaxiSystem {
         }
 
         for (int i = 0; i < PREMIUM_TAXIS; i++) {
-            Point initialLocation = new Point(random.nextDouble() * 100, random.nextDouble() * 100);
+            Point initialLocation = initialLocation(taxiId, random);
             BlockingQueue<RideRequest> taxiQueue = new LinkedBlockingQueue<>();
-            Taxi taxi = new Taxi(taxiId, TaxiType.PREMIUM, initialLocation, taxiQueue, statistics, history);
+            Taxi taxi = new Taxi(taxiId, TaxiType.PREMIUM, initialLocation, taxiQueue, statistics, eventBus);
 
             taxiFleet.add(taxi);
             taxiQueues.put(taxiId, taxiQueue);
@@ -123,6 +145,22 @@ public class TaxiSystem {
         LOGGER.info("║        СИСТЕМА УПРАВЛЕНИЯ БЕСПИЛОТНЫМИ ТАКСИ v1.0              ║");
         LOGGER.info("╚════════════════════════════════════════════════════════════════╝");
 
+        flightRecording = FlightRecording.startIfRequested();
+
+        eventBus.addConsumer(new StatisticsConsumer(statistics));
+        eventBus.addConsumer(new HistoryConsumer(history));
+
+        journal = EventJournal.openIfRequested();
+        if (journal != null) {
+            recoverState();
+            eventBus.addConsumer(new JournalConsumer(journal));
+        }
+        exporter = HistoryExporter.openIfRequested();
+        if (exporter != null) {
+            eventBus.addConsumer(exporter);
+        }
+        eventBus.start();
+
         initializeTaxiFleet();
 
         LOGGER.info("Запуск такси...");
@@ -130,18 +168,90 @@ public class TaxiSystem {
             executorService.execute(taxi);
         }
 
+        if (recoveredState != null) {
+            restorePendingOrders();
+        }
+
         LOGGER.info("Запуск диспетчера...");
-        dispatcher = new Dispatcher(orderQueue, taxiFleet, taxiQueues, statistics, history);
+        dispatcher = new Dispatcher(orderQueue, taxiFleet, taxiQueues, statistics, eventBus);
         executorService.execute(dispatcher);
 
         LOGGER.info(String.format("Запуск генератора клиентов (интервал: %d мс, всего заказов: %d)...",
                 CLIENT_GENERATION_INTERVAL_MS, TOTAL_REQUESTS));
-        clientGenerator = new ClientGenerator(orderQueue, CLIENT_GENERATION_INTERVAL_MS, TOTAL_REQUESTS, history);
+        clientGenerator = new ClientGenerator(orderQueue, CLIENT_GENERATION_INTERVAL_MS, TOTAL_REQUESTS, eventBus);
         executorService.execute(clientGenerator);
 
+        startMetricsServer();
+
+        if (recoveryManager != null) {
+            recoveryManager.startCheckpoints();
+        }
+
         LOGGER.info("Система успешно запущена!");
     }
 
+    private void recoverState() {
+        recoveryManager = new RecoveryManager(journal);
+        try {
+            recoveredState = recoveryManager.recover();
+        } catch (IOException e) {
+            LOGGER.warning("Не удалось восстановить состояние из журнала: " + e.getMessage());
+            return;
+        }
+
+        RideRequest.reserveIdsUpTo(recoveredState.getMaxOrderId());
+        statistics.restoreTotals(
+                recoveredState.getRidesCompleted(),
+                recoveredState.getOrdersAssigned(),
+                recoveredState.getOrdersFailed(),
+                recoveredState.getTotalDistance(),
+                recoveredState.getTotalRevenue());
+    }
+
+    private Point initialLocation(int taxiId, Random random) {
+        Point recovered = recoveredState != null ? recoveredState.getTaxiLocation(taxiId) : null;
+        return recovered != null ? recovered : new Point(random.nextDouble() * 100, random.nextDouble() * 100);
+    }
+
+    private void restorePendingOrders() {
+        int queued = 0;
+        int resumed = 0;
+
+        for (StateProjection.PendingOrder order : recoveredState.getPendingOrders()) {
+            RideRequest request = RideRequest.restore(order.getOrderId(), order.getPickup(),
+                    order.getDestination(), order.getPriority(), order.getClientName());
+
+            BlockingQueue<RideRequest> taxiQueue = order.getStage() != StateProjection.OrderStage.QUEUED
+                    ? taxiQueues.get(order.getTaxiId())
+                    : null;
+            if (taxiQueue != null && taxiQueue.offer(request)) {
+                resumed++;
+            } else {
+                orderQueue.offer(request);
+                queued++;
+            }
+        }
+
+        LOGGER.info(String.format("Восстановлено заказов: в очереди %d, переданы прежним такси %d",
+                queued, resumed));
+    }
+
+    private void startMetricsServer() {
+        int port = Integer.getInteger(METRICS_PORT_PROPERTY, DEFAULT_METRICS_PORT);
+        if (port <= 0) {
+            return;
+        }
+
+        metricsServer = new MetricsServer(statistics, taxiFleet, eventBus, port);
+        try {
+            metricsServer.start();
+        } catch (IOException e) {
+            LOGGER.warning(String.format("Не удалось запустить сервер метрик на порту %d: %s",
+                    port, e.getMessage()));
+            metricsServer = null;
+        }
+    }
+
     public void shutdown() {
         LOGGER.info("\nНачало завершения работы системы...");
 
@@ -180,6 +290,30 @@ public class TaxiSystem {
             Thread.currentThread().interrupt();
         }
 
+        boolean consumersStopped = eventBus.shutdown();
+
+        if (exporter != null && consumersStopped) {
+            exporter.close();
+        }
+
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
+
+        if (flightRecording != null) {
+            flightRecording.stop();
+            flightRecording = null;
+        }
+
+        if (journal != null && consumersStopped) {
+            if (recoveryManager != null) {
+                recoveryManager.close();
+                recoveryManager = null;
+            }
+            journal.close();
+            journal = null;
+        }
+
         LOGGER.info("Все потоки завершены");
 
         printFinalStatistics();
@@ -195,12 +329,27 @@ public class TaxiSystem {
         System.out.println("\n\n");
         statistics.printSummary();
         statistics.printTaxiStats();
+        statistics.printSlowestOrders();
+        saveLatencies();
 
         System.out.println("\n╔════════════════════════════════════════════════════════════════╗");
         System.out.println("║              СИСТЕМА УСПЕШНО ЗАВЕРШИЛА РАБОТУ                  ║");
         System.out.println("╚════════════════════════════════════════════════════════════════╝\n");
     }
 
+    private void saveLatencies() {
+        String latencyFile = System.getProperty(LATENCY_FILE_PROPERTY);
+        if (latencyFile == null || latencyFile.isEmpty()) {
+            return;
+        }
+
+        try {
+            statistics.mergeLatenciesInto(java.nio.file.Paths.get(latencyFile));
+        } catch (IOException e) {
+            LOGGER.warning("Не удалось сохранить гистограммы задержек: " + e.getMessage());
+        }
+    }
+
     public static void main(String[] args) {
         TaxiSystem system = new TaxiSystem();
 
@@ -0,0 +1,131 @@
+package benchmark;
+
+import dispatcher.OrderQueue;
+import events.EventBus;
+import model.Point;
+import model.TaxiType;
+import statistics.Statistics;
+import model.TaxiState;
+import taxi.Taxi;
+import ui.CityMapPanel;
+import ui.FleetMotion;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Время отрисовки кадра карты без экрана: панель рисуется в BufferedImage
+ * размером с окно, для каждого размера парка — весь город и приближение
+ * к центру, по последним точкам такси и в режиме анимации, где все машины
+ * одновременно в пути. Запуск:
+ * java -Djava.awt.headless=true -cp bin benchmark.MapRenderBenchmark [кадров] [такси...]
+ */
+public class MapRenderBenchmark {
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 800;
+    private static final int WARMUP_FRAMES = 50;
+    private static final double[] ZOOMS = {1, 8};
+
+    private final int frames;
+
+    public MapRenderBenchmark(int frames) {
+        this.frames = frames;
+    }
+
+    public void run(int taxis) {
+        Statistics statistics = new Statistics();
+        List<Taxi> fleet = createFleet(taxis, statistics);
+        CityMapPanel panel = new CityMapPanel(fleet, new OrderQueue(16), statistics.getHeatmap());
+        panel.setMotion(createMotion(fleet));
+        panel.setSize(WIDTH, HEIGHT);
+        for (boolean animated : new boolean[]{false, true}) {
+            panel.setAnimated(animated);
+            for (double zoom : ZOOMS) {
+                panel.showArea(50, 50, zoom);
+                measure(panel, taxis, zoom, animated);
+            }
+        }
+        panel.setAnimated(false);
+    }
+
+    private void measure(CityMapPanel panel, int taxis, double zoom, boolean animated) {
+        BufferedImage frame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            paint(panel, frame);
+        }
+
+        long[] samples = new long[frames];
+        for (int i = 0; i < frames; i++) {
+            long started = System.nanoTime();
+            paint(panel, frame);
+            samples[i] = System.nanoTime() - started;
+        }
+        java.util.Arrays.sort(samples);
+
+        long total = 0;
+        for (long sample : samples) {
+            total += sample;
+        }
+        System.out.printf("Такси: %6d, масштаб ×%-2.0f, %-9s | кадр: среднее %8.3f мс, медиана %8.3f мс, p99 %8.3f мс%n",
+                taxis, zoom, animated ? "анимация" : "точки",
+                total / (double) frames / 1_000_000,
+                samples[frames / 2] / 1_000_000.0,
+                samples[Math.min(frames - 1, (int) (frames * 0.99))] / 1_000_000.0);
+    }
+
+    private static void paint(CityMapPanel panel, BufferedImage frame) {
+        Graphics2D g2d = frame.createGraphics();
+        try {
+            panel.paint(g2d);
+        } finally {
+            g2d.dispose();
+        }
+    }
+
+    private static List<Taxi> createFleet(int taxis, Statistics statistics) {
+        Random random = new Random(42);
+        EventBus eventBus = new EventBus(2);
+        TaxiType[] types = TaxiType.values();
+        List<Taxi> fleet = new ArrayList<>(taxis);
+        for (int id = 1; id <= taxis; id++) {
+            Point location = new Point(random.nextDouble() * 100, random.nextDouble() * 100);
+            fleet.add(new Taxi(id, types[id % types.length], location, new LinkedBlockingQueue<>(),
+                    statistics, eventBus));
+        }
+        return fleet;
+    }
+
+    private static FleetMotion createMotion(List<Taxi> fleet) {
+        Random random = new Random(7);
+        FleetMotion motion = new FleetMotion();
+        long now = System.nanoTime();
+        long hour = 3_600_000_000_000L;
+        for (Taxi taxi : fleet) {
+            Point target = new Point(random.nextDouble() * 100, random.nextDouble() * 100);
+            motion.legStarted(taxi.getId(), TaxiState.TRANSPORTING, taxi.getCurrentLocation(), target,
+                    now, now + hour);
+        }
+        return motion;
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int[] sizes = {10, 1_000, 10_000, 100_000};
+        if (args.length > 1) {
+            sizes = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                sizes[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        MapRenderBenchmark benchmark = new MapRenderBenchmark(frames);
+        for (int taxis : sizes) {
+            benchmark.run(taxis);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package benchmark;
+
+import journal.EventJournal;
+import journal.JournalReader;
+import model.HistoryEvent;
+import model.Point;
+import model.TaxiType;
+import recovery.CheckpointStore;
+import recovery.RecoveryManager;
+import recovery.StateProjection;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Время перезапуска при 1 млн событий в журнале: полный повтор журнала
+ * против загрузки контрольной точки и повтора только хвоста. Запуск:
+ * java -cp bin benchmark.RecoveryBenchmark [событий] [событий_после_точки]
+ */
+public class RecoveryBenchmark {
+    private static final int TAXIS = 100;
+    private static final int LIFECYCLE_SPREAD = 250;
+
+    private final long events;
+    private final long tailEvents;
+    private final Path directory;
+
+    public RecoveryBenchmark(long events, long tailEvents) throws IOException {
+        this.events = events;
+        this.tailEvents = tailEvents;
+        this.directory = Files.createTempDirectory("taxi-recovery");
+    }
+
+    public void run() throws IOException {
+        try {
+            long writeNanos = writeJournal();
+            System.out.printf("Записано событий: %d за %d мс%n", events, TimeUnit.NANOSECONDS.toMillis(writeNanos));
+
+            for (int attempt = 1; attempt <= 3; attempt++) {
+                long fullReplay = measureFullReplay();
+                long checkpointRestart = measureCheckpointRestart();
+                System.out.printf("Попытка %d: полный повтор журнала %d мс, контрольная точка + хвост %d мс%n",
+                        attempt, TimeUnit.NANOSECONDS.toMillis(fullReplay),
+                        TimeUnit.NANOSECONDS.toMillis(checkpointRestart));
+            }
+        } finally {
+            deleteDirectory();
+        }
+    }
+
+    private long writeJournal() throws IOException {
+        Random random = new Random(42);
+        StateProjection projection = new StateProjection();
+        CheckpointStore checkpoints = new CheckpointStore(directory);
+        long checkpointAt = events - tailEvents;
+        long started = System.nanoTime();
+
+        try (EventJournal journal = EventJournal.open(directory, 64 * 1024 * 1024, 1000)) {
+            journal.setListener(projection);
+            long written = 0;
+            for (long order = 1; written < events; order++) {
+                for (int step = 0; step < 4 && written < events; step++) {
+                    HistoryEvent event = lifecycleEvent(order - (long) step * LIFECYCLE_SPREAD, step, random);
+                    if (event != null) {
+                        journal.append(event);
+                        written++;
+                        if (written == checkpointAt) {
+                            checkpoints.save(projection, journal);
+                        }
+                    }
+                }
+            }
+        }
+        return System.nanoTime() - started;
+    }
+
+    private static HistoryEvent lifecycleEvent(long orderId, int step, Random random) {
+        if (orderId <= 0) {
+            return null;
+        }
+        int taxiId = (int) (orderId % TAXIS) + 1;
+        double distance = 1 + random.nextDouble() * 20;
+        long now = System.currentTimeMillis() * 1_000_000L;
+
+        switch (step) {
+            case 0:
+                return new HistoryEvent(now, HistoryEvent.EventType.ORDER_CREATED, orderId, HistoryEvent.NO_TAXI,
+                        "Клиент-" + orderId, distance, 0, random.nextInt(3),
+                        new Point(random.nextDouble() * 100, random.nextDouble() * 100),
+                        new Point(random.nextDouble() * 100, random.nextDouble() * 100));
+            case 1:
+                return new HistoryEvent(now, HistoryEvent.EventType.ORDER_ASSIGNED, orderId, taxiId,
+                        "Клиент-" + orderId, distance, 0, TaxiType.ECONOMY.ordinal());
+            case 2:
+                return new HistoryEvent(now, HistoryEvent.EventType.RIDE_STARTED, orderId, taxiId,
+                        "Клиент-" + orderId, distance, distance * 10, 0);
+            default:
+                return new HistoryEvent(now, HistoryEvent.EventType.RIDE_COMPLETED, orderId, taxiId,
+                        "Клиент-" + orderId, distance, distance * 10, 0);
+        }
+    }
+
+    private long measureFullReplay() throws IOException {
+        long started = System.nanoTime();
+        StateProjection projection = new StateProjection();
+        try (JournalReader reader = JournalReader.open(directory)) {
+            while (reader.next()) {
+                if (reader.isGap()) {
+                    projection.onGap(reader.getSequence(), reader.getMissedEvents());
+                } else {
+                    projection.onAppend(reader.getSequence(), reader.getEvent());
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - started;
+        check(projection);
+        return elapsed;
+    }
+
+    private long measureCheckpointRestart() throws IOException {
+        long started = System.nanoTime();
+        StateProjection projection;
+        try (EventJournal journal = EventJournal.open(directory, 64 * 1024 * 1024, 1000)) {
+            RecoveryManager recovery = new RecoveryManager(journal);
+            projection = recovery.recover();
+            journal.setListener(null);
+        }
+        long elapsed = System.nanoTime() - started;
+        check(projection);
+        return elapsed;
+    }
+
+    private void check(StateProjection projection) {
+        if (projection.getLastSequence() != events - 1) {
+            throw new IllegalStateException("Восстановлено до события " + projection.getLastSequence()
+                    + ", ожидалось " + (events - 1));
+        }
+    }
+
+    private void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        long events = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        long tail = args.length > 1 ? Long.parseLong(args[1]) : 10_000;
+        new RecoveryBenchmark(events, tail).run();
+    }
+}
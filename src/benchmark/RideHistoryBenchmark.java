@@ -0,0 +1,158 @@
+package benchmark;
+
+import model.HistoryEvent;
+import statistics.RideHistory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Сравнение кольцевого буфера RideHistory с прежней реализацией на
+ * ConcurrentLinkedDeque. Запуск:
+ * java -cp bin benchmark.RideHistoryBenchmark [секунд_замера] [ёмкость]
+ */
+public class RideHistoryBenchmark {
+    private static final int[] WRITER_COUNTS = {1, 4, 16};
+    private static final int WARMUP_SECONDS = 2;
+    private static final int RECENT_READS = 20_000;
+
+    private final int measureSeconds;
+    private final int capacity;
+    private final HistoryEvent event;
+
+    public RideHistoryBenchmark(int measureSeconds, int capacity) {
+        this.measureSeconds = measureSeconds;
+        this.capacity = capacity;
+        this.event = HistoryEvent.rideStarted(HistoryEvent.currentEpochNanos(), 1, 7, "Клиент-1", 10, 250);
+    }
+
+    public void run() throws InterruptedException {
+        System.out.printf("Ёмкость истории: %d, замер: %d с, прогрев: %d с%n",
+                capacity, measureSeconds, WARMUP_SECONDS);
+        System.out.printf("%-14s %8s %16s %18s%n", "Реализация", "Потоки", "добавлений/с", "getRecent(50), мкс");
+
+        for (int writers : WRITER_COUNTS) {
+            measure("deque", writers, LegacyDequeHistory::new);
+            measure("ring buffer", writers, n -> new RingHistory(new RideHistory(n)));
+        }
+    }
+
+    private void measure(String name, int writers, IntFunction<History> factory) throws InterruptedException {
+        History warmup = factory.apply(capacity);
+        runWriters(warmup, writers, WARMUP_SECONDS);
+
+        History history = factory.apply(capacity);
+        long appended = runWriters(history, writers, measureSeconds);
+        double recentMicros = measureRecentReads(history);
+
+        System.out.printf("%-14s %8d %16.0f %18.2f%n",
+                name, writers, appended / (double) measureSeconds, recentMicros);
+    }
+
+    private long runWriters(History history, int writers, int seconds) throws InterruptedException {
+        LongAdder appended = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Thread> threads = new ArrayList<>(writers);
+
+        for (int i = 0; i < writers; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                long local = 0;
+                while ((local & 1023) != 0 || System.nanoTime() < deadline) {
+                    history.add(event);
+                    local++;
+                }
+                appended.add(local);
+            }, "Writer-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return appended.sum();
+    }
+
+    private double measureRecentReads(History history) {
+        long sink = 0;
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < RECENT_READS; i++) {
+            sink += history.recent(50).size();
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        if (sink < 0) {
+            System.out.println(sink);
+        }
+        return elapsed / 1000.0 / RECENT_READS;
+    }
+
+    private interface History {
+        void add(HistoryEvent event);
+
+        List<HistoryEvent> recent(int count);
+    }
+
+    private static class RingHistory implements History {
+        private final RideHistory history;
+
+        RingHistory(RideHistory history) {
+            this.history = history;
+        }
+
+        @Override
+        public void add(HistoryEvent event) {
+            history.addEvent(event);
+        }
+
+        @Override
+        public List<HistoryEvent> recent(int count) {
+            return history.getRecentEvents(count);
+        }
+    }
+
+    private static class LegacyDequeHistory implements History {
+        private final ConcurrentLinkedDeque<HistoryEvent> events = new ConcurrentLinkedDeque<>();
+        private final int maxSize;
+
+        LegacyDequeHistory(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public void add(HistoryEvent event) {
+            events.addFirst(event);
+            while (events.size() > maxSize) {
+                events.removeLast();
+            }
+        }
+
+        @Override
+        public List<HistoryEvent> recent(int count) {
+            List<HistoryEvent> result = new ArrayList<>();
+            for (HistoryEvent e : events) {
+                if (result.size() >= count) break;
+                result.add(e);
+            }
+            return result;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        new RideHistoryBenchmark(seconds, capacity).run();
+    }
+}
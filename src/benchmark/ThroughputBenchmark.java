@@ -0,0 +1,469 @@
+package benchmark;
+
+import dispatcher.DispatchStrategy;
+import dispatcher.Dispatcher;
+import dispatcher.OrderQueue;
+import events.EventBus;
+import events.EventConsumer;
+import events.HistoryConsumer;
+import events.LifecycleEvent;
+import events.StatisticsConsumer;
+import generator.ClientGenerator;
+import model.Point;
+import model.RideRequest;
+import model.TaxiType;
+import simulation.SimulationClock;
+import statistics.LatencyHistogram;
+import statistics.RideHistory;
+import statistics.Statistics;
+import taxi.Taxi;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность всей системы без интерфейса: такси, диспетчер,
+ * генератор и шина с обычными потребителями. Каждая конфигурация
+ * собирается заново, прогревается, затем измеряется; в отчёт попадают
+ * только события, случившиеся внутри окна измерения. Запуск:
+ * java -cp bin benchmark.ThroughputBenchmark [ключ=значение[,значение...]]...
+ * Ключи: taxis, mix (эконом:комфорт:премиум), rate (заказов в реальную
+ * секунду), speed (ускорение симуляции, до ×10), strategy (NEAREST,
+ * FASTEST_PICKUP, FIRST_AVAILABLE), threads (PLATFORM, VIRTUAL), warmup и
+ * duration (секунды), out (файл JSON-отчёта, "-" — в стандартный вывод).
+ * Для ключей со списком значений прогоняется каждое сочетание.
+ */
+public class ThroughputBenchmark {
+    private static final int ORDER_QUEUE_CAPACITY = 100;
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("taxis", "100,1000");
+        DEFAULTS.put("mix", "5:3:2");
+        DEFAULTS.put("rate", "200");
+        DEFAULTS.put("speed", "10");
+        DEFAULTS.put("strategy", "NEAREST,FIRST_AVAILABLE");
+        DEFAULTS.put("threads", "PLATFORM");
+        DEFAULTS.put("warmup", "5");
+        DEFAULTS.put("duration", "20");
+    }
+
+    enum ThreadModel {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    static final class Config {
+        final int taxis;
+        final int[] mix;
+        final double rate;
+        final double speed;
+        final DispatchStrategy strategy;
+        final ThreadModel threads;
+        final int warmupSeconds;
+        final int durationSeconds;
+
+        Config(Map<String, String> values) {
+            this.taxis = Integer.parseInt(values.get("taxis"));
+            this.mix = Arrays.stream(values.get("mix").split(":")).mapToInt(Integer::parseInt).toArray();
+            this.rate = Double.parseDouble(values.get("rate"));
+            this.speed = Double.parseDouble(values.get("speed"));
+            this.strategy = DispatchStrategy.valueOf(values.get("strategy").toUpperCase(Locale.ROOT));
+            this.threads = ThreadModel.valueOf(values.get("threads").toUpperCase(Locale.ROOT));
+            this.warmupSeconds = Integer.parseInt(values.get("warmup"));
+            this.durationSeconds = Integer.parseInt(values.get("duration"));
+            if (mix.length != TaxiType.values().length) {
+                throw new IllegalArgumentException("mix задаёт доли для " + TaxiType.values().length
+                        + " типов такси через двоеточие: " + values.get("mix"));
+            }
+        }
+
+        int countOf(int typeIndex) {
+            int weights = Arrays.stream(mix).sum();
+            int assigned = 0;
+            for (int i = 0; i < typeIndex; i++) {
+                assigned += taxis * mix[i] / weights;
+            }
+            return typeIndex == mix.length - 1 ? taxis - assigned : taxis * mix[typeIndex] / weights;
+        }
+
+        String describe() {
+            return String.format(Locale.ROOT, "такси %d (%s), %.0f заказов/с, ×%.1f, %s, потоки %s",
+                    taxis, formatMix(mix), rate, speed, strategy.name(), threads);
+        }
+
+        static String formatMix(int[] mix) {
+            StringBuilder text = new StringBuilder();
+            for (int weight : mix) {
+                text.append(text.length() > 0 ? ":" : "").append(weight);
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * Потребитель шины, который считает события окна измерения и
+     * задержки заказов. Окно задаётся моментами System.nanoTime, поэтому
+     * события, опубликованные внутри окна, но доставленные позже,
+     * тоже учитываются.
+     */
+    private static final class Probe implements EventConsumer {
+        final LatencyHistogram dispatchLatency = new LatencyHistogram();
+        final LatencyHistogram orderLatency = new LatencyHistogram();
+        volatile long fromNanos = Long.MAX_VALUE;
+        volatile long toNanos = Long.MAX_VALUE;
+        volatile long created;
+        volatile long assigned;
+        volatile long failed;
+        volatile long completed;
+
+        @Override
+        public String getName() {
+            return "benchmark";
+        }
+
+        @Override
+        public void onEvent(LifecycleEvent event) {
+            long nanos = event.getNanos();
+            if (nanos < fromNanos || nanos >= toNanos) {
+                return;
+            }
+            switch (event.getType()) {
+                case ORDER_CREATED:
+                    created++;
+                    break;
+                case ORDER_ASSIGNED:
+                    assigned++;
+                    dispatchLatency.recordNanos(nanos - event.getRequest().getCreatedNanos());
+                    break;
+                case ORDER_FAILED:
+                    failed++;
+                    break;
+                case RIDE_COMPLETED:
+                    completed++;
+                    orderLatency.recordNanos(nanos - event.getRequest().getCreatedNanos());
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Снимок ресурсов процесса. Выделенная память считается по живым
+     * платформенным потокам: память потоков, завершившихся внутри окна,
+     * и виртуальных потоков в отчёт не попадает.
+     */
+    private static final class Resources {
+        final long cpuNanos;
+        final Map<Long, Long> allocatedBytes;
+        final long gcCount;
+        final long gcMillis;
+
+        Resources() {
+            java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+            this.cpuNanos = os instanceof com.sun.management.OperatingSystemMXBean
+                    ? ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime()
+                    : -1;
+
+            this.allocatedBytes = new HashMap<>();
+            java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                long[] ids = threads.getAllThreadIds();
+                long[] bytes = ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(ids);
+                for (int i = 0; i < ids.length; i++) {
+                    if (bytes[i] >= 0) {
+                        allocatedBytes.put(ids[i], bytes[i]);
+                    }
+                }
+            }
+
+            long count = 0;
+            long millis = 0;
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += Math.max(0, collector.getCollectionCount());
+                millis += Math.max(0, collector.getCollectionTime());
+            }
+            this.gcCount = count;
+            this.gcMillis = millis;
+        }
+
+        long allocatedSince(Resources before) {
+            long total = 0;
+            for (Map.Entry<Long, Long> entry : allocatedBytes.entrySet()) {
+                total += entry.getValue() - before.allocatedBytes.getOrDefault(entry.getKey(), 0L);
+            }
+            return total;
+        }
+    }
+
+    private final List<Config> configs;
+    private final String out;
+
+    public ThroughputBenchmark(List<Config> configs, String out) {
+        this.configs = configs;
+        this.out = out;
+    }
+
+    public void run() throws IOException, InterruptedException {
+        StringBuilder report = new StringBuilder();
+        report.append("{\n");
+        report.append("  \"java\": \"").append(System.getProperty("java.version")).append("\",\n");
+        report.append("  \"availableProcessors\": ").append(Runtime.getRuntime().availableProcessors()).append(",\n");
+        report.append("  \"maxHeapMB\": ").append(Runtime.getRuntime().maxMemory() >> 20).append(",\n");
+        report.append("  \"runs\": [");
+
+        for (int i = 0; i < configs.size(); i++) {
+            Config config = configs.get(i);
+            System.out.printf("[%d/%d] %s%n", i + 1, configs.size(), config.describe());
+            report.append(i > 0 ? "," : "").append("\n    ");
+            runConfig(config, report);
+        }
+
+        report.append("\n  ]\n}\n");
+        if ("-".equals(out)) {
+            System.out.print(report);
+        } else {
+            Path path = Paths.get(out);
+            try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+                writer.write(report.toString());
+            }
+            System.out.printf("Отчёт записан в %s%n", path.toAbsolutePath());
+        }
+    }
+
+    private void runConfig(Config config, StringBuilder report) throws InterruptedException {
+        report.append("{\"config\": {");
+        appendField(report, "taxis", config.taxis, true);
+        report.append(", \"mix\": \"").append(Config.formatMix(config.mix)).append('"');
+        appendField(report, "ordersPerSecond", config.rate, false);
+        appendField(report, "speed", config.speed, false);
+        report.append(", \"strategy\": \"").append(config.strategy.name()).append('"');
+        report.append(", \"threads\": \"").append(config.threads.name()).append('"');
+        appendField(report, "warmupSeconds", config.warmupSeconds, false);
+        appendField(report, "durationSeconds", config.durationSeconds, false);
+        report.append("}");
+
+        ExecutorService executor = newExecutor(config.threads);
+        if (executor == null) {
+            System.out.println("    пропущено: виртуальные потоки недоступны в этой JVM");
+            report.append(", \"skipped\": \"virtual threads are not available in this JVM\"}");
+            return;
+        }
+
+        SimulationClock clock = new SimulationClock();
+        clock.setSpeed(config.speed);
+        Statistics statistics = new Statistics();
+        EventBus eventBus = new EventBus();
+        Probe probe = new Probe();
+        eventBus.addConsumer(new StatisticsConsumer(statistics));
+        eventBus.addConsumer(new HistoryConsumer(new RideHistory()));
+        eventBus.addConsumer(probe);
+        eventBus.start();
+
+        OrderQueue orderQueue = new OrderQueue(ORDER_QUEUE_CAPACITY);
+        ConcurrentHashMap<Integer, BlockingQueue<RideRequest>> taxiQueues = new ConcurrentHashMap<>();
+        List<Taxi> fleet = createFleet(config, taxiQueues, statistics, eventBus, clock);
+        for (Taxi taxi : fleet) {
+            executor.execute(taxi);
+        }
+        Dispatcher dispatcher = new Dispatcher(orderQueue, fleet, taxiQueues, statistics, eventBus, clock);
+        dispatcher.setStrategy(config.strategy);
+        executor.execute(dispatcher);
+        ClientGenerator generator = ClientGenerator.withRate(orderQueue, config.rate / clock.getSpeed(), 0,
+                eventBus, clock);
+        executor.execute(generator);
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(config.warmupSeconds));
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+        Resources before = new Resources();
+        long started = System.nanoTime();
+        probe.fromNanos = started;
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(config.durationSeconds));
+
+        long finished = System.nanoTime();
+        probe.toNanos = finished;
+        Resources after = new Resources();
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        int peakThreads = ManagementFactory.getThreadMXBean().getPeakThreadCount();
+        int queuedOrders = orderQueue.size();
+
+        generator.shutdown();
+        dispatcher.shutdown();
+        for (Taxi taxi : fleet) {
+            taxi.shutdown();
+        }
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        eventBus.shutdown();
+
+        long dropped = 0;
+        for (EventBus.ConsumerStats stats : eventBus.getConsumerStats()) {
+            if (stats.getName().equals(probe.getName())) {
+                dropped = stats.getDropped();
+            }
+        }
+
+        double seconds = (finished - started) / 1_000_000_000.0;
+        long cpuNanos = before.cpuNanos >= 0 ? after.cpuNanos - before.cpuNanos : -1;
+        double allocatedMB = after.allocatedSince(before) / (1024.0 * 1024.0);
+
+        appendField(report, "measuredSeconds", seconds, false);
+        appendField(report, "ordersCreatedPerSecond", probe.created / seconds, false);
+        appendField(report, "ordersDispatchedPerSecond", probe.assigned / seconds, false);
+        appendField(report, "ordersFailedPerSecond", probe.failed / seconds, false);
+        appendField(report, "ridesCompletedPerSecond", probe.completed / seconds, false);
+        appendField(report, "ordersQueuedAtEnd", queuedOrders, false);
+        report.append(", \"dispatchLatencyMs\": ");
+        appendLatencies(report, probe.dispatchLatency);
+        report.append(", \"orderLatencyMs\": ");
+        appendLatencies(report, probe.orderLatency);
+        appendField(report, "cpuSeconds", cpuNanos / 1_000_000_000.0, false);
+        appendField(report, "cpuUtilization", cpuNanos / 1_000_000_000.0 / seconds, false);
+        appendField(report, "allocatedMB", allocatedMB, false);
+        appendField(report, "allocationMBPerSecond", allocatedMB / seconds, false);
+        appendField(report, "peakHeapMB", peakHeap / (1024.0 * 1024.0), false);
+        appendField(report, "gcCount", after.gcCount - before.gcCount, false);
+        appendField(report, "gcMillis", after.gcMillis - before.gcMillis, false);
+        appendField(report, "peakThreads", peakThreads, false);
+        appendField(report, "droppedEvents", dropped, false);
+        report.append("}");
+
+        System.out.printf(Locale.ROOT,
+                "    назначено %.1f/с, отказов %.1f/с, поездок %.1f/с | назначение p50 %.1f мс, p99 %.1f мс"
+                        + " | CPU %.2f с, выделено %.1f МБ/с, пик кучи %.1f МБ%n",
+                probe.assigned / seconds, probe.failed / seconds, probe.completed / seconds,
+                probe.dispatchLatency.getPercentileMillis(50), probe.dispatchLatency.getPercentileMillis(99),
+                cpuNanos / 1_000_000_000.0, allocatedMB / seconds, peakHeap / (1024.0 * 1024.0));
+    }
+
+    private static List<Taxi> createFleet(Config config,
+                                          ConcurrentHashMap<Integer, BlockingQueue<RideRequest>> taxiQueues,
+                                          Statistics statistics, EventBus eventBus, SimulationClock clock) {
+        Random random = new Random(42);
+        TaxiType[] types = TaxiType.values();
+        List<Taxi> fleet = new ArrayList<>(config.taxis);
+        int id = 1;
+        for (int typeIndex = 0; typeIndex < types.length; typeIndex++) {
+            for (int i = 0; i < config.countOf(typeIndex); i++, id++) {
+                BlockingQueue<RideRequest> taxiQueue = new LinkedBlockingQueue<>();
+                Point location = new Point(random.nextDouble() * 100, random.nextDouble() * 100);
+                fleet.add(new Taxi(id, types[typeIndex], location, taxiQueue, statistics, eventBus, clock));
+                taxiQueues.put(id, taxiQueue);
+            }
+        }
+        return fleet;
+    }
+
+    private static ExecutorService newExecutor(ThreadModel threads) {
+        if (threads == ThreadModel.PLATFORM) {
+            return Executors.newCachedThreadPool();
+        }
+        try {
+            // Executors.newVirtualThreadPerTaskExecutor появился только в Java 21
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static void appendLatencies(StringBuilder report, LatencyHistogram histogram) {
+        report.append('{');
+        appendField(report, "count", histogram.getCount(), true);
+        appendField(report, "p50", histogram.getPercentileMillis(50), false);
+        appendField(report, "p90", histogram.getPercentileMillis(90), false);
+        appendField(report, "p99", histogram.getPercentileMillis(99), false);
+        appendField(report, "p999", histogram.getPercentileMillis(99.9), false);
+        appendField(report, "max", histogram.getMaxMicros() / 1000.0, false);
+        report.append('}');
+    }
+
+    private static void appendField(StringBuilder report, String name, long value, boolean first) {
+        report.append(first ? "" : ", ").append('"').append(name).append("\": ").append(value);
+    }
+
+    private static void appendField(StringBuilder report, String name, double value, boolean first) {
+        report.append(first ? "" : ", ").append('"').append(name).append("\": ")
+                .append(Double.isFinite(value) ? String.format(Locale.ROOT, "%.3f", value) : "null");
+    }
+
+    /**
+     * Сочетания значений всех ключей; у ключа без аргумента — значение
+     * по умолчанию.
+     */
+    static List<Config> parseConfigs(Map<String, String> arguments) {
+        List<Map<String, String>> combinations = new ArrayList<>();
+        combinations.add(new HashMap<>());
+        for (String key : DEFAULTS.keySet()) {
+            String[] values = arguments.getOrDefault(key, DEFAULTS.get(key)).split(",");
+            List<Map<String, String>> expanded = new ArrayList<>();
+            for (Map<String, String> combination : combinations) {
+                for (String value : values) {
+                    Map<String, String> next = new HashMap<>(combination);
+                    next.put(key, value.trim());
+                    expanded.add(next);
+                }
+            }
+            combinations = expanded;
+        }
+
+        List<Config> configs = new ArrayList<>(combinations.size());
+        for (Map<String, String> combination : combinations) {
+            configs.add(new Config(combination));
+        }
+        return configs;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        java.util.logging.LogManager.getLogManager().reset();
+        java.util.logging.Logger.getLogger("").setLevel(java.util.logging.Level.OFF);
+
+        Map<String, String> arguments = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            String key = separator > 0 ? arg.substring(0, separator) : "";
+            if (!DEFAULTS.containsKey(key) && !key.equals("out")) {
+                System.err.println("Неизвестный параметр: " + arg);
+                System.err.println("Параметры: " + String.join(", ", DEFAULTS.keySet()) + ", out");
+                System.exit(1);
+            }
+            arguments.put(key, arg.substring(separator + 1));
+        }
+
+        List<Config> configs = parseConfigs(arguments);
+        new ThroughputBenchmark(configs, arguments.getOrDefault("out", "benchmark-report.json")).run();
+        System.exit(0);
+    }
+}
@@ -0,0 +1,32 @@
+package dispatcher;
+
+import model.TaxiType;
+
+public enum DispatchStrategy {
+    NEAREST("ближайшее свободное такси"),
+    FASTEST_PICKUP("самая быстрая подача с учётом скорости типа"),
+    FIRST_AVAILABLE("первое свободное такси");
+
+    private final String displayName;
+
+    DispatchStrategy(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Стоимость подачи такси типа type с расстояния distance: чем меньше,
+     * тем лучше.
+     */
+    public double cost(double distance, TaxiType type) {
+        return this == FASTEST_PICKUP ? distance / type.getSpeedMultiplier() : distance;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -1,9 +1,14 @@
 package dispatcher;
 
+import events.EventBus;
+import jdk.jfr.FlightRecorder;
+import jfr.AssignmentFailedEvent;
+import jfr.OrderDispatchedEvent;
+import jfr.QueueDepthEvent;
 import model.*;
+import simulation.SimulationClock;
 import taxi.Taxi;
 import statistics.Statistics;
-import statistics.RideHistory;
 
 import java.util.List;
 import java.util.concurrent.*;
@@ -17,23 +22,40 @@ public class Dispatcher implements Runnable {
     private final List<Taxi> taxiFleet;
     private final ConcurrentHashMap<Integer, BlockingQueue<RideRequest>> taxiQueues;
     private final Statistics statistics;
-    private final RideHistory history;
+    private final EventBus eventBus;
+    private final SimulationClock clock;
     private final ScheduledExecutorService monitorService;
+    private final Runnable queueDepthHook;
 
     private volatile boolean running;
+    private volatile DispatchStrategy strategy;
+    private int candidatesScanned;
+    private int availableCandidates;
 
     public Dispatcher(PriorityBlockingQueue<RideRequest> orderQueue,
                      List<Taxi> taxiFleet,
                      ConcurrentHashMap<Integer, BlockingQueue<RideRequest>> taxiQueues,
                      Statistics statistics,
-                     RideHistory history) {
+                     EventBus eventBus) {
+        this(orderQueue, taxiFleet, taxiQueues, statistics, eventBus, new SimulationClock());
+    }
+
+    public Dispatcher(PriorityBlockingQueue<RideRequest> orderQueue,
+                     List<Taxi> taxiFleet,
+                     ConcurrentHashMap<Integer, BlockingQueue<RideRequest>> taxiQueues,
+                     Statistics statistics,
+                     EventBus eventBus,
+                     SimulationClock clock) {
         this.orderQueue = orderQueue;
         this.taxiFleet = taxiFleet;
         this.taxiQueues = taxiQueues;
         this.statistics = statistics;
-        this.history = history;
+        this.eventBus = eventBus;
+        this.clock = clock;
         this.running = true;
+        this.strategy = DispatchStrategy.NEAREST;
         this.monitorService = Executors.newScheduledThreadPool(1);
+        this.queueDepthHook = this::emitQueueDepthEvent;
     }
 
     @Override
@@ -41,6 +63,8 @@ public class Dispatcher implements Runnable {
         LOGGER.info("Диспетчер начал работу");
 
         monitorService.scheduleAtFixedRate(this::printSystemStatus, 5, 10, TimeUnit.SECONDS);
+        monitorService.scheduleAtFixedRate(this::sampleQueueDepth, 0, 1, TimeUnit.SECONDS);
+        FlightRecorder.addPeriodicEvent(QueueDepthEvent.class, queueDepthHook);
 
         try {
             while (running) {
@@ -48,6 +72,7 @@ public class Dispatcher implements Runnable {
                     RideRequest request = orderQueue.poll(1, TimeUnit.SECONDS);
 
                     if (request != null) {
+                        clock.awaitRunning();
                         assignOrder(request);
                     }
                 } catch (InterruptedException e) {
@@ -56,6 +81,7 @@ public class Dispatcher implements Runnable {
                 }
             }
         } finally {
+            FlightRecorder.removePeriodicEvent(queueDepthHook);
             monitorService.shutdown();
         }
     }
@@ -63,50 +89,74 @@ public class Dispatcher implements Runnable {
     private void assignOrder(RideRequest request) {
         LOGGER.info(String.format("Диспетчер обрабатывает: %s", request));
 
+        OrderDispatchedEvent event = new OrderDispatchedEvent();
+        event.begin();
+
         Taxi bestTaxi = findBestTaxi(request);
 
         if (bestTaxi != null) {
             BlockingQueue<RideRequest> taxiQueue = taxiQueues.get(bestTaxi.getId());
             if (taxiQueue != null) {
+                // момент назначения фиксируется до передачи заказа такси, чтобы задержка подачи
+                // считалась от него, даже если такси опубликует начало поездки раньше диспетчера;
+                // само назначение публикуется только после того, как такси приняло заказ
+                double distance = bestTaxi.getCurrentLocation().distanceTo(request.getPickupLocation());
                 try {
+                    long offerStarted = System.nanoTime();
+                    request.markAssigned(offerStarted);
                     if (taxiQueue.offer(request, ASSIGNMENT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
-                        statistics.recordOrderAssigned();
-                        double distance = bestTaxi.getCurrentLocation().distanceTo(request.getPickupLocation());
-
-                        history.recordOrderAssigned(
-                            request.getId(),
-                            bestTaxi.getId(),
-                            request.getClientName(),
-                            String.format("Тип: %s, Расст. до клиента: %.1f км", bestTaxi.getType(), distance)
-                        );
+                        event.end();
+                        long queueWait = System.nanoTime() - offerStarted;
+                        eventBus.publishOrderAssigned(request, bestTaxi.getId(), bestTaxi.getType(), distance);
 
                         LOGGER.info(String.format("Заказ #%d назначен такси #%d (%s) в точке %s (расстояние до клиента: %.1f км)",
                                 request.getId(), bestTaxi.getId(), bestTaxi.getType(),
                                 bestTaxi.getCurrentLocation(), distance));
+
+                        if (event.shouldCommit()) {
+                            event.orderId = request.getId();
+                            event.priority = request.getPriority();
+                            event.candidatesScanned = candidatesScanned;
+                            event.availableCandidates = availableCandidates;
+                            event.taxiId = bestTaxi.getId();
+                            event.taxiType = bestTaxi.getType().name();
+                            event.distanceKm = distance;
+                            event.queueWaitNanos = queueWait;
+                            event.commit();
+                        }
                     } else {
-                        handleFailedAssignment(request, "таймаут при назначении");
+                        handleFailedAssignment(request, FailureReason.ASSIGNMENT_TIMEOUT);
                     }
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
-                    handleFailedAssignment(request, "прерывание");
+                    handleFailedAssignment(request, FailureReason.INTERRUPTED);
                 }
             } else {
-                handleFailedAssignment(request, "очередь такси не найдена");
+                handleFailedAssignment(request, FailureReason.TAXI_QUEUE_MISSING);
             }
         } else {
-            handleFailedAssignment(request, "нет доступных такси");
+            handleFailedAssignment(request, FailureReason.NO_AVAILABLE_TAXI);
         }
     }
 
     private Taxi findBestTaxi(RideRequest request) {
+        DispatchStrategy strategy = this.strategy;
         Taxi bestTaxi = null;
-        double minDistance = Double.MAX_VALUE;
+        double minCost = Double.MAX_VALUE;
+        candidatesScanned = 0;
+        availableCandidates = 0;
 
         for (Taxi taxi : taxiFleet) {
+            candidatesScanned++;
             if (taxi.isAvailable()) {
+                availableCandidates++;
+                if (strategy == DispatchStrategy.FIRST_AVAILABLE) {
+                    return taxi;
+                }
                 double distance = taxi.getCurrentLocation().distanceTo(request.getPickupLocation());
-                if (distance < minDistance) {
-                    minDistance = distance;
+                double cost = strategy.cost(distance, taxi.getType());
+                if (cost < minCost) {
+                    minCost = cost;
                     bestTaxi = taxi;
                 }
             }
@@ -115,14 +165,23 @@ public class Dispatcher implements Runnable {
         return bestTaxi;
     }
 
-    private void handleFailedAssignment(RideRequest request, String reason) {
-        statistics.recordOrderFailed();
+    private void handleFailedAssignment(RideRequest request, FailureReason reason) {
+        eventBus.publishOrderFailed(request, reason);
+
+        AssignmentFailedEvent event = new AssignmentFailedEvent();
+        if (event.shouldCommit()) {
+            event.orderId = request.getId();
+            event.priority = request.getPriority();
+            event.candidatesScanned = candidatesScanned;
+            event.reason = reason.getDisplayName();
+            event.commit();
+        }
 
         LOGGER.warning(String.format("Не удалось назначить заказ #%d: %s. Возврат в очередь.",
                 request.getId(), reason));
 
         try {
-            Thread.sleep(1000);
+            clock.sleep(1000);
             orderQueue.offer(request);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -155,11 +214,24 @@ public class Dispatcher implements Runnable {
                 "Такси доступно: %d\n" +
                 "Такси занято: %d\n" +
                 "Такси оффлайн: %d\n" +
+                "--- Скользящие окна ---\n" +
+                "%s\n" +
                 "======================",
-                orderQueue.size(), available, busy, offline
+                orderQueue.size(), available, busy, offline, statistics.formatWindowRates()
         ));
     }
 
+    private void emitQueueDepthEvent() {
+        QueueDepthEvent event = new QueueDepthEvent();
+        event.queuedOrders = statistics.getLastQueueDepth();
+        event.availableTaxis = (int) getAvailableTaxiCount();
+        event.commit();
+    }
+
+    private void sampleQueueDepth() {
+        statistics.recordQueueDepth(orderQueue.size());
+    }
+
     public int getQueueSize() {
         return orderQueue.size();
     }
@@ -170,6 +242,14 @@ public class Dispatcher implements Runnable {
                 .count();
     }
 
+    public DispatchStrategy getStrategy() {
+        return strategy;
+    }
+
+    public void setStrategy(DispatchStrategy strategy) {
+        this.strategy = strategy;
+    }
+
     public void shutdown() {
         running = false;
         monitorService.shutdown();
@@ -0,0 +1,167 @@
+package dispatcher;
+
+import model.RideRequest;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Очередь заказов с упорядоченным представлением для интерфейса. Помимо
+ * кучи PriorityBlockingQueue каждый ожидающий заказ лежит в
+ * ConcurrentSkipListSet с тем же порядком: заказ попадает в представление
+ * до постановки в очередь и убирается после извлечения, поэтому первые K
+ * заказов читаются за O(K) без блокировки очереди и без копирования её
+ * массива. Все способы удаления, включая массовые и удаление через
+ * итератор, идут через remove/poll этого класса.
+ */
+public class OrderQueue extends PriorityBlockingQueue<RideRequest> {
+    private final ConcurrentSkipListSet<RideRequest> pending;
+    private final AtomicInteger pendingCount;
+
+    public OrderQueue(int initialCapacity) {
+        super(initialCapacity);
+        this.pending = new ConcurrentSkipListSet<>();
+        this.pendingCount = new AtomicInteger();
+    }
+
+    @Override
+    public boolean offer(RideRequest request) {
+        if (pending.add(request)) {
+            pendingCount.incrementAndGet();
+        }
+        return super.offer(request);
+    }
+
+    @Override
+    public RideRequest poll() {
+        return removed(super.poll());
+    }
+
+    @Override
+    public RideRequest poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return removed(super.poll(timeout, unit));
+    }
+
+    @Override
+    public RideRequest take() throws InterruptedException {
+        return removed(super.take());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        boolean removed = super.remove(o);
+        if (removed && o instanceof RideRequest) {
+            removed((RideRequest) o);
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super RideRequest> filter) {
+        Objects.requireNonNull(filter);
+        boolean changed = false;
+        for (RideRequest request : toArray(new RideRequest[0])) {
+            if (filter.test(request) && remove(request)) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        return removeIf(c::contains);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        return removeIf(request -> !c.contains(request));
+    }
+
+    /**
+     * Итератор по снимку очереди, как у PriorityBlockingQueue; remove()
+     * убирает заказ и из представления.
+     */
+    @Override
+    public Iterator<RideRequest> iterator() {
+        Iterator<RideRequest> snapshot = super.iterator();
+        return new Iterator<RideRequest>() {
+            private RideRequest last;
+
+            @Override
+            public boolean hasNext() {
+                return snapshot.hasNext();
+            }
+
+            @Override
+            public RideRequest next() {
+                last = snapshot.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                snapshot.remove();
+                removed(last);
+                last = null;
+            }
+        };
+    }
+
+    @Override
+    public int drainTo(Collection<? super RideRequest> c, int maxElements) {
+        int drained = 0;
+        RideRequest request;
+        while (drained < maxElements && (request = poll()) != null) {
+            c.add(request);
+            drained++;
+        }
+        return drained;
+    }
+
+    @Override
+    public int drainTo(Collection<? super RideRequest> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void clear() {
+        while (poll() != null) {
+            // заказы снимаются по одному, чтобы представление не разошлось с очередью
+        }
+    }
+
+    private RideRequest removed(RideRequest request) {
+        if (request != null && pending.remove(request)) {
+            pendingCount.decrementAndGet();
+        }
+        return request;
+    }
+
+    /**
+     * Первые по приоритету ожидающие заказы; заполняет массив и возвращает
+     * их число. Стоимость не зависит от длины очереди.
+     */
+    public int topPending(RideRequest[] into) {
+        int count = 0;
+        for (RideRequest request : pending) {
+            if (count == into.length) {
+                break;
+            }
+            into[count++] = request;
+        }
+        return count;
+    }
+
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+}
@@ -0,0 +1,504 @@
+package events;
+
+import model.FailureReason;
+import model.Point;
+import model.RideRequest;
+import model.TaxiState;
+import model.TaxiType;
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Шина событий жизненного цикла заказа на заранее выделенном кольцевом
+ * буфере. Производитель занимает номер из общего счётчика, помечает слот
+ * как записываемый, заполняет его и публикует номер. Каждый потребитель
+ * читает буфер в своём потоке пачками, копируя слот и перепроверяя номер
+ * после копирования. Производители никогда не ждут потребителей:
+ * отставший больше чем на ёмкость буфера потребитель пропускает
+ * перезаписанные события, учитывает их в счётчике потерь и узнаёт о
+ * пропуске через onGap до следующего события.
+ * <p>
+ * Потребителю, которому потери дороги (журнал, статистика), шина даёт
+ * очередь переполнения: поток шины только копирует события в неё, а
+ * обрабатывает их отдельный поток. Остановка обработчика (сброс на диск,
+ * контрольная точка) копится в очереди, а не в кольце, и не доходит до
+ * производителей; ценой этого память под очередь, а события теряются,
+ * только если заполнилась и она.
+ */
+public class EventBus {
+    private static final Logger LOGGER = Logger.getLogger(EventBus.class.getName());
+
+    public static final String CAPACITY_PROPERTY = "taxi.bus.capacity";
+    public static final String OVERFLOW_PROPERTY = "taxi.bus.overflow";
+    private static final int DEFAULT_CAPACITY = 16384;
+    private static final int DEFAULT_OVERFLOW = 262_144;
+    private static final int MAX_BATCH = 256;
+    private static final long IDLE_PARK_NANOS = 200_000;
+    private static final long WRITING = Long.MIN_VALUE;
+
+    private final LifecycleEvent[] entries;
+    private final AtomicLongArray published;
+    private final AtomicLong cursor;
+    private final int capacity;
+    private final int mask;
+    private final int overflowCapacity;
+    private final List<ConsumerWorker> workers;
+
+    private volatile boolean running;
+
+    public EventBus() {
+        this(Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY));
+    }
+
+    public EventBus(int requestedCapacity) {
+        if (requestedCapacity < 2) {
+            throw new IllegalArgumentException("Ёмкость шины должна быть не меньше 2");
+        }
+        this.capacity = Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.entries = new LifecycleEvent[capacity];
+        this.published = new AtomicLongArray(capacity);
+        this.cursor = new AtomicLong();
+        this.overflowCapacity = Math.max(1, Integer.getInteger(OVERFLOW_PROPERTY, DEFAULT_OVERFLOW));
+        this.workers = new ArrayList<>();
+
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = new LifecycleEvent();
+            published.set(i, i - (long) capacity);
+        }
+    }
+
+    public synchronized void addConsumer(EventConsumer consumer) {
+        if (running) {
+            throw new IllegalStateException("Потребителей нужно добавить до запуска шины");
+        }
+        workers.add(new ConsumerWorker(consumer));
+    }
+
+    public synchronized void start() {
+        running = true;
+        for (ConsumerWorker worker : workers) {
+            worker.start();
+        }
+        LOGGER.info(String.format("Шина событий запущена: ёмкость %d, потребителей %d", capacity, workers.size()));
+    }
+
+    /**
+     * Останавливает шину и ждёт, пока потребители дочитают опубликованное.
+     * Возвращает false, если какой-то поток потребителя так и не завершился:
+     * тогда ресурсы потребителей закрывать нельзя, он ещё может в них писать.
+     */
+    public boolean shutdown() {
+        running = false;
+        boolean terminated = true;
+        for (ConsumerWorker worker : workers) {
+            try {
+                worker.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (worker.isAlive()) {
+                LOGGER.warning(String.format("Потребитель %s не завершился за 5 с, отставание %d",
+                        worker.consumer.getName(), Math.max(0, cursor.get() - worker.next)));
+                terminated = false;
+            }
+        }
+        return terminated;
+    }
+
+    public void publishOrderCreated(RideRequest request) {
+        long sequence = claim();
+        LifecycleEvent event = entries[(int) (sequence & mask)];
+        event.reset(LifecycleEvent.Type.ORDER_CREATED);
+        event.request = request;
+        event.location = request.getPickupLocation();
+        publish(sequence);
+    }
+
+    public void publishOrderAssigned(RideRequest request, int taxiId, TaxiType taxiType, double distanceToClient) {
+        long sequence = claim();
+        LifecycleEvent event = entries[(int) (sequence & mask)];
+        event.reset(LifecycleEvent.Type.ORDER_ASSIGNED);
+        event.nanos = request.getAssignedNanos();
+        event.request = request;
+        event.taxiId = taxiId;
+        event.taxiType = taxiType;
+        event.distance = distanceToClient;
+        publish(sequence);
+    }
+
+    public void publishOrderFailed(RideRequest request, FailureReason reason) {
+        long sequence = claim();
+        LifecycleEvent event = entries[(int) (sequence & mask)];
+        event.reset(LifecycleEvent.Type.ORDER_FAILED);
+        event.request = request;
+        event.failureReason = reason;
+        event.location = request.getPickupLocation();
+        publish(sequence);
+    }
+
+    public void publishRideStarted(RideRequest request, int taxiId, TaxiType taxiType, double distance, double price) {
+        publishRide(LifecycleEvent.Type.RIDE_STARTED, request, taxiId, taxiType, distance, price);
+    }
+
+    public void publishRideCompleted(RideRequest request, int taxiId, TaxiType taxiType, double distance, double price) {
+        publishRide(LifecycleEvent.Type.RIDE_COMPLETED, request, taxiId, taxiType, distance, price);
+    }
+
+    private void publishRide(LifecycleEvent.Type type, RideRequest request, int taxiId, TaxiType taxiType,
+                             double distance, double price) {
+        long sequence = claim();
+        LifecycleEvent event = entries[(int) (sequence & mask)];
+        event.reset(type);
+        event.request = request;
+        event.taxiId = taxiId;
+        event.taxiType = taxiType;
+        event.distance = distance;
+        event.price = price;
+        event.location = type == LifecycleEvent.Type.RIDE_STARTED
+                ? request.getPickupLocation()
+                : request.getDestination();
+        publish(sequence);
+    }
+
+    public void publishStateChange(int taxiId, TaxiType taxiType, TaxiState previousState, TaxiState state,
+                                   Point location, double deadheadKm) {
+        long sequence = claim();
+        LifecycleEvent event = entries[(int) (sequence & mask)];
+        event.reset(LifecycleEvent.Type.TAXI_STATE_CHANGED);
+        event.taxiId = taxiId;
+        event.taxiType = taxiType;
+        event.previousState = previousState;
+        event.state = state;
+        event.location = location;
+        event.distance = deadheadKm;
+        publish(sequence);
+    }
+
+    public void publishLegStarted(int taxiId, TaxiType taxiType, TaxiState state, Point from, Point to,
+                                  long travelNanos) {
+        long sequence = claim();
+        LifecycleEvent event = entries[(int) (sequence & mask)];
+        event.reset(LifecycleEvent.Type.TAXI_LEG_STARTED);
+        event.taxiId = taxiId;
+        event.taxiType = taxiType;
+        event.state = state;
+        event.location = from;
+        event.target = to;
+        event.distance = from.distanceTo(to);
+        event.arrivalNanos = event.nanos + travelNanos;
+        publish(sequence);
+    }
+
+    private long claim() {
+        long sequence = cursor.getAndIncrement();
+        int index = (int) (sequence & mask);
+        while (true) {
+            long current = published.get(index);
+            if (current == WRITING) {
+                Thread.onSpinWait();
+            } else if (published.compareAndSet(index, current, WRITING)) {
+                VarHandle.releaseFence();
+                return sequence;
+            }
+        }
+    }
+
+    private void publish(long sequence) {
+        published.setRelease((int) (sequence & mask), sequence);
+    }
+
+    public long getPublishedCount() {
+        return cursor.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public List<ConsumerStats> getConsumerStats() {
+        List<ConsumerStats> result = new ArrayList<>(workers.size());
+        long head = cursor.get();
+        for (ConsumerWorker worker : workers) {
+            int queued = worker.overflow != null ? worker.overflow.size() : 0;
+            result.add(new ConsumerStats(worker.consumer.getName(),
+                    Math.max(0, head - worker.next) + queued, worker.processed, worker.dropped, worker.maxBatch));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Поток, читающий кольцо для одного потребителя. С очередью
+     * переполнения он только копирует события в неё, а потребителя
+     * вызывает второй поток — sink.
+     */
+    private final class ConsumerWorker implements Runnable {
+        private final EventConsumer consumer;
+        private final Thread thread;
+        private final LifecycleEvent copy = new LifecycleEvent();
+        private final BlockingQueue<Overflowed> overflow;
+        private final Thread sink;
+
+        private volatile long next;
+        private volatile long processed;
+        private volatile long dropped;
+        private volatile int maxBatch;
+        private long unreportedGap;
+
+        ConsumerWorker(EventConsumer consumer) {
+            this.consumer = consumer;
+            this.thread = new Thread(this, "Bus-" + consumer.getName());
+            this.thread.setDaemon(true);
+            if (consumer.usesOverflow()) {
+                this.overflow = new LinkedBlockingQueue<>(overflowCapacity);
+                this.sink = new Thread(this::drainOverflow, "Bus-" + consumer.getName() + "-sink");
+                this.sink.setDaemon(true);
+            } else {
+                this.overflow = null;
+                this.sink = null;
+            }
+        }
+
+        void start() {
+            thread.start();
+            if (sink != null) {
+                sink.start();
+            }
+        }
+
+        void join(long millis) throws InterruptedException {
+            long deadline = System.nanoTime() + millis * 1_000_000;
+            thread.join(millis);
+            if (sink != null) {
+                sink.join(Math.max(1, (deadline - System.nanoTime()) / 1_000_000));
+            }
+        }
+
+        boolean isAlive() {
+            return thread.isAlive() || (sink != null && sink.isAlive());
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    int batch = drain();
+                    if (batch > 0) {
+                        if (overflow == null) {
+                            endBatch();
+                            if (batch > maxBatch) {
+                                maxBatch = batch;
+                            }
+                        }
+                    } else if (!running && next >= cursor.get()) {
+                        return;
+                    } else {
+                        LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    }
+                }
+            } finally {
+                if (overflow != null) {
+                    finishOverflow();
+                }
+            }
+        }
+
+        private int drain() {
+            int batch = 0;
+            long position = next;
+
+            while (batch < MAX_BATCH) {
+                int index = (int) (position & mask);
+                long before = published.getAcquire(index);
+
+                if (before == position) {
+                    copy.copyFrom(entries[index]);
+                    VarHandle.acquireFence();
+                    if (published.getAcquire(index) != position) {
+                        skip();
+                        position++;
+                        continue;
+                    }
+                    deliver();
+                    batch++;
+                    position++;
+                } else if ((before > position && before != WRITING)
+                        || cursor.get() - position > capacity) {
+                    skip();
+                    position++;
+                } else {
+                    break;
+                }
+            }
+
+            next = position;
+            if (overflow == null) {
+                reportGap();
+                if (batch > 0) {
+                    processed += batch;
+                }
+            }
+            return batch;
+        }
+
+        private void skip() {
+            unreportedGap++;
+            dropped++;
+        }
+
+        private void deliver() {
+            if (overflow != null) {
+                LifecycleEvent event = new LifecycleEvent();
+                event.copyFrom(copy);
+                if (overflow.offer(new Overflowed(event, unreportedGap))) {
+                    unreportedGap = 0;
+                } else {
+                    skip();
+                }
+                return;
+            }
+            reportGap();
+            onEvent(copy);
+        }
+
+        private void reportGap() {
+            if (unreportedGap > 0) {
+                long missed = unreportedGap;
+                unreportedGap = 0;
+                onGap(missed);
+            }
+        }
+
+        private void finishOverflow() {
+            try {
+                overflow.put(new Overflowed(null, unreportedGap));
+                unreportedGap = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                sink.interrupt();
+            }
+        }
+
+        private void drainOverflow() {
+            try {
+                while (true) {
+                    Overflowed item = overflow.take();
+                    int batch = 0;
+                    while (item != null) {
+                        if (item.missedBefore > 0) {
+                            onGap(item.missedBefore);
+                        }
+                        if (item.event == null) {
+                            finishBatch(batch);
+                            return;
+                        }
+                        onEvent(item.event);
+                        batch++;
+                        item = batch < MAX_BATCH ? overflow.poll() : null;
+                    }
+                    finishBatch(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void finishBatch(int batch) {
+            if (batch == 0) {
+                return;
+            }
+            processed += batch;
+            endBatch();
+            if (batch > maxBatch) {
+                maxBatch = batch;
+            }
+        }
+
+        private void onEvent(LifecycleEvent event) {
+            try {
+                consumer.onEvent(event);
+            } catch (RuntimeException e) {
+                LOGGER.warning(String.format("Потребитель %s: ошибка обработки события %s: %s",
+                        consumer.getName(), event.getType(), e));
+            }
+        }
+
+        private void onGap(long missed) {
+            try {
+                consumer.onGap(missed);
+            } catch (RuntimeException e) {
+                LOGGER.warning(String.format("Потребитель %s: ошибка обработки пропуска %d событий: %s",
+                        consumer.getName(), missed, e));
+            }
+        }
+
+        private void endBatch() {
+            try {
+                consumer.onBatchEnd();
+            } catch (RuntimeException e) {
+                LOGGER.warning(String.format("Потребитель %s: ошибка завершения пачки: %s",
+                        consumer.getName(), e));
+            }
+        }
+    }
+
+    /**
+     * Копия события в очереди переполнения и число событий, пропущенных
+     * перед ним; event == null завершает очередь.
+     */
+    private static final class Overflowed {
+        final LifecycleEvent event;
+        final long missedBefore;
+
+        Overflowed(LifecycleEvent event, long missedBefore) {
+            this.event = event;
+            this.missedBefore = missedBefore;
+        }
+    }
+
+    public static class ConsumerStats {
+        private final String name;
+        private final long lag;
+        private final long processed;
+        private final long dropped;
+        private final int maxBatch;
+
+        ConsumerStats(String name, long lag, long processed, long dropped, int maxBatch) {
+            this.name = name;
+            this.lag = lag;
+            this.processed = processed;
+            this.dropped = dropped;
+            this.maxBatch = maxBatch;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getLag() {
+            return lag;
+        }
+
+        public long getProcessed() {
+            return processed;
+        }
+
+        public long getDropped() {
+            return dropped;
+        }
+
+        public int getMaxBatch() {
+            return maxBatch;
+        }
+    }
+}
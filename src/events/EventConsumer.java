@@ -0,0 +1,25 @@
+package events;
+
+public interface EventConsumer {
+    String getName();
+
+    void onEvent(LifecycleEvent event);
+
+    default void onBatchEnd() {
+    }
+
+    /**
+     * Сколько событий пропущено перед следующим: потребитель отстал
+     * больше чем на ёмкость шины или переполнилась его очередь.
+     */
+    default void onGap(long missed) {
+    }
+
+    /**
+     * Обрабатывать события в отдельном потоке за очередью переполнения,
+     * чтобы долгие остановки обработки не приводили к потерям.
+     */
+    default boolean usesOverflow() {
+        return false;
+    }
+}
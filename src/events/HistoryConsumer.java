@@ -0,0 +1,25 @@
+package events;
+
+import model.HistoryEvent;
+import statistics.RideHistory;
+
+public class HistoryConsumer implements EventConsumer {
+    private final RideHistory history;
+
+    public HistoryConsumer(RideHistory history) {
+        this.history = history;
+    }
+
+    @Override
+    public String getName() {
+        return "history";
+    }
+
+    @Override
+    public void onEvent(LifecycleEvent event) {
+        HistoryEvent historyEvent = event.toHistoryEvent();
+        if (historyEvent != null) {
+            history.addEvent(historyEvent);
+        }
+    }
+}
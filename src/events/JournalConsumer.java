@@ -0,0 +1,35 @@
+package events;
+
+import journal.EventJournal;
+import model.HistoryEvent;
+
+public class JournalConsumer implements EventConsumer {
+    private final EventJournal journal;
+
+    public JournalConsumer(EventJournal journal) {
+        this.journal = journal;
+    }
+
+    @Override
+    public String getName() {
+        return "journal";
+    }
+
+    @Override
+    public boolean usesOverflow() {
+        return true;
+    }
+
+    @Override
+    public void onGap(long missed) {
+        journal.appendGap(missed);
+    }
+
+    @Override
+    public void onEvent(LifecycleEvent event) {
+        HistoryEvent historyEvent = event.toHistoryEvent();
+        if (historyEvent != null) {
+            journal.append(historyEvent);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package events;
+
+import model.FailureReason;
+import model.HistoryEvent;
+import model.Point;
+import model.RideRequest;
+import model.TaxiState;
+import model.TaxiType;
+
+/**
+ * Элемент кольцевого буфера шины. Объекты создаются один раз при создании
+ * шины и переиспользуются: производитель заполняет поля слота, а каждый
+ * потребитель получает собственную копию, которую можно читать до
+ * следующего вызова onEvent.
+ */
+public class LifecycleEvent {
+    public enum Type {
+        ORDER_CREATED,
+        ORDER_ASSIGNED,
+        ORDER_FAILED,
+        RIDE_STARTED,
+        RIDE_COMPLETED,
+        TAXI_STATE_CHANGED,
+        TAXI_LEG_STARTED
+    }
+
+    Type type;
+    long nanos;
+    long epochNanos;
+    RideRequest request;
+    int taxiId;
+    TaxiType taxiType;
+    TaxiState previousState;
+    TaxiState state;
+    Point location;
+    Point target;
+    long arrivalNanos;
+    FailureReason failureReason;
+    double distance;
+    double price;
+
+    void copyFrom(LifecycleEvent other) {
+        type = other.type;
+        nanos = other.nanos;
+        epochNanos = other.epochNanos;
+        request = other.request;
+        taxiId = other.taxiId;
+        taxiType = other.taxiType;
+        previousState = other.previousState;
+        state = other.state;
+        location = other.location;
+        target = other.target;
+        arrivalNanos = other.arrivalNanos;
+        failureReason = other.failureReason;
+        distance = other.distance;
+        price = other.price;
+    }
+
+    void reset(Type type) {
+        this.type = type;
+        this.nanos = System.nanoTime();
+        this.epochNanos = HistoryEvent.currentEpochNanos();
+        this.request = null;
+        this.taxiId = HistoryEvent.NO_TAXI;
+        this.taxiType = null;
+        this.previousState = null;
+        this.state = null;
+        this.location = null;
+        this.target = null;
+        this.arrivalNanos = 0;
+        this.failureReason = null;
+        this.distance = 0;
+        this.price = 0;
+    }
+
+    public HistoryEvent toHistoryEvent() {
+        switch (type) {
+            case ORDER_CREATED:
+                return HistoryEvent.orderCreated(epochNanos, request.getId(), request.getClientName(),
+                        request.getPriority(), request.getPickupLocation(), request.getDestination());
+            case ORDER_ASSIGNED:
+                return HistoryEvent.orderAssigned(epochNanos, request.getId(), taxiId, request.getClientName(),
+                        taxiType, distance);
+            case ORDER_FAILED:
+                return HistoryEvent.orderFailed(epochNanos, request.getId(), request.getClientName(), failureReason);
+            case RIDE_STARTED:
+                return HistoryEvent.rideStarted(epochNanos, request.getId(), taxiId, request.getClientName(),
+                        distance, price);
+            case RIDE_COMPLETED:
+                return HistoryEvent.rideCompleted(epochNanos, request.getId(), taxiId, request.getClientName(),
+                        distance, price);
+            default:
+                return null;
+        }
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    public long getEpochNanos() {
+        return epochNanos;
+    }
+
+    public RideRequest getRequest() {
+        return request;
+    }
+
+    public int getTaxiId() {
+        return taxiId;
+    }
+
+    public TaxiType getTaxiType() {
+        return taxiType;
+    }
+
+    public TaxiState getPreviousState() {
+        return previousState;
+    }
+
+    public TaxiState getState() {
+        return state;
+    }
+
+    public Point getLocation() {
+        return location;
+    }
+
+    /**
+     * Конечная точка участка пути для TAXI_LEG_STARTED; начальная — getLocation.
+     */
+    public Point getTarget() {
+        return target;
+    }
+
+    public long getArrivalNanos() {
+        return arrivalNanos;
+    }
+
+    public FailureReason getFailureReason() {
+        return failureReason;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+}
@@ -0,0 +1,104 @@
+package events;
+
+import model.TaxiState;
+import statistics.DemandHeatmap;
+import statistics.OrderTimelineTracker;
+import statistics.Statistics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class StatisticsConsumer implements EventConsumer {
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final Statistics statistics;
+    private final DemandHeatmap heatmap;
+    private final OrderTimelineTracker timelines;
+    private final Map<Integer, Long> availableSinceNanos;
+
+    public StatisticsConsumer(Statistics statistics) {
+        this.statistics = statistics;
+        this.heatmap = statistics.getHeatmap();
+        this.timelines = statistics.getOrderTimelines();
+        this.availableSinceNanos = new HashMap<>();
+    }
+
+    @Override
+    public String getName() {
+        return "statistics";
+    }
+
+    @Override
+    public boolean usesOverflow() {
+        return true;
+    }
+
+    /**
+     * Пропущенные события в итоги уже не попадут; отрезки простоя,
+     * начатые до пропуска, отбрасываются, а время состояний такси
+     * выравнивается на следующей смене состояния.
+     */
+    @Override
+    public void onGap(long missed) {
+        statistics.recordLostEvents(missed);
+        availableSinceNanos.clear();
+    }
+
+    @Override
+    public void onEvent(LifecycleEvent event) {
+        switch (event.getType()) {
+            case ORDER_CREATED:
+                heatmap.record(DemandHeatmap.Layer.PICKUPS, event.getLocation(), 1.0);
+                timelines.orderCreated(event.getRequest().getId(), event.getRequest().getCreatedNanos());
+                break;
+            case ORDER_ASSIGNED:
+                statistics.recordOrderAssigned(event.getRequest(), event.getTaxiType(), event.getNanos());
+                timelines.orderAssigned(event.getRequest().getId(), event.getRequest().getCreatedNanos(),
+                        event.getTaxiId(), event.getNanos());
+                break;
+            case ORDER_FAILED:
+                statistics.recordOrderFailed();
+                heatmap.record(DemandHeatmap.Layer.FAILED, event.getLocation(), 1.0);
+                timelines.orderFailed(event.getRequest().getId(), event.getRequest().getCreatedNanos(),
+                        event.getNanos());
+                break;
+            case RIDE_STARTED:
+                statistics.recordPickup(event.getRequest(), event.getTaxiType(), event.getNanos());
+                timelines.pickup(event.getRequest().getId(), event.getRequest().getCreatedNanos(),
+                        event.getTaxiId(), event.getNanos());
+                break;
+            case RIDE_COMPLETED:
+                statistics.recordCompletedRide(event.getTaxiId(), event.getRequest(), event.getTaxiType(),
+                        event.getDistance(), event.getPrice(), event.getNanos());
+                heatmap.record(DemandHeatmap.Layer.DROPOFFS, event.getLocation(), 1.0);
+                timelines.dropoff(event.getRequest().getId(), event.getRequest().getCreatedNanos(),
+                        event.getNanos());
+                break;
+            case TAXI_STATE_CHANGED:
+                onStateChange(event);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void onStateChange(LifecycleEvent event) {
+        int taxiId = event.getTaxiId();
+        statistics.recordStateChange(taxiId, event.getState(), event.getNanos());
+
+        if (event.getState() == TaxiState.GOING_TO_CLIENT && event.getDistance() > 0) {
+            statistics.recordDeadhead(taxiId, event.getDistance());
+        }
+
+        if (event.getPreviousState() == TaxiState.AVAILABLE) {
+            Long since = availableSinceNanos.remove(taxiId);
+            if (since != null) {
+                heatmap.record(DemandHeatmap.Layer.IDLE, event.getLocation(),
+                        (event.getNanos() - since) / NANOS_PER_SECOND);
+            }
+        }
+        if (event.getState() == TaxiState.AVAILABLE) {
+            availableSinceNanos.put(taxiId, event.getNanos());
+        }
+    }
+}
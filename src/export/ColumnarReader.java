@@ -0,0 +1,250 @@
+package export;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Чтение столбцового файла. При открытии читаются только каталоги групп
+ * строк; при сканировании столбца с диска читаются данные лишь этого
+ * столбца, а группы, чей диапазон min/max не пересекается с запрошенным,
+ * пропускаются целиком.
+ */
+public class ColumnarReader implements AutoCloseable {
+    private final FileChannel channel;
+    private final List<String> names;
+    private final List<ExportColumn.Type> types;
+    private final List<RowGroup> groups;
+    private ByteBuffer buffer;
+
+    private ColumnarReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.names = new ArrayList<>();
+        this.types = new ArrayList<>();
+        this.groups = new ArrayList<>();
+        this.buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+        long position = readHeader();
+        readGroups(position);
+    }
+
+    public static ColumnarReader open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new ColumnarReader(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private long readHeader() throws IOException {
+        ByteBuffer header = read(0, 12);
+        if (header.getInt() != ColumnarWriter.MAGIC) {
+            throw new IOException("Файл не является столбцовой выгрузкой событий");
+        }
+        int version = header.getInt();
+        if (version != ColumnarWriter.VERSION) {
+            throw new IOException("Неподдерживаемая версия выгрузки: " + version);
+        }
+        int columns = header.getInt();
+
+        long position = 12;
+        for (int i = 0; i < columns; i++) {
+            ByteBuffer entry = read(position, 3);
+            ExportColumn.Type type = ExportColumn.Type.values()[entry.get()];
+            int nameLength = entry.getShort();
+            ByteBuffer name = read(position + 3, nameLength);
+            byte[] bytes = new byte[nameLength];
+            name.get(bytes);
+
+            types.add(type);
+            names.add(new String(bytes, StandardCharsets.UTF_8));
+            position += 3 + nameLength;
+        }
+        return position;
+    }
+
+    private void readGroups(long position) throws IOException {
+        int directorySize = 4 + names.size() * ColumnarWriter.COLUMN_ENTRY_SIZE;
+        long size = channel.size();
+
+        while (position + directorySize <= size) {
+            ByteBuffer directory = read(position, directorySize);
+            RowGroup group = new RowGroup(directory.getInt(), names.size());
+            for (int column = 0; column < names.size(); column++) {
+                group.offsets[column] = directory.getLong();
+                group.lengths[column] = directory.getInt();
+                group.minimums[column] = directory.getLong();
+                group.maximums[column] = directory.getLong();
+            }
+
+            long end = group.offsets[names.size() - 1] + group.lengths[names.size() - 1];
+            if (end > size) {
+                break;
+            }
+            groups.add(group);
+            position = end;
+        }
+    }
+
+    public List<String> getColumnNames() {
+        return Collections.unmodifiableList(names);
+    }
+
+    public int getRowGroupCount() {
+        return groups.size();
+    }
+
+    public long getRowCount() {
+        long rows = 0;
+        for (RowGroup group : groups) {
+            rows += group.rows;
+        }
+        return rows;
+    }
+
+    public void scanLongs(String column, LongConsumer consumer) throws IOException {
+        int index = columnIndex(column);
+        ExportColumn.Type type = types.get(index);
+        if (type == ExportColumn.Type.DOUBLE) {
+            throw new IllegalArgumentException("Столбец " + column + " дробный");
+        }
+
+        for (RowGroup group : groups) {
+            ByteBuffer data = read(group.offsets[index], group.lengths[index]);
+            for (int i = 0; i < group.rows; i++) {
+                consumer.accept(readInteger(data, type));
+            }
+        }
+    }
+
+    public void scanDoubles(String column, DoubleConsumer consumer) throws IOException {
+        scanDoubles(column, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, consumer);
+    }
+
+    /**
+     * Передаёт значения столбца из диапазона [min, max]; пустые значения
+     * (NaN) пропускаются.
+     */
+    public void scanDoubles(String column, double min, double max, DoubleConsumer consumer) throws IOException {
+        int index = columnIndex(column);
+        ExportColumn.Type type = types.get(index);
+
+        for (RowGroup group : groups) {
+            if (!group.overlaps(index, type, min, max)) {
+                continue;
+            }
+            ByteBuffer data = read(group.offsets[index], group.lengths[index]);
+            for (int i = 0; i < group.rows; i++) {
+                double value = type == ExportColumn.Type.DOUBLE ? data.getDouble() : readInteger(data, type);
+                if (value >= min && value <= max) {
+                    consumer.accept(value);
+                }
+            }
+        }
+    }
+
+    private int columnIndex(String column) {
+        int index = names.indexOf(column);
+        if (index < 0) {
+            throw new IllegalArgumentException("Нет столбца " + column + ", доступны: " + names);
+        }
+        return index;
+    }
+
+    private static long readInteger(ByteBuffer data, ExportColumn.Type type) {
+        switch (type) {
+            case BYTE:
+                return data.get();
+            case INT:
+                return data.getInt();
+            default:
+                return data.getLong();
+        }
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocateDirect(length);
+        }
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Неожиданный конец файла выгрузки на позиции " + position);
+            }
+        }
+        return buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static final class RowGroup {
+        final int rows;
+        final long[] offsets;
+        final int[] lengths;
+        final long[] minimums;
+        final long[] maximums;
+
+        RowGroup(int rows, int columns) {
+            this.rows = rows;
+            this.offsets = new long[columns];
+            this.lengths = new int[columns];
+            this.minimums = new long[columns];
+            this.maximums = new long[columns];
+        }
+
+        boolean overlaps(int column, ExportColumn.Type type, double min, double max) {
+            if (type != ExportColumn.Type.DOUBLE) {
+                return maximums[column] >= min && minimums[column] <= max;
+            }
+            double groupMin = Double.longBitsToDouble(minimums[column]);
+            double groupMax = Double.longBitsToDouble(maximums[column]);
+            return groupMax >= min && groupMin <= max;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Использование: java export.ColumnarReader <файл> <столбец> [min max]");
+            return;
+        }
+
+        double min = args.length > 3 ? Double.parseDouble(args[2]) : Double.NEGATIVE_INFINITY;
+        double max = args.length > 3 ? Double.parseDouble(args[3]) : Double.POSITIVE_INFINITY;
+
+        try (ColumnarReader reader = open(Paths.get(args[0]))) {
+            double[] summary = {0, 0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+            long started = System.nanoTime();
+            reader.scanDoubles(args[1], min, max, value -> {
+                summary[0]++;
+                summary[1] += value;
+                summary[2] = Math.min(summary[2], value);
+                summary[3] = Math.max(summary[3], value);
+            });
+            long elapsedMicros = (System.nanoTime() - started) / 1000;
+
+            System.out.printf("Строк в файле: %d, групп: %d%n", reader.getRowCount(), reader.getRowGroupCount());
+            if (summary[0] == 0) {
+                System.out.printf("Столбец %s: значений в диапазоне нет (%d мкс)%n", args[1], elapsedMicros);
+            } else {
+                System.out.printf("Столбец %s: %d значений, сумма %.2f, среднее %.2f, min %.2f, max %.2f (%d мкс)%n",
+                        args[1], (long) summary[0], summary[1], summary[1] / summary[0], summary[2], summary[3],
+                        elapsedMicros);
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package export;
+
+import events.LifecycleEvent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Столбцовый файл событий. Строки копятся в массивах примитивов по столбцам;
+ * заполненная группа строк записывается одним вызовом в канал: сначала
+ * каталог группы (смещение, длина, минимум и максимум каждого столбца),
+ * затем данные столбцов подряд. Итогового оглавления нет — читатель идёт
+ * по каталогам групп, поэтому файл после аварийного завершения читается
+ * до последней целой группы.
+ */
+public class ColumnarWriter implements ExportWriter {
+    static final int MAGIC = 0x54584331;
+    static final int VERSION = 1;
+    static final int COLUMN_ENTRY_SIZE = 28;
+
+    private static final ExportColumn[] COLUMNS = ExportColumn.values();
+
+    private final FileChannel channel;
+    private final int rowGroupSize;
+    private final long[][] integers;
+    private final double[][] decimals;
+    private final ByteBuffer buffer;
+
+    private long position;
+    private int rows;
+    private long rowCount;
+
+    public ColumnarWriter(Path file, int rowGroupSize) throws IOException {
+        if (rowGroupSize < 1) {
+            throw new IllegalArgumentException("Размер группы строк должен быть положительным: " + rowGroupSize);
+        }
+        this.rowGroupSize = rowGroupSize;
+        this.integers = new long[COLUMNS.length][];
+        this.decimals = new double[COLUMNS.length][];
+
+        int groupBytes = 4 + COLUMNS.length * COLUMN_ENTRY_SIZE;
+        for (ExportColumn column : COLUMNS) {
+            if (column.getType() == ExportColumn.Type.DOUBLE) {
+                decimals[column.ordinal()] = new double[rowGroupSize];
+            } else {
+                integers[column.ordinal()] = new long[rowGroupSize];
+            }
+            groupBytes += column.getType().getWidth() * rowGroupSize;
+        }
+        this.buffer = ByteBuffer.allocateDirect(groupBytes);
+
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        writeHeader();
+    }
+
+    private void writeHeader() throws IOException {
+        buffer.clear();
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(COLUMNS.length);
+        for (ExportColumn column : COLUMNS) {
+            byte[] name = column.getColumnName().getBytes(StandardCharsets.UTF_8);
+            buffer.put((byte) column.getType().ordinal());
+            buffer.putShort((short) name.length);
+            buffer.put(name);
+        }
+        buffer.flip();
+        writeBuffer();
+    }
+
+    @Override
+    public void append(LifecycleEvent event) throws IOException {
+        for (ExportColumn column : COLUMNS) {
+            int index = column.ordinal();
+            if (column.getType() == ExportColumn.Type.DOUBLE) {
+                decimals[index][rows] = column.decimalValue(event);
+            } else {
+                integers[index][rows] = column.integerValue(event);
+            }
+        }
+        rows++;
+        rowCount++;
+
+        if (rows == rowGroupSize) {
+            writeRowGroup();
+        }
+    }
+
+    private void writeRowGroup() throws IOException {
+        if (rows == 0) {
+            return;
+        }
+
+        buffer.clear();
+        buffer.putInt(rows);
+        long dataOffset = position + 4 + (long) COLUMNS.length * COLUMN_ENTRY_SIZE;
+        for (ExportColumn column : COLUMNS) {
+            int length = column.getType().getWidth() * rows;
+            buffer.putLong(dataOffset);
+            buffer.putInt(length);
+            putStats(column);
+            dataOffset += length;
+        }
+
+        for (ExportColumn column : COLUMNS) {
+            putValues(column);
+        }
+
+        buffer.flip();
+        writeBuffer();
+        rows = 0;
+    }
+
+    private void putStats(ExportColumn column) {
+        int index = column.ordinal();
+        if (column.getType() == ExportColumn.Type.DOUBLE) {
+            double min = Double.NaN;
+            double max = Double.NaN;
+            double[] values = decimals[index];
+            for (int i = 0; i < rows; i++) {
+                double value = values[i];
+                if (Double.isNaN(value)) {
+                    continue;
+                }
+                if (Double.isNaN(min) || value < min) {
+                    min = value;
+                }
+                if (Double.isNaN(max) || value > max) {
+                    max = value;
+                }
+            }
+            buffer.putLong(Double.doubleToRawLongBits(min));
+            buffer.putLong(Double.doubleToRawLongBits(max));
+        } else {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            long[] values = integers[index];
+            for (int i = 0; i < rows; i++) {
+                min = Math.min(min, values[i]);
+                max = Math.max(max, values[i]);
+            }
+            buffer.putLong(min);
+            buffer.putLong(max);
+        }
+    }
+
+    private void putValues(ExportColumn column) {
+        int index = column.ordinal();
+        switch (column.getType()) {
+            case BYTE:
+                for (int i = 0; i < rows; i++) {
+                    buffer.put((byte) integers[index][i]);
+                }
+                break;
+            case INT:
+                for (int i = 0; i < rows; i++) {
+                    buffer.putInt((int) integers[index][i]);
+                }
+                break;
+            case LONG:
+                for (int i = 0; i < rows; i++) {
+                    buffer.putLong(integers[index][i]);
+                }
+                break;
+            default:
+                for (int i = 0; i < rows; i++) {
+                    buffer.putDouble(decimals[index][i]);
+                }
+                break;
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer);
+        }
+    }
+
+    @Override
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writeRowGroup();
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package export;
+
+import events.LifecycleEvent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class CsvWriter implements ExportWriter {
+    private static final int FLUSH_THRESHOLD = 64 * 1024;
+    private static final ExportColumn[] COLUMNS = ExportColumn.values();
+
+    private final FileChannel channel;
+    private final StringBuilder pending;
+    private long rowCount;
+
+    public CsvWriter(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.pending = new StringBuilder(FLUSH_THRESHOLD + 256);
+
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) {
+                pending.append(',');
+            }
+            pending.append(COLUMNS[i].getColumnName());
+        }
+        pending.append('\n');
+    }
+
+    @Override
+    public void append(LifecycleEvent event) throws IOException {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) {
+                pending.append(',');
+            }
+            COLUMNS[i].appendText(pending, event);
+        }
+        pending.append('\n');
+        rowCount++;
+
+        if (pending.length() >= FLUSH_THRESHOLD) {
+            flushPending();
+        }
+    }
+
+    private void flushPending() throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(pending.toString().getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        pending.setLength(0);
+    }
+
+    @Override
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushPending();
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package export;
+
+import events.LifecycleEvent;
+import model.Point;
+
+public enum ExportColumn {
+    EPOCH_NANOS("epoch_nanos", Type.LONG),
+    EVENT_TYPE("event_type", Type.BYTE),
+    ORDER_ID("order_id", Type.LONG),
+    TAXI_ID("taxi_id", Type.INT),
+    TAXI_TYPE("taxi_type", Type.BYTE),
+    TAXI_STATE("taxi_state", Type.BYTE),
+    FAILURE_REASON("failure_reason", Type.BYTE),
+    X("x", Type.DOUBLE),
+    Y("y", Type.DOUBLE),
+    DISTANCE("distance", Type.DOUBLE),
+    PRICE("price", Type.DOUBLE);
+
+    public enum Type {
+        BYTE(1),
+        INT(4),
+        LONG(8),
+        DOUBLE(8);
+
+        private final int width;
+
+        Type(int width) {
+            this.width = width;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+    }
+
+    private final String columnName;
+    private final Type type;
+
+    ExportColumn(String columnName, Type type) {
+        this.columnName = columnName;
+        this.type = type;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    long integerValue(LifecycleEvent event) {
+        switch (this) {
+            case EPOCH_NANOS:
+                return event.getEpochNanos();
+            case EVENT_TYPE:
+                return event.getType().ordinal();
+            case ORDER_ID:
+                return event.getRequest() != null ? event.getRequest().getId() : -1;
+            case TAXI_ID:
+                return event.getTaxiId();
+            case TAXI_TYPE:
+                return event.getTaxiType() != null ? event.getTaxiType().ordinal() : -1;
+            case TAXI_STATE:
+                return event.getState() != null ? event.getState().ordinal() : -1;
+            case FAILURE_REASON:
+                return event.getFailureReason() != null ? event.getFailureReason().ordinal() : -1;
+            default:
+                throw new IllegalStateException("Столбец " + columnName + " не целочисленный");
+        }
+    }
+
+    double decimalValue(LifecycleEvent event) {
+        Point location = event.getLocation();
+        switch (this) {
+            case X:
+                return location != null ? location.getX() : Double.NaN;
+            case Y:
+                return location != null ? location.getY() : Double.NaN;
+            case DISTANCE:
+                return event.getDistance();
+            case PRICE:
+                return event.getPrice();
+            default:
+                throw new IllegalStateException("Столбец " + columnName + " не дробный");
+        }
+    }
+
+    void appendText(StringBuilder row, LifecycleEvent event) {
+        switch (this) {
+            case EVENT_TYPE:
+                row.append(event.getType().name());
+                break;
+            case TAXI_TYPE:
+                appendName(row, event.getTaxiType());
+                break;
+            case TAXI_STATE:
+                appendName(row, event.getState());
+                break;
+            case FAILURE_REASON:
+                appendName(row, event.getFailureReason());
+                break;
+            case TAXI_ID:
+                if (event.getTaxiId() >= 0) {
+                    row.append(event.getTaxiId());
+                }
+                break;
+            case ORDER_ID:
+                if (event.getRequest() != null) {
+                    row.append(event.getRequest().getId());
+                }
+                break;
+            case EPOCH_NANOS:
+                row.append(event.getEpochNanos());
+                break;
+            default:
+                double value = decimalValue(event);
+                if (!Double.isNaN(value)) {
+                    row.append(value);
+                }
+                break;
+        }
+    }
+
+    private static void appendName(StringBuilder row, Enum<?> value) {
+        if (value != null) {
+            row.append(value.name());
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package export;
+
+import events.LifecycleEvent;
+
+import java.io.IOException;
+
+interface ExportWriter extends AutoCloseable {
+    void append(LifecycleEvent event) throws IOException;
+
+    long getRowCount();
+
+    @Override
+    void close() throws IOException;
+}
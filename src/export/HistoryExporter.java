@@ -0,0 +1,97 @@
+package export;
+
+import events.EventConsumer;
+import events.LifecycleEvent;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Logger;
+
+/**
+ * Потребитель шины, выгружающий каждое событие в файл. Запись идёт в потоке
+ * потребителя, поэтому медленный диск приводит только к отставанию (а при
+ * переполнении буфера — к потерям) этого потребителя, но не задерживает
+ * такси и диспетчера.
+ */
+public class HistoryExporter implements EventConsumer, AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(HistoryExporter.class.getName());
+
+    public static final String FILE_PROPERTY = "taxi.export.file";
+    public static final String FORMAT_PROPERTY = "taxi.export.format";
+    public static final String ROW_GROUP_PROPERTY = "taxi.export.rowgroup";
+    private static final int DEFAULT_ROW_GROUP = 65536;
+
+    private final Path file;
+    private final ExportWriter writer;
+    private boolean failed;
+
+    private HistoryExporter(Path file, ExportWriter writer) {
+        this.file = file;
+        this.writer = writer;
+    }
+
+    public static HistoryExporter columnar(Path file, int rowGroupSize) throws IOException {
+        return new HistoryExporter(file, new ColumnarWriter(file, rowGroupSize));
+    }
+
+    public static HistoryExporter csv(Path file) throws IOException {
+        return new HistoryExporter(file, new CsvWriter(file));
+    }
+
+    public static HistoryExporter openIfRequested() {
+        String name = System.getProperty(FILE_PROPERTY);
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+
+        Path file = Paths.get(name);
+        String format = System.getProperty(FORMAT_PROPERTY, name.endsWith(".csv") ? "csv" : "columnar");
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            HistoryExporter exporter = "csv".equalsIgnoreCase(format)
+                    ? csv(file)
+                    : columnar(file, Integer.getInteger(ROW_GROUP_PROPERTY, DEFAULT_ROW_GROUP));
+            LOGGER.info(String.format("Выгрузка событий (%s): %s", format, file.toAbsolutePath()));
+            return exporter;
+        } catch (IOException e) {
+            LOGGER.warning("Не удалось открыть файл выгрузки событий: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "export";
+    }
+
+    @Override
+    public void onEvent(LifecycleEvent event) {
+        if (failed) {
+            return;
+        }
+        try {
+            writer.append(event);
+        } catch (IOException e) {
+            failed = true;
+            LOGGER.warning(String.format("Выгрузка событий в %s остановлена: %s", file, e.getMessage()));
+        }
+    }
+
+    public long getRowCount() {
+        return writer.getRowCount();
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+            LOGGER.info(String.format("Выгружено событий: %d в %s", writer.getRowCount(), file));
+        } catch (IOException e) {
+            LOGGER.warning("Не удалось закрыть файл выгрузки событий: " + e.getMessage());
+        }
+    }
+}
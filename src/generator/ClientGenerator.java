@@ -1,7 +1,8 @@
 package generator;
 
+import events.EventBus;
 import model.*;
-import statistics.RideHistory;
+import simulation.SimulationClock;
 
 import java.util.Random;
 import java.util.concurrent.PriorityBlockingQueue;
@@ -15,9 +16,10 @@ public class ClientGenerator implements Runnable {
     private static final int MAX_DISTANCE = 50;
 
     private final PriorityBlockingQueue<RideRequest> orderQueue;
-    private final RideHistory history;
+    private final EventBus eventBus;
+    private final SimulationClock clock;
     private final Random random;
-    private final long intervalMs;
+    private final long intervalNanos;
     private final int totalRequests;
 
     private volatile boolean running;
@@ -26,35 +28,61 @@ public class ClientGenerator implements Runnable {
     public ClientGenerator(PriorityBlockingQueue<RideRequest> orderQueue,
                           long intervalMs,
                           int totalRequests,
-                          RideHistory history) {
+                          EventBus eventBus) {
+        this(orderQueue, intervalMs, totalRequests, eventBus, new SimulationClock());
+    }
+
+    public ClientGenerator(PriorityBlockingQueue<RideRequest> orderQueue,
+                          long intervalMs,
+                          int totalRequests,
+                          EventBus eventBus,
+                          SimulationClock clock) {
+        this(orderQueue, eventBus, clock, TimeUnit.MILLISECONDS.toNanos(intervalMs), totalRequests);
+    }
+
+    private ClientGenerator(PriorityBlockingQueue<RideRequest> orderQueue,
+                            EventBus eventBus,
+                            SimulationClock clock,
+                            long intervalNanos,
+                            int totalRequests) {
         this.orderQueue = orderQueue;
-        this.intervalMs = intervalMs;
+        this.intervalNanos = Math.max(1, intervalNanos);
         this.totalRequests = totalRequests;
-        this.history = history;
+        this.eventBus = eventBus;
+        this.clock = clock;
         this.random = new Random();
         this.running = true;
         this.generatedCount = 0;
     }
 
+    /**
+     * Генератор с заданной частотой заказов в секунду времени симуляции;
+     * частота может быть выше 1000 в секунду.
+     */
+    public static ClientGenerator withRate(PriorityBlockingQueue<RideRequest> orderQueue,
+                                           double ordersPerSecond,
+                                           int totalRequests,
+                                           EventBus eventBus,
+                                           SimulationClock clock) {
+        return new ClientGenerator(orderQueue, eventBus, clock, (long) (1_000_000_000L / ordersPerSecond),
+                totalRequests);
+    }
+
     @Override
     public void run() {
-        LOGGER.info(String.format("Генератор клиентов запущен (интервал: %d мс, всего заказов: %d)",
-                intervalMs, totalRequests));
+        LOGGER.info(String.format("Генератор клиентов запущен (интервал: %.3f мс, всего заказов: %d)",
+                intervalNanos / 1_000_000.0, totalRequests));
 
         try {
+            // заказы идут по расписанию, а не через паузу после каждого: время
+            // на создание заказа не сдвигает следующие
+            long nextNanos = clock.nanos();
             while (running && (totalRequests <= 0 || generatedCount < totalRequests)) {
                 RideRequest request = generateRequest();
+                eventBus.publishOrderCreated(request);
                 orderQueue.offer(request);
                 generatedCount++;
 
-                String priorityName = request.getPriority() == 2 ? "VIP" :
-                                     request.getPriority() == 1 ? "Высокий" : "Обычный";
-                history.recordOrderCreated(
-                    request.getId(),
-                    request.getClientName(),
-                    String.format("Приоритет: %s, Дистанция: %.1f км", priorityName, request.getDistance())
-                );
-
                 LOGGER.info(String.format("Сгенерирован новый заказ: %s", request));
                 LOGGER.info(String.format("Всего заказов в очереди: %d", orderQueue.size()));
 
@@ -63,7 +91,8 @@ public class ClientGenerator implements Runnable {
                     break;
                 }
 
-                Thread.sleep(intervalMs);
+                nextNanos += intervalNanos;
+                clock.waitUntil(nextNanos);
             }
         } catch (InterruptedException e) {
             LOGGER.info("Генератор клиентов прерван");
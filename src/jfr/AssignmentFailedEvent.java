@@ -0,0 +1,27 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("taxi.AssignmentFailed")
+@Label("Assignment Failed")
+@Category({"Taxi", "Dispatch"})
+@Description("Неудачная попытка назначить заказ")
+@StackTrace(false)
+public class AssignmentFailedEvent extends Event {
+    @Label("Order Id")
+    public long orderId;
+
+    @Label("Priority")
+    public int priority;
+
+    @Label("Candidates Scanned")
+    public int candidatesScanned;
+
+    @Label("Reason")
+    public String reason;
+}
@@ -0,0 +1,70 @@
+package jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.util.logging.Logger;
+
+public class FlightRecording {
+    private static final Logger LOGGER = Logger.getLogger(FlightRecording.class.getName());
+
+    public static final String OUTPUT_PROPERTY = "taxi.jfr";
+    public static final String SETTINGS_PROPERTY = "taxi.jfr.settings";
+    private static final String DEFAULT_SETTINGS = "config/taxi.jfc";
+
+    private final Recording recording;
+    private final Path output;
+
+    private FlightRecording(Recording recording, Path output) {
+        this.recording = recording;
+        this.output = output;
+    }
+
+    public static FlightRecording startIfRequested() {
+        String outputFile = System.getProperty(OUTPUT_PROPERTY);
+        if (outputFile == null || outputFile.isEmpty()) {
+            return null;
+        }
+
+        try {
+            Recording recording = new Recording(loadConfiguration());
+            Path output = Paths.get(outputFile);
+            recording.setName("taxi-system");
+            recording.setToDisk(true);
+            recording.setDestination(output);
+            recording.start();
+
+            LOGGER.info(String.format("Запись JFR включена, файл: %s", output.toAbsolutePath()));
+            return new FlightRecording(recording, output);
+        } catch (IOException | ParseException e) {
+            LOGGER.warning("Не удалось запустить запись JFR: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static Configuration loadConfiguration() throws IOException, ParseException {
+        Path settings = Paths.get(System.getProperty(SETTINGS_PROPERTY, DEFAULT_SETTINGS));
+        if (Files.exists(settings)) {
+            return Configuration.create(settings);
+        }
+
+        LOGGER.warning(String.format("Файл настроек %s не найден, используется профиль default", settings));
+        return Configuration.getConfiguration("default");
+    }
+
+    public void stop() {
+        try {
+            recording.stop();
+            LOGGER.info(String.format("Запись JFR сохранена в %s", output.toAbsolutePath()));
+        } catch (IllegalStateException e) {
+            LOGGER.warning("Запись JFR уже остановлена: " + e.getMessage());
+        } finally {
+            recording.close();
+        }
+    }
+}
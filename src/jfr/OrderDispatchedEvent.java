@@ -0,0 +1,42 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("taxi.OrderDispatched")
+@Label("Order Dispatched")
+@Category({"Taxi", "Dispatch"})
+@Description("Успешное назначение заказа такси")
+@StackTrace(false)
+public class OrderDispatchedEvent extends Event {
+    @Label("Order Id")
+    public long orderId;
+
+    @Label("Priority")
+    public int priority;
+
+    @Label("Candidates Scanned")
+    public int candidatesScanned;
+
+    @Label("Available Candidates")
+    public int availableCandidates;
+
+    @Label("Taxi Id")
+    public int taxiId;
+
+    @Label("Taxi Type")
+    public String taxiType;
+
+    @Label("Distance To Client, km")
+    public double distanceKm;
+
+    @Label("Taxi Queue Wait")
+    @Description("Часть длительности, проведённая в ожидании места в очереди такси")
+    @Timespan(Timespan.NANOSECONDS)
+    public long queueWaitNanos;
+}
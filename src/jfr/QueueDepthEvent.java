@@ -0,0 +1,23 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+@Name("taxi.QueueDepth")
+@Label("Queue Depth")
+@Category({"Taxi", "Dispatch"})
+@Description("Периодический замер очереди заказов и свободных такси")
+@Period("1 s")
+@StackTrace(false)
+public class QueueDepthEvent extends Event {
+    @Label("Queued Orders")
+    public int queuedOrders;
+
+    @Label("Available Taxis")
+    public int availableTaxis;
+}
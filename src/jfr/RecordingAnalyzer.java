@@ -0,0 +1,112 @@
+package jfr;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import statistics.LatencyHistogram;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class RecordingAnalyzer {
+    private final LatencyHistogram dispatchLatency = new LatencyHistogram();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final Map<String, LatencyHistogram> phaseLatency = new TreeMap<>();
+    private final Map<String, Integer> failuresByReason = new TreeMap<>();
+
+    private long dispatched;
+    private long candidatesTotal;
+    private long availableTotal;
+    private long queueSamples;
+    private long queueDepthTotal;
+    private int queueDepthMax;
+    private int availableTaxisMin = Integer.MAX_VALUE;
+
+    public void analyze(Path recording) throws IOException {
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                accept(file.readEvent());
+            }
+        }
+    }
+
+    private void accept(RecordedEvent event) {
+        switch (event.getEventType().getName()) {
+            case "taxi.OrderDispatched":
+                dispatched++;
+                long waited = event.hasField("queueWaitNanos") ? event.getLong("queueWaitNanos") : 0;
+                dispatchLatency.recordNanos(event.getDuration().toNanos() - waited);
+                queueWait.recordNanos(waited);
+                candidatesTotal += event.getInt("candidatesScanned");
+                availableTotal += event.getInt("availableCandidates");
+                break;
+            case "taxi.AssignmentFailed":
+                failuresByReason.merge(event.getString("reason"), 1, Integer::sum);
+                break;
+            case "taxi.RidePhase":
+                phaseLatency.computeIfAbsent(event.getString("phase"), k -> new LatencyHistogram())
+                        .recordNanos(event.getDuration().toNanos());
+                break;
+            case "taxi.QueueDepth":
+                int depth = event.getInt("queuedOrders");
+                queueSamples++;
+                queueDepthTotal += depth;
+                queueDepthMax = Math.max(queueDepthMax, depth);
+                availableTaxisMin = Math.min(availableTaxisMin, event.getInt("availableTaxis"));
+                break;
+            default:
+                break;
+        }
+    }
+
+    public void printReport() {
+        System.out.println("\n╔════════════════════════════════════════════════════════════════╗");
+        System.out.println("║                 АНАЛИЗ ЗАПИСИ JFR: ЗАДЕРЖКИ                    ║");
+        System.out.println("╠════════════════════════════════════════════════════════════════╣");
+        System.out.printf("║ %-18s %7s %8s %8s %8s %8s ║%n", "Этап, мс", "n", "p50", "p90", "p99", "max");
+        System.out.println("╠════════════════════════════════════════════════════════════════╣");
+        printRow("Назначение заказа", dispatchLatency);
+        printRow("Очередь такси", queueWait);
+        phaseLatency.forEach(this::printRow);
+        System.out.println("╠════════════════════════════════════════════════════════════════╣");
+
+        System.out.printf("║ Назначено: %-8d Ср. кандидатов: %-6.1f Свободных: %-6.1f   ║%n",
+                dispatched,
+                dispatched > 0 ? (double) candidatesTotal / dispatched : 0.0,
+                dispatched > 0 ? (double) availableTotal / dispatched : 0.0);
+        System.out.printf("║ Очередь: средняя %-7.1f максимум %-6d мин. свободных %-5s  ║%n",
+                queueSamples > 0 ? (double) queueDepthTotal / queueSamples : 0.0,
+                queueDepthMax,
+                queueSamples > 0 ? String.valueOf(availableTaxisMin) : "-");
+
+        if (!failuresByReason.isEmpty()) {
+            System.out.println("╠════════════════════════════════════════════════════════════════╣");
+            failuresByReason.forEach((reason, count) ->
+                    System.out.printf("║ Сбой назначения: %-33s %10d  ║%n", reason, count));
+        }
+        System.out.println("╚════════════════════════════════════════════════════════════════╝");
+    }
+
+    private void printRow(String name, LatencyHistogram histogram) {
+        System.out.printf("║ %-18s %7d %8.1f %8.1f %8.1f %8.1f ║%n",
+                name,
+                histogram.getCount(),
+                histogram.getPercentileMillis(50),
+                histogram.getPercentileMillis(90),
+                histogram.getPercentileMillis(99),
+                histogram.getMaxMicros() / 1000.0);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Использование: java -cp bin jfr.RecordingAnalyzer <файл.jfr>");
+            System.exit(1);
+        }
+
+        RecordingAnalyzer analyzer = new RecordingAnalyzer();
+        analyzer.analyze(Paths.get(args[0]));
+        analyzer.printReport();
+    }
+}
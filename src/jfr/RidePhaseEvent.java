@@ -0,0 +1,36 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("taxi.RidePhase")
+@Label("Ride Phase")
+@Category({"Taxi", "Ride"})
+@Description("Этап поездки: подача к клиенту или перевозка")
+@StackTrace(false)
+public class RidePhaseEvent extends Event {
+    public static final String GOING_TO_CLIENT = "GOING_TO_CLIENT";
+    public static final String TRANSPORTING = "TRANSPORTING";
+
+    @Label("Taxi Id")
+    public int taxiId;
+
+    @Label("Taxi Type")
+    public String taxiType;
+
+    @Label("Order Id")
+    public long orderId;
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("Distance, km")
+    public double distanceKm;
+
+    @Label("Planned Travel Time, ms")
+    public long plannedMillis;
+}
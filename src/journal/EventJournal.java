@@ -0,0 +1,277 @@
+package journal;
+
+import model.HistoryEvent;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал событий только на дозапись. Файлы-сегменты фиксированного размера
+ * отображаются в память; запись кодируется в буфер потока без блокировки,
+ * а под общей блокировкой ей выдаётся номер и она копируется в сегмент.
+ * Сброс на диск (force) выполняет отдельный поток раз в интервал, одним
+ * вызовом для всех записей, накопившихся с прошлого сброса.
+ */
+public class EventJournal implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(EventJournal.class.getName());
+
+    public static final String DIRECTORY_PROPERTY = "taxi.journal.dir";
+    public static final String SEGMENT_SIZE_PROPERTY = "taxi.journal.segment.mb";
+    public static final String FLUSH_INTERVAL_PROPERTY = "taxi.journal.flush.ms";
+    private static final int DEFAULT_SEGMENT_MB = 64;
+    private static final long DEFAULT_FLUSH_INTERVAL_MS = 200;
+
+    static final int MAGIC = 0x54584A33;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_HEADER_SIZE = 16;
+    static final String SEGMENT_SUFFIX = ".journal";
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ReentrantLock sequencerLock;
+    private final ScheduledExecutorService flusher;
+    private final ThreadLocal<Encoder> encoders;
+
+    private MappedByteBuffer segment;
+    private FileChannel segmentChannel;
+    private long nextSequence;
+    private long unflushedRecords;
+    private boolean closed;
+    private JournalListener listener;
+
+    private EventJournal(Path directory, int segmentSize, long flushIntervalMs) throws IOException {
+        if (segmentSize < HEADER_SIZE + RECORD_HEADER_SIZE + MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Размер сегмента журнала слишком мал: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.sequencerLock = new ReentrantLock();
+        this.encoders = ThreadLocal.withInitial(Encoder::new);
+
+        Files.createDirectories(directory);
+        reopenLastSegment();
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Journal-Flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleAtFixedRate(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public static EventJournal open(Path directory, int segmentSize, long flushIntervalMs) throws IOException {
+        return new EventJournal(directory, segmentSize, flushIntervalMs);
+    }
+
+    public static EventJournal openIfRequested() {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        if (directory == null || directory.isEmpty()) {
+            return null;
+        }
+
+        int segmentSize = Integer.getInteger(SEGMENT_SIZE_PROPERTY, DEFAULT_SEGMENT_MB) * 1024 * 1024;
+        long flushInterval = Long.getLong(FLUSH_INTERVAL_PROPERTY, DEFAULT_FLUSH_INTERVAL_MS);
+        try {
+            EventJournal journal = open(Paths.get(directory), segmentSize, flushInterval);
+            LOGGER.info(String.format("Журнал событий: %s, следующий номер %d",
+                    journal.directory.toAbsolutePath(), journal.getNextSequence()));
+            return journal;
+        } catch (IOException e) {
+            LOGGER.warning("Не удалось открыть журнал событий: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public long append(HistoryEvent event) {
+        return write(encoders.get().encode(event), event, 0);
+    }
+
+    /**
+     * Отмечает в журнале, что missed событий до него не дошли, чтобы
+     * читатель видел разрыв, а не молча склеивал события вокруг него.
+     */
+    public long appendGap(long missed) {
+        LOGGER.warning(String.format("Журнал пропустил %d событий, записан разрыв", missed));
+        return write(encoders.get().encodeGap(missed), null, missed);
+    }
+
+    private long write(ByteBuffer record, HistoryEvent event, long missed) {
+        sequencerLock.lock();
+        try {
+            if (closed) {
+                return -1;
+            }
+            if (segment == null || segment.remaining() < record.remaining()) {
+                rotate();
+            }
+
+            long sequence = nextSequence++;
+            record.putLong(8, sequence);
+            segment.put(record);
+            unflushedRecords++;
+            if (listener != null) {
+                if (event != null) {
+                    listener.onAppend(sequence, event);
+                } else {
+                    listener.onGap(sequence, missed);
+                }
+            }
+            return sequence;
+        } catch (IOException e) {
+            LOGGER.severe("Ошибка записи в журнал, журнал отключён: " + e.getMessage());
+            closed = true;
+            return -1;
+        } finally {
+            sequencerLock.unlock();
+        }
+    }
+
+    private void rotate() throws IOException {
+        if (segment != null) {
+            segment.force();
+            segmentChannel.close();
+        }
+
+        Path file = directory.resolve(segmentFileName(nextSequence));
+        segmentChannel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segment.putInt(MAGIC);
+        segment.putInt(segmentSize);
+        segment.putLong(nextSequence);
+        unflushedRecords++;
+
+        LOGGER.info(String.format("Новый сегмент журнала: %s", file.getFileName()));
+    }
+
+    private void reopenLastSegment() throws IOException {
+        List<Path> segments = JournalReader.listSegments(directory);
+        if (segments.isEmpty()) {
+            return;
+        }
+
+        Path last = segments.get(segments.size() - 1);
+        FileChannel channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+
+        JournalReader.SegmentCursor cursor = new JournalReader.SegmentCursor(buffer, last);
+        long lastSequence = cursor.getFirstSequence() - 1;
+        while (cursor.next()) {
+            lastSequence = cursor.getSequence();
+        }
+
+        buffer.position(cursor.getEndPosition());
+        segment = buffer;
+        segmentChannel = channel;
+        nextSequence = lastSequence + 1;
+    }
+
+    public void flush() {
+        MappedByteBuffer toFlush;
+        sequencerLock.lock();
+        try {
+            if (unflushedRecords == 0 || segment == null) {
+                return;
+            }
+            toFlush = segment;
+            unflushedRecords = 0;
+        } finally {
+            sequencerLock.unlock();
+        }
+
+        toFlush.force();
+    }
+
+    public void setListener(JournalListener listener) {
+        sequencerLock.lock();
+        try {
+            this.listener = listener;
+        } finally {
+            sequencerLock.unlock();
+        }
+    }
+
+    public long getNextSequence() {
+        sequencerLock.lock();
+        try {
+            return nextSequence;
+        } finally {
+            sequencerLock.unlock();
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        sequencerLock.lock();
+        try {
+            if (segment != null) {
+                segment.force();
+                segmentChannel.close();
+            }
+            closed = true;
+            LOGGER.info(String.format("Журнал событий закрыт, следующий номер %d", nextSequence));
+        } catch (IOException e) {
+            LOGGER.warning("Ошибка закрытия журнала: " + e.getMessage());
+        } finally {
+            sequencerLock.unlock();
+        }
+    }
+
+    static String segmentFileName(long firstSequence) {
+        return String.format("%020d%s", firstSequence, SEGMENT_SUFFIX);
+    }
+
+    private static final class Encoder {
+        private final ByteBuffer buffer = ByteBuffer.allocate(MAX_RECORD_SIZE + RECORD_HEADER_SIZE);
+        private final CRC32C checksum = new CRC32C();
+
+        ByteBuffer encode(HistoryEvent event) {
+            buffer.clear();
+            buffer.position(RECORD_HEADER_SIZE);
+            try {
+                HistoryEventCodec.encode(event, buffer);
+            } catch (BufferOverflowException e) {
+                throw new IllegalArgumentException("Событие слишком велико для журнала: " + event, e);
+            }
+            return seal();
+        }
+
+        ByteBuffer encodeGap(long missed) {
+            buffer.clear();
+            buffer.position(RECORD_HEADER_SIZE);
+            HistoryEventCodec.encodeGap(HistoryEvent.currentEpochNanos(), missed, buffer);
+            return seal();
+        }
+
+        private ByteBuffer seal() {
+            int bodyLength = buffer.position() - RECORD_HEADER_SIZE;
+            checksum.reset();
+            checksum.update(buffer.array(), RECORD_HEADER_SIZE, bodyLength);
+
+            buffer.putInt(0, bodyLength);
+            buffer.putInt(4, (int) checksum.getValue());
+            buffer.flip();
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package journal;
+
+import model.HistoryEvent;
+import model.Point;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+final class HistoryEventCodec {
+    private static final HistoryEvent.EventType[] TYPES = HistoryEvent.EventType.values();
+    private static final int TYPE_OFFSET = 8;
+    private static final byte GAP_TYPE = -1;
+
+    private HistoryEventCodec() {
+    }
+
+    static void encode(HistoryEvent event, ByteBuffer buffer) {
+        buffer.putLong(event.getEpochNanos());
+        buffer.put((byte) event.getType().ordinal());
+        buffer.put((byte) event.getDetail());
+        buffer.putLong(event.getOrderId());
+        buffer.putInt(event.getTaxiId());
+        buffer.putFloat((float) event.getDistance());
+        buffer.putFloat((float) event.getPrice());
+        putString(buffer, event.getClientName());
+
+        if (event.getType() == HistoryEvent.EventType.ORDER_CREATED) {
+            putPoint(buffer, event.getPickup());
+            putPoint(buffer, event.getDestination());
+        }
+    }
+
+    /**
+     * Запись о пропуске: на её месте должны были стоять missed событий,
+     * которые до журнала не дошли.
+     */
+    static void encodeGap(long epochNanos, long missed, ByteBuffer buffer) {
+        buffer.putLong(epochNanos);
+        buffer.put(GAP_TYPE);
+        buffer.putLong(missed);
+    }
+
+    static boolean isGap(ByteBuffer body) {
+        return body.get(TYPE_OFFSET) == GAP_TYPE;
+    }
+
+    static long decodeGap(ByteBuffer body) {
+        return body.getLong(TYPE_OFFSET + 1);
+    }
+
+    static HistoryEvent decode(ByteBuffer buffer) {
+        long epochNanos = buffer.getLong();
+        HistoryEvent.EventType type = TYPES[buffer.get()];
+        int detail = buffer.get();
+        long orderId = buffer.getLong();
+        int taxiId = buffer.getInt();
+        float distance = buffer.getFloat();
+        float price = buffer.getFloat();
+        String clientName = getString(buffer);
+
+        Point pickup = null;
+        Point destination = null;
+        if (type == HistoryEvent.EventType.ORDER_CREATED) {
+            pickup = getPoint(buffer);
+            destination = getPoint(buffer);
+        }
+        return new HistoryEvent(epochNanos, type, orderId, taxiId, clientName, distance, price, detail,
+                pickup, destination);
+    }
+
+    private static void putPoint(ByteBuffer buffer, Point point) {
+        buffer.putDouble(point.getX());
+        buffer.putDouble(point.getY());
+    }
+
+    private static Point getPoint(ByteBuffer buffer) {
+        return new Point(buffer.getDouble(), buffer.getDouble());
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,14 @@
+package journal;
+
+import model.HistoryEvent;
+
+@FunctionalInterface
+public interface JournalListener {
+    void onAppend(long sequence, HistoryEvent event);
+
+    /**
+     * Запись sequence отмечает missed событий, не попавших в журнал.
+     */
+    default void onGap(long sequence, long missed) {
+    }
+}
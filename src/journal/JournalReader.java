@@ -0,0 +1,224 @@
+package journal;
+
+import model.HistoryEvent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Последовательное чтение журнала. Сегменты отображаются в память по одному
+ * в режиме только для чтения, так что в куче оказывается лишь текущее
+ * декодированное событие. Чтение останавливается на первой неполной или
+ * повреждённой записи — это хвост, не попавший на диск до сбоя.
+ */
+public class JournalReader implements AutoCloseable {
+    private final List<Path> segments;
+    private final long fromSequence;
+
+    private int segmentIndex;
+    private SegmentCursor cursor;
+    private HistoryEvent event;
+    private long missedEvents;
+    private long sequence = -1;
+
+    private JournalReader(List<Path> segments, long fromSequence) {
+        this.segments = segments;
+        this.fromSequence = fromSequence;
+    }
+
+    public static JournalReader open(Path directory) throws IOException {
+        return open(directory, 0);
+    }
+
+    public static JournalReader open(Path directory, long fromSequence) throws IOException {
+        List<Path> all = listSegments(directory);
+        int first = 0;
+        for (int i = 1; i < all.size(); i++) {
+            if (firstSequenceOf(all.get(i)) <= fromSequence) {
+                first = i;
+            }
+        }
+        return new JournalReader(new ArrayList<>(all.subList(first, all.size())), fromSequence);
+    }
+
+    public boolean next() throws IOException {
+        while (true) {
+            if (cursor == null) {
+                if (segmentIndex >= segments.size()) {
+                    return false;
+                }
+                cursor = openSegment(segments.get(segmentIndex++));
+                if (sequence >= 0 && cursor.getFirstSequence() != sequence + 1) {
+                    throw new IOException(String.format("Разрыв в журнале перед сегментом %s: ожидался номер %d",
+                            segments.get(segmentIndex - 1).getFileName(), sequence + 1));
+                }
+            }
+
+            if (!cursor.next()) {
+                cursor = null;
+                continue;
+            }
+
+            sequence = cursor.getSequence();
+            if (sequence < fromSequence) {
+                continue;
+            }
+            ByteBuffer body = cursor.getBody();
+            if (HistoryEventCodec.isGap(body)) {
+                event = null;
+                missedEvents = HistoryEventCodec.decodeGap(body);
+            } else {
+                event = HistoryEventCodec.decode(body);
+                missedEvents = 0;
+            }
+            return true;
+        }
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Событие текущей записи или null, если запись — разрыв.
+     */
+    public HistoryEvent getEvent() {
+        return event;
+    }
+
+    public boolean isGap() {
+        return event == null;
+    }
+
+    public long getMissedEvents() {
+        return missedEvents;
+    }
+
+    @Override
+    public void close() {
+        cursor = null;
+        segmentIndex = segments.size();
+    }
+
+    static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> result = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return result;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EventJournal.SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                result.add(path);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - EventJournal.SEGMENT_SUFFIX.length()));
+    }
+
+    private static SegmentCursor openSegment(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new SegmentCursor(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), path);
+        }
+    }
+
+    static final class SegmentCursor {
+        private final MappedByteBuffer buffer;
+        private final long firstSequence;
+        private final CRC32C checksum = new CRC32C();
+
+        private int position;
+        private long sequence;
+        private ByteBuffer body;
+
+        SegmentCursor(MappedByteBuffer buffer, Path path) throws IOException {
+            if (buffer.limit() < EventJournal.HEADER_SIZE || buffer.getInt(0) != EventJournal.MAGIC) {
+                throw new IOException("Повреждён заголовок сегмента журнала " + path.getFileName());
+            }
+            this.buffer = buffer;
+            this.firstSequence = buffer.getLong(8);
+            this.position = EventJournal.HEADER_SIZE;
+            this.sequence = firstSequence - 1;
+        }
+
+        boolean next() {
+            int limit = buffer.limit();
+            if (limit - position < EventJournal.RECORD_HEADER_SIZE) {
+                return false;
+            }
+
+            int length = buffer.getInt(position);
+            int bodyStart = position + EventJournal.RECORD_HEADER_SIZE;
+            if (length <= 0 || length > limit - bodyStart) {
+                return false;
+            }
+            if (buffer.getLong(position + 8) != sequence + 1) {
+                return false;
+            }
+
+            ByteBuffer candidate = buffer.slice(bodyStart, length);
+            checksum.reset();
+            checksum.update(candidate.duplicate());
+            if ((int) checksum.getValue() != buffer.getInt(position + 4)) {
+                return false;
+            }
+
+            body = candidate;
+            sequence++;
+            position = bodyStart + length;
+            return true;
+        }
+
+        long getFirstSequence() {
+            return firstSequence;
+        }
+
+        long getSequence() {
+            return sequence;
+        }
+
+        ByteBuffer getBody() {
+            return body;
+        }
+
+        int getEndPosition() {
+            return position;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Использование: java -cp bin journal.JournalReader <каталог> [с_номера]");
+            System.exit(1);
+        }
+
+        long from = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        long count = 0;
+        try (JournalReader reader = open(Paths.get(args[0]), from)) {
+            while (reader.next()) {
+                if (reader.isGap()) {
+                    System.out.printf("%10d РАЗРЫВ: пропущено событий %d%n", reader.getSequence(),
+                            reader.getMissedEvents());
+                } else {
+                    System.out.printf("%10d %s%n", reader.getSequence(), reader.getEvent());
+                }
+                count++;
+            }
+        }
+        System.out.printf("Прочитано событий: %d%n", count);
+    }
+}
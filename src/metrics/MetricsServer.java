@@ -0,0 +1,324 @@
+package metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import events.EventBus;
+import model.TaxiState;
+import model.TaxiType;
+import statistics.LatencyHistogram;
+import statistics.OrderTimeline;
+import statistics.OrderTimelineTracker;
+import statistics.RateWindow;
+import statistics.RideLatencies;
+import statistics.Statistics;
+import statistics.StatisticsSnapshot;
+import taxi.Taxi;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * HTTP-эндпоинт /metrics в текстовом формате Prometheus. Запросы
+ * обслуживает один поток, поэтому буферы отрисовки переиспользуются
+ * между опросами; горячие структуры читаются только через атомики и
+ * volatile-поля, без блокировок.
+ */
+public class MetricsServer {
+    private static final Logger LOGGER = Logger.getLogger(MetricsServer.class.getName());
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] LATENCY_BUCKETS_SECONDS = {
+            0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120, 300
+    };
+
+    private final Statistics statistics;
+    private final List<Taxi> taxiFleet;
+    private final EventBus eventBus;
+    private final int port;
+
+    private final StringBuilder text;
+    private final long[] bucketBoundsMicros;
+    private final long[] bucketCounts;
+    private final int[] stateCounts;
+    private final String[] phaseLabels;
+    private byte[] body;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public MetricsServer(Statistics statistics, List<Taxi> taxiFleet, EventBus eventBus, int port) {
+        this.statistics = statistics;
+        this.taxiFleet = taxiFleet;
+        this.eventBus = eventBus;
+        this.port = port;
+        this.text = new StringBuilder(16 * 1024);
+        this.bucketBoundsMicros = new long[LATENCY_BUCKETS_SECONDS.length];
+        this.bucketCounts = new long[LATENCY_BUCKETS_SECONDS.length];
+        this.stateCounts = new int[TaxiState.values().length];
+        this.body = new byte[16 * 1024];
+
+        RideLatencies.Phase[] phases = RideLatencies.Phase.values();
+        this.phaseLabels = new String[phases.length];
+        for (RideLatencies.Phase phase : phases) {
+            phaseLabels[phase.ordinal()] = phase.name().toLowerCase();
+        }
+
+        for (int i = 0; i < LATENCY_BUCKETS_SECONDS.length; i++) {
+            bucketBoundsMicros[i] = Math.round(LATENCY_BUCKETS_SECONDS[i] * 1_000_000);
+        }
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Metrics-Server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", this::handle);
+        server.createContext("/orders", this::handleOrders);
+        server.start();
+
+        LOGGER.info(String.format("Метрики доступны по адресу http://localhost:%d/metrics",
+                server.getAddress().getPort()));
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            int length = render();
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body, 0, length);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * /orders — хронология заказов в работе и самых долгих завершённых,
+     * /orders/&lt;id&gt; — хронология одного заказа.
+     */
+    private void handleOrders(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            String id = path.length() > "/orders/".length() ? path.substring("/orders/".length()) : "";
+            int status = renderOrders(id);
+            int length = encode();
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(status, length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body, 0, length);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private int renderOrders(String id) {
+        text.setLength(0);
+        OrderTimelineTracker timelines = statistics.getOrderTimelines();
+        long now = System.nanoTime();
+
+        if (!id.isEmpty()) {
+            Optional<OrderTimeline> timeline;
+            try {
+                timeline = timelines.find(Long.parseLong(id));
+            } catch (NumberFormatException e) {
+                text.append("Некорректный номер заказа: ").append(id).append('\n');
+                return 400;
+            }
+            if (timeline.isEmpty()) {
+                text.append("Заказ #").append(id).append(" не найден среди активных и самых долгих\n");
+                return 404;
+            }
+            text.append(timeline.get().describe(now)).append('\n');
+            return 200;
+        }
+
+        text.append("В работе (").append(timelines.getActiveCount()).append("):\n");
+        for (OrderTimeline timeline : timelines.getActive()) {
+            text.append("  ").append(timeline.describe(now)).append('\n');
+        }
+        text.append("Самые долгие завершённые:\n");
+        for (OrderTimeline timeline : timelines.getSlowest()) {
+            text.append("  ").append(timeline.describe(now)).append('\n');
+        }
+        text.append(timelines.describeAverages()).append('\n');
+        return 200;
+    }
+
+    int render() {
+        text.setLength(0);
+        StatisticsSnapshot snapshot = statistics.snapshot();
+
+        counter("taxi_rides_completed_total", "Завершённые поездки", snapshot.getRidesCompleted());
+        counter("taxi_orders_assigned_total", "Назначенные заказы", snapshot.getOrdersAssigned());
+        counter("taxi_orders_failed_total", "Неудачные попытки назначения", snapshot.getOrdersFailed());
+        counter("taxi_distance_km_total", "Пройденная с пассажирами дистанция, км", snapshot.getTotalDistance());
+        counter("taxi_revenue_rub_total", "Выручка, руб", snapshot.getTotalRevenue());
+
+        gauge("taxi_order_queue_size", "Заказов в очереди (замер раз в секунду)", statistics.getLastQueueDepth());
+        renderFleetStates();
+        renderRates(snapshot);
+        renderLatencies();
+        renderEventBus();
+
+        return encode();
+    }
+
+    private void renderEventBus() {
+        counter("taxi_bus_published_total", "Событий опубликовано в шину", eventBus.getPublishedCount());
+
+        List<EventBus.ConsumerStats> consumers = eventBus.getConsumerStats();
+        header("taxi_bus_consumer_lag_events", "Отставание потребителя шины, событий", "gauge");
+        for (EventBus.ConsumerStats consumer : consumers) {
+            text.append("taxi_bus_consumer_lag_events{consumer=\"").append(consumer.getName()).append("\"} ")
+                    .append(consumer.getLag()).append('\n');
+        }
+        header("taxi_bus_consumer_processed_total", "Событий обработано потребителем", "counter");
+        for (EventBus.ConsumerStats consumer : consumers) {
+            text.append("taxi_bus_consumer_processed_total{consumer=\"").append(consumer.getName()).append("\"} ")
+                    .append(consumer.getProcessed()).append('\n');
+        }
+        header("taxi_bus_consumer_dropped_total", "Событий потеряно отставшим потребителем", "counter");
+        for (EventBus.ConsumerStats consumer : consumers) {
+            text.append("taxi_bus_consumer_dropped_total{consumer=\"").append(consumer.getName()).append("\"} ")
+                    .append(consumer.getDropped()).append('\n');
+        }
+    }
+
+    private void renderFleetStates() {
+        Arrays.fill(stateCounts, 0);
+        for (int i = 0; i < taxiFleet.size(); i++) {
+            stateCounts[taxiFleet.get(i).getState().ordinal()]++;
+        }
+
+        header("taxi_fleet_taxis", "Такси по состояниям", "gauge");
+        for (TaxiState state : TaxiState.values()) {
+            text.append("taxi_fleet_taxis{state=\"").append(state.name()).append("\"} ")
+                    .append(stateCounts[state.ordinal()]).append('\n');
+        }
+    }
+
+    private void renderRates(StatisticsSnapshot snapshot) {
+        header("taxi_rides_per_minute", "Поездок в минуту в скользящем окне", "gauge");
+        for (RateWindow window : RateWindow.values()) {
+            text.append("taxi_rides_per_minute{window=\"").append(window.getSeconds()).append("s\"} ")
+                    .append(snapshot.getRidesPerMinute(window)).append('\n');
+        }
+    }
+
+    private void renderLatencies() {
+        RideLatencies latencies = statistics.getLatencies();
+
+        header("taxi_order_latency_seconds", "Задержки этапов заказа", "histogram");
+        for (RideLatencies.Phase phase : RideLatencies.Phase.values()) {
+            LatencyHistogram histogram = latencies.get(phase);
+            String label = phaseLabels[phase.ordinal()];
+
+            histogram.cumulativeCounts(bucketBoundsMicros, bucketCounts);
+            long count = histogram.getCount();
+            for (int i = 0; i < LATENCY_BUCKETS_SECONDS.length; i++) {
+                text.append("taxi_order_latency_seconds_bucket{phase=\"").append(label)
+                        .append("\",le=\"").append(LATENCY_BUCKETS_SECONDS[i]).append("\"} ")
+                        .append(Math.min(bucketCounts[i], count)).append('\n');
+            }
+            text.append("taxi_order_latency_seconds_bucket{phase=\"").append(label)
+                    .append("\",le=\"+Inf\"} ").append(count).append('\n');
+            text.append("taxi_order_latency_seconds_sum{phase=\"").append(label).append("\"} ")
+                    .append(histogram.getTotalMicros() / 1_000_000.0).append('\n');
+            text.append("taxi_order_latency_seconds_count{phase=\"").append(label).append("\"} ")
+                    .append(count).append('\n');
+        }
+
+        header("taxi_order_latency_p99_seconds", "p99 задержки по приоритету и типу такси", "gauge");
+        for (RideLatencies.Phase phase : RideLatencies.Phase.values()) {
+            String label = phaseLabels[phase.ordinal()];
+            for (int priority = 0; priority < RideLatencies.PRIORITY_LEVELS; priority++) {
+                text.append("taxi_order_latency_p99_seconds{phase=\"").append(label)
+                        .append("\",priority=\"").append(priority).append("\"} ")
+                        .append(latencies.getByPriority(phase, priority).getValueAtPercentile(99) / 1_000_000.0)
+                        .append('\n');
+            }
+            for (TaxiType type : TaxiType.values()) {
+                text.append("taxi_order_latency_p99_seconds{phase=\"").append(label)
+                        .append("\",type=\"").append(type.name()).append("\"} ")
+                        .append(latencies.getByType(phase, type).getValueAtPercentile(99) / 1_000_000.0)
+                        .append('\n');
+            }
+        }
+    }
+
+    private void counter(String name, String help, double value) {
+        header(name, help, "counter");
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    private void counter(String name, String help, long value) {
+        header(name, help, "counter");
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    private void gauge(String name, String help, long value) {
+        header(name, help, "gauge");
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    private void header(String name, String help, String type) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private int encode() {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            ensureCapacity(length + 3);
+            if (c < 0x80) {
+                body[length++] = (byte) c;
+            } else if (c < 0x800) {
+                body[length++] = (byte) (0xC0 | (c >> 6));
+                body[length++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                body[length++] = (byte) (0xE0 | (c >> 12));
+                body[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                body[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return length;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > body.length) {
+            body = Arrays.copyOf(body, Math.max(required, body.length * 2));
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package model;
+
+public enum FailureReason {
+    NO_AVAILABLE_TAXI("нет доступных такси"),
+    TAXI_QUEUE_MISSING("очередь такси не найдена"),
+    ASSIGNMENT_TIMEOUT("таймаут при назначении"),
+    INTERRUPTED("прерывание");
+
+    private final String displayName;
+
+    FailureReason(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
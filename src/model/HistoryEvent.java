@@ -1,17 +1,41 @@
 package model;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Событие истории в компактном виде: время в наносекундах от эпохи,
+ * примитивные идентификаторы и числовые данные вместо готовой строки.
+ * Описание собирается только при показе, а строка времени общая для всех
+ * событий одной секунды.
+ */
 public class HistoryEvent {
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
-
-    private final LocalDateTime timestamp;
-    private final EventType type;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final EventType[] TYPES = EventType.values();
+    private static final TaxiType[] TAXI_TYPES = TaxiType.values();
+    private static final FailureReason[] FAILURE_REASONS = FailureReason.values();
+    private static final int FORMATTED_SECONDS = 1024;
+    public static final int NO_TAXI = -1;
+
+    // строки времени по номеру секунды: таблица истории показывает строки
+    // из многих секунд вперемешку, одна общая запись промахивалась бы на каждой
+    private static final AtomicReferenceArray<FormattedSecond> FORMATTED =
+            new AtomicReferenceArray<>(FORMATTED_SECONDS);
+
+    private final long epochNanos;
     private final long orderId;
-    private final Integer taxiId;
+    private final int taxiId;
+    private final float distance;
+    private final float price;
+    private final byte type;
+    private final byte detail;
     private final String clientName;
-    private final String description;
+    private final Point pickup;
+    private final Point destination;
 
     public enum EventType {
         ORDER_CREATED("Новый заказ"),
@@ -31,47 +55,162 @@ public class HistoryEvent {
         }
     }
 
-    public HistoryEvent(EventType type, long orderId, Integer taxiId, String clientName, String description) {
-        this.timestamp = LocalDateTime.now();
-        this.type = type;
+    public HistoryEvent(long epochNanos, EventType type, long orderId, int taxiId, String clientName,
+                        double distance, double price, int detail) {
+        this(epochNanos, type, orderId, taxiId, clientName, distance, price, detail, null, null);
+    }
+
+    public HistoryEvent(long epochNanos, EventType type, long orderId, int taxiId, String clientName,
+                        double distance, double price, int detail, Point pickup, Point destination) {
+        this.epochNanos = epochNanos;
+        this.type = (byte) type.ordinal();
         this.orderId = orderId;
         this.taxiId = taxiId;
         this.clientName = clientName;
-        this.description = description;
+        this.distance = (float) distance;
+        this.price = (float) price;
+        this.detail = (byte) detail;
+        this.pickup = pickup;
+        this.destination = destination;
+    }
+
+    public static HistoryEvent orderCreated(long epochNanos, long orderId, String clientName, int priority,
+                                            Point pickup, Point destination) {
+        return new HistoryEvent(epochNanos, EventType.ORDER_CREATED, orderId, NO_TAXI, clientName,
+                pickup.distanceTo(destination), 0, priority, pickup, destination);
+    }
+
+    public static HistoryEvent orderAssigned(long epochNanos, long orderId, int taxiId, String clientName,
+                                             TaxiType taxiType, double distanceToClient) {
+        return new HistoryEvent(epochNanos, EventType.ORDER_ASSIGNED, orderId, taxiId, clientName,
+                distanceToClient, 0, taxiType.ordinal());
+    }
+
+    public static HistoryEvent orderFailed(long epochNanos, long orderId, String clientName, FailureReason reason) {
+        return new HistoryEvent(epochNanos, EventType.ORDER_FAILED, orderId, NO_TAXI, clientName,
+                0, 0, reason.ordinal());
+    }
+
+    public static HistoryEvent rideStarted(long epochNanos, long orderId, int taxiId, String clientName,
+                                           double distance, double price) {
+        return new HistoryEvent(epochNanos, EventType.RIDE_STARTED, orderId, taxiId, clientName,
+                distance, price, 0);
+    }
+
+    public static HistoryEvent rideCompleted(long epochNanos, long orderId, int taxiId, String clientName,
+                                             double distance, double price) {
+        return new HistoryEvent(epochNanos, EventType.RIDE_COMPLETED, orderId, taxiId, clientName,
+                distance, price, 0);
+    }
+
+    public static long currentEpochNanos() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * NANOS_PER_SECOND + now.getNano();
+    }
+
+    public long getEpochNanos() {
+        return epochNanos;
     }
 
     public LocalDateTime getTimestamp() {
-        return timestamp;
+        return LocalDateTime.ofInstant(
+                Instant.ofEpochSecond(epochNanos / NANOS_PER_SECOND, epochNanos % NANOS_PER_SECOND),
+                ZoneId.systemDefault());
     }
 
     public EventType getType() {
-        return type;
+        return TYPES[type];
     }
 
     public long getOrderId() {
         return orderId;
     }
 
-    public Integer getTaxiId() {
+    public int getTaxiId() {
         return taxiId;
     }
 
+    public boolean hasTaxi() {
+        return taxiId != NO_TAXI;
+    }
+
     public String getClientName() {
         return clientName;
     }
 
+    public double getDistance() {
+        return distance;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public int getDetail() {
+        return detail;
+    }
+
+    public Point getPickup() {
+        return pickup;
+    }
+
+    public Point getDestination() {
+        return destination;
+    }
+
+    public TaxiType getTaxiType() {
+        return getType() == EventType.ORDER_ASSIGNED ? TAXI_TYPES[detail] : null;
+    }
+
+    public FailureReason getFailureReason() {
+        return getType() == EventType.ORDER_FAILED ? FAILURE_REASONS[detail] : null;
+    }
+
     public String getDescription() {
-        return description;
+        switch (getType()) {
+            case ORDER_CREATED:
+                String priorityName = detail == 2 ? "VIP" : detail == 1 ? "Высокий" : "Обычный";
+                return String.format("Приоритет: %s, Дистанция: %.1f км", priorityName, distance);
+            case ORDER_ASSIGNED:
+                return String.format("Тип: %s, Расст. до клиента: %.1f км", TAXI_TYPES[detail], distance);
+            case ORDER_FAILED:
+                return FAILURE_REASONS[detail].getDisplayName();
+            case RIDE_STARTED:
+                return String.format("Дистанция: %.1f км, Цена: %.2f руб", distance, price);
+            case RIDE_COMPLETED:
+                return String.format("Выручка: %.2f руб, Дистанция: %.1f км", price, distance);
+            default:
+                return "";
+        }
     }
 
     public String getFormattedTime() {
-        return timestamp.format(TIME_FORMATTER);
+        long second = Math.floorDiv(epochNanos, NANOS_PER_SECOND);
+        int slot = (int) Math.floorMod(second, (long) FORMATTED_SECONDS);
+        FormattedSecond cached = FORMATTED.get(slot);
+        if (cached == null || cached.epochSecond != second) {
+            String text = LocalDateTime.ofInstant(Instant.ofEpochSecond(second), ZoneId.systemDefault())
+                    .format(TIME_FORMATTER);
+            cached = new FormattedSecond(second, text);
+            FORMATTED.set(slot, cached);
+        }
+        return cached.text;
     }
 
     @Override
     public String toString() {
-        String taxiInfo = taxiId != null ? ", Такси #" + taxiId : "";
+        String taxiInfo = hasTaxi() ? ", Такси #" + taxiId : "";
         return String.format("[%s] %s - Заказ #%d%s: %s",
-                getFormattedTime(), type.getDisplayName(), orderId, taxiInfo, description);
+                getFormattedTime(), getType().getDisplayName(), orderId, taxiInfo, getDescription());
+    }
+
+    private static final class FormattedSecond {
+        final long epochSecond;
+        final String text;
+
+        FormattedSecond(long epochSecond, String text) {
+            this.epochSecond = epochSecond;
+            this.text = text;
+        }
     }
 }
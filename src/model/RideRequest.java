@@ -10,16 +10,41 @@ public class RideRequest implements Comparable<RideRequest> {
     private final Point pickupLocation;
     private final Point destination;
     private final LocalDateTime timestamp;
+    private final long createdNanos;
     private final int priority;
     private final String clientName;
 
+    private volatile long assignedNanos;
+    private volatile long pickedUpNanos;
+
     public RideRequest(Point pickupLocation, Point destination, int priority, String clientName) {
         this.id = idGenerator.incrementAndGet();
         this.pickupLocation = pickupLocation;
         this.destination = destination;
         this.timestamp = LocalDateTime.now();
+        this.createdNanos = System.nanoTime();
+        this.priority = priority;
+        this.clientName = clientName;
+    }
+
+    private RideRequest(long id, Point pickupLocation, Point destination, int priority, String clientName) {
+        this.id = id;
+        this.pickupLocation = pickupLocation;
+        this.destination = destination;
+        this.timestamp = LocalDateTime.now();
+        this.createdNanos = System.nanoTime();
         this.priority = priority;
         this.clientName = clientName;
+        idGenerator.accumulateAndGet(id, Math::max);
+    }
+
+    public static RideRequest restore(long id, Point pickupLocation, Point destination,
+                                      int priority, String clientName) {
+        return new RideRequest(id, pickupLocation, destination, priority, clientName);
+    }
+
+    public static void reserveIdsUpTo(long id) {
+        idGenerator.accumulateAndGet(id, Math::max);
     }
 
     public RideRequest(Point pickupLocation, Point destination) {
@@ -42,6 +67,26 @@ public class RideRequest implements Comparable<RideRequest> {
         return timestamp;
     }
 
+    public long getCreatedNanos() {
+        return createdNanos;
+    }
+
+    public long getAssignedNanos() {
+        return assignedNanos;
+    }
+
+    public void markAssigned(long nanos) {
+        this.assignedNanos = nanos;
+    }
+
+    public long getPickedUpNanos() {
+        return pickedUpNanos;
+    }
+
+    public void markPickedUp(long nanos) {
+        this.pickedUpNanos = nanos;
+    }
+
     public int getPriority() {
         return priority;
     }
@@ -60,7 +105,11 @@ public class RideRequest implements Comparable<RideRequest> {
         if (priorityComparison != 0) {
             return priorityComparison;
         }
-        return this.timestamp.compareTo(other.timestamp);
+        int timeComparison = this.timestamp.compareTo(other.timestamp);
+        if (timeComparison != 0) {
+            return timeComparison;
+        }
+        return Long.compare(this.id, other.id);
     }
 
     @Override
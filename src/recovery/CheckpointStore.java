@@ -0,0 +1,117 @@
+package recovery;
+
+import journal.EventJournal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+public class CheckpointStore {
+    private static final Logger LOGGER = Logger.getLogger(CheckpointStore.class.getName());
+
+    private static final int MAGIC = 0x54584350;
+    private static final String PREFIX = "checkpoint-";
+    private static final String SUFFIX = ".bin";
+    private static final int CHECKPOINTS_TO_KEEP = 2;
+
+    private final Path directory;
+
+    public CheckpointStore(Path directory) {
+        this.directory = directory;
+    }
+
+    public long save(StateProjection projection, EventJournal journal) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            projection.writeTo(out);
+        }
+        byte[] body = bytes.toByteArray();
+        long sequence = ByteBuffer.wrap(body).getLong();
+        journal.flush();
+
+        CRC32C checksum = new CRC32C();
+        checksum.update(body);
+
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(body.length);
+            out.writeInt((int) checksum.getValue());
+            out.write(body);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        deleteOldCheckpoints();
+        return sequence;
+    }
+
+    public boolean loadLatest(StateProjection projection) throws IOException {
+        List<Path> checkpoints = listCheckpoints();
+        for (int i = checkpoints.size() - 1; i >= 0; i--) {
+            Path file = checkpoints.get(i);
+            try {
+                load(file, projection);
+                LOGGER.info(String.format("Загружена контрольная точка %s", file.getFileName()));
+                return true;
+            } catch (IOException e) {
+                LOGGER.warning(String.format("Контрольная точка %s повреждена: %s", file.getFileName(), e.getMessage()));
+            }
+        }
+        return false;
+    }
+
+    private void load(Path file, StateProjection projection) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("неверный заголовок");
+            }
+            byte[] body = new byte[in.readInt()];
+            int expectedChecksum = in.readInt();
+            in.readFully(body);
+
+            CRC32C checksum = new CRC32C();
+            checksum.update(body);
+            if ((int) checksum.getValue() != expectedChecksum) {
+                throw new IOException("неверная контрольная сумма");
+            }
+
+            projection.readFrom(new DataInputStream(new ByteArrayInputStream(body)));
+        }
+    }
+
+    private void deleteOldCheckpoints() throws IOException {
+        List<Path> checkpoints = listCheckpoints();
+        for (int i = 0; i < checkpoints.size() - CHECKPOINTS_TO_KEEP; i++) {
+            Files.deleteIfExists(checkpoints.get(i));
+        }
+    }
+
+    private List<Path> listCheckpoints() throws IOException {
+        List<Path> result = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return result;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : stream) {
+                result.add(path);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+}
@@ -0,0 +1,103 @@
+package recovery;
+
+import journal.EventJournal;
+import journal.JournalReader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+public class RecoveryManager implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(RecoveryManager.class.getName());
+
+    public static final String CHECKPOINT_INTERVAL_PROPERTY = "taxi.checkpoint.interval.s";
+    private static final long DEFAULT_CHECKPOINT_INTERVAL_SECONDS = 30;
+
+    private final EventJournal journal;
+    private final CheckpointStore checkpoints;
+    private final StateProjection projection;
+    private ScheduledExecutorService scheduler;
+    private long lastCheckpointSequence = -1;
+
+    public RecoveryManager(EventJournal journal) {
+        this.journal = journal;
+        this.checkpoints = new CheckpointStore(journal.getDirectory());
+        this.projection = new StateProjection();
+    }
+
+    public StateProjection recover() throws IOException {
+        long started = System.nanoTime();
+        boolean fromCheckpoint = checkpoints.loadLatest(projection);
+        long checkpointSequence = projection.getLastSequence();
+        lastCheckpointSequence = checkpointSequence;
+
+        long replayed = replay(journal.getDirectory(), projection);
+        journal.setListener(projection);
+
+        LOGGER.info(String.format("Восстановление: %s, повторено событий журнала: %d, незавершённых заказов: %d (%d мс)",
+                fromCheckpoint ? "контрольная точка #" + checkpointSequence : "без контрольной точки",
+                replayed,
+                projection.getPendingOrders().size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)));
+        return projection;
+    }
+
+    static long replay(Path directory, StateProjection projection) throws IOException {
+        long replayed = 0;
+        try (JournalReader reader = JournalReader.open(directory, projection.getLastSequence() + 1)) {
+            while (reader.next()) {
+                if (reader.isGap()) {
+                    projection.onGap(reader.getSequence(), reader.getMissedEvents());
+                } else {
+                    projection.onAppend(reader.getSequence(), reader.getEvent());
+                }
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    public void startCheckpoints() {
+        long interval = Long.getLong(CHECKPOINT_INTERVAL_PROPERTY, DEFAULT_CHECKPOINT_INTERVAL_SECONDS);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Checkpoint-Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::checkpoint, interval, interval, TimeUnit.SECONDS);
+    }
+
+    public void checkpoint() {
+        if (projection.getLastSequence() == lastCheckpointSequence) {
+            return;
+        }
+
+        try {
+            lastCheckpointSequence = checkpoints.save(projection, journal);
+            LOGGER.info(String.format("Сохранена контрольная точка на событии #%d", lastCheckpointSequence));
+        } catch (IOException e) {
+            LOGGER.warning("Не удалось сохранить контрольную точку: " + e.getMessage());
+        }
+    }
+
+    public StateProjection getProjection() {
+        return projection;
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        checkpoint();
+        journal.setListener(null);
+    }
+}
@@ -0,0 +1,331 @@
+package recovery;
+
+import journal.JournalListener;
+import model.HistoryEvent;
+import model.Point;
+import model.TaxiState;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Состояние системы, восстановленное из журнала: незавершённые заказы,
+ * последние известные позиции такси и итоговые счётчики. События
+ * применяются строго в порядке номеров журнала, поэтому состояние вместе
+ * с номером последнего события можно сохранить как контрольную точку.
+ * <p>
+ * Через разрыв в журнале состояние заказов не переносится: любой из
+ * незавершённых заказов мог быть завершён среди пропущенных событий, и
+ * его повторная постановка дала бы лишнюю поездку. На разрыве они
+ * отбрасываются, и проекция дальше ведёт только заказы, созданные после
+ * него; итоговые счётчики занижены на пропущенные события.
+ */
+public class StateProjection implements JournalListener {
+    private static final Logger LOGGER = Logger.getLogger(StateProjection.class.getName());
+    private static final TaxiState[] TAXI_STATES = TaxiState.values();
+    private static final OrderStage[] ORDER_STAGES = OrderStage.values();
+
+    public enum OrderStage {
+        QUEUED,
+        ASSIGNED,
+        IN_RIDE
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Long, PendingOrder> pendingOrders = new HashMap<>();
+    private final Map<Integer, TaxiPosition> taxis = new HashMap<>();
+
+    private long lastSequence = -1;
+    private long maxOrderId;
+    private long ridesCompleted;
+    private int ordersAssigned;
+    private int ordersFailed;
+    private double totalDistance;
+    private double totalRevenue;
+
+    @Override
+    public void onAppend(long sequence, HistoryEvent event) {
+        lock.lock();
+        try {
+            apply(event);
+            lastSequence = sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onGap(long sequence, long missed) {
+        lock.lock();
+        try {
+            LOGGER.warning(String.format(
+                    "Разрыв журнала на #%d: пропущено %d событий, отброшено незавершённых заказов: %d",
+                    sequence, missed, pendingOrders.size()));
+            pendingOrders.clear();
+            lastSequence = sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void apply(HistoryEvent event) {
+        long orderId = event.getOrderId();
+        PendingOrder order = pendingOrders.get(orderId);
+
+        switch (event.getType()) {
+            case ORDER_CREATED:
+                pendingOrders.put(orderId, new PendingOrder(orderId, event.getClientName(), event.getDetail(),
+                        event.getPickup(), event.getDestination()));
+                maxOrderId = Math.max(maxOrderId, orderId);
+                break;
+            case ORDER_ASSIGNED:
+                ordersAssigned++;
+                // назначение публикуется после передачи заказа такси и может прийти позже начала поездки
+                if (order != null && order.stage == OrderStage.IN_RIDE) {
+                    break;
+                }
+                if (order != null) {
+                    order.stage = OrderStage.ASSIGNED;
+                    order.taxiId = event.getTaxiId();
+                }
+                updateTaxi(event.getTaxiId(), null, TaxiState.GOING_TO_CLIENT);
+                break;
+            case ORDER_FAILED:
+                ordersFailed++;
+                if (order != null) {
+                    order.stage = OrderStage.QUEUED;
+                    order.taxiId = HistoryEvent.NO_TAXI;
+                }
+                break;
+            case RIDE_STARTED:
+                if (order != null) {
+                    order.stage = OrderStage.IN_RIDE;
+                    order.taxiId = event.getTaxiId();
+                }
+                updateTaxi(event.getTaxiId(), order != null ? order.pickup : null, TaxiState.TRANSPORTING);
+                break;
+            case RIDE_COMPLETED:
+                ridesCompleted++;
+                totalDistance += event.getDistance();
+                totalRevenue += event.getPrice();
+                pendingOrders.remove(orderId);
+                updateTaxi(event.getTaxiId(), order != null ? order.destination : null, TaxiState.AVAILABLE);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void updateTaxi(int taxiId, Point location, TaxiState state) {
+        TaxiPosition taxi = taxis.computeIfAbsent(taxiId, TaxiPosition::new);
+        if (location != null) {
+            taxi.location = location;
+        }
+        taxi.state = state;
+    }
+
+    public long getLastSequence() {
+        lock.lock();
+        try {
+            return lastSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getMaxOrderId() {
+        return maxOrderId;
+    }
+
+    public long getRidesCompleted() {
+        return ridesCompleted;
+    }
+
+    public int getOrdersAssigned() {
+        return ordersAssigned;
+    }
+
+    public int getOrdersFailed() {
+        return ordersFailed;
+    }
+
+    public double getTotalDistance() {
+        return totalDistance;
+    }
+
+    public double getTotalRevenue() {
+        return totalRevenue;
+    }
+
+    public List<PendingOrder> getPendingOrders() {
+        lock.lock();
+        try {
+            List<PendingOrder> result = new ArrayList<>(pendingOrders.values());
+            result.sort((a, b) -> Long.compare(a.orderId, b.orderId));
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Point getTaxiLocation(int taxiId) {
+        lock.lock();
+        try {
+            TaxiPosition taxi = taxis.get(taxiId);
+            return taxi != null ? taxi.location : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        lock.lock();
+        try {
+            out.writeLong(lastSequence);
+            out.writeLong(maxOrderId);
+            out.writeLong(ridesCompleted);
+            out.writeInt(ordersAssigned);
+            out.writeInt(ordersFailed);
+            out.writeDouble(totalDistance);
+            out.writeDouble(totalRevenue);
+
+            out.writeInt(pendingOrders.size());
+            for (PendingOrder order : pendingOrders.values()) {
+                out.writeLong(order.orderId);
+                out.writeByte(order.stage.ordinal());
+                out.writeByte(order.priority);
+                out.writeInt(order.taxiId);
+                writePoint(out, order.pickup);
+                writePoint(out, order.destination);
+                out.writeUTF(order.clientName != null ? order.clientName : "");
+            }
+
+            out.writeInt(taxis.size());
+            for (TaxiPosition taxi : taxis.values()) {
+                out.writeInt(taxi.taxiId);
+                out.writeByte(taxi.state.ordinal());
+                out.writeBoolean(taxi.location != null);
+                if (taxi.location != null) {
+                    writePoint(out, taxi.location);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void readFrom(DataInputStream in) throws IOException {
+        lock.lock();
+        try {
+            lastSequence = in.readLong();
+            maxOrderId = in.readLong();
+            ridesCompleted = in.readLong();
+            ordersAssigned = in.readInt();
+            ordersFailed = in.readInt();
+            totalDistance = in.readDouble();
+            totalRevenue = in.readDouble();
+
+            pendingOrders.clear();
+            int orders = in.readInt();
+            for (int i = 0; i < orders; i++) {
+                long orderId = in.readLong();
+                OrderStage stage = ORDER_STAGES[in.readByte()];
+                int priority = in.readByte();
+                int taxiId = in.readInt();
+                Point pickup = readPoint(in);
+                Point destination = readPoint(in);
+                String clientName = in.readUTF();
+
+                PendingOrder order = new PendingOrder(orderId, clientName, priority, pickup, destination);
+                order.stage = stage;
+                order.taxiId = taxiId;
+                pendingOrders.put(orderId, order);
+            }
+
+            taxis.clear();
+            int taxiCount = in.readInt();
+            for (int i = 0; i < taxiCount; i++) {
+                TaxiPosition taxi = new TaxiPosition(in.readInt());
+                taxi.state = TAXI_STATES[in.readByte()];
+                if (in.readBoolean()) {
+                    taxi.location = readPoint(in);
+                }
+                taxis.put(taxi.taxiId, taxi);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void writePoint(DataOutputStream out, Point point) throws IOException {
+        out.writeDouble(point.getX());
+        out.writeDouble(point.getY());
+    }
+
+    private static Point readPoint(DataInputStream in) throws IOException {
+        return new Point(in.readDouble(), in.readDouble());
+    }
+
+    public static class PendingOrder {
+        private final long orderId;
+        private final String clientName;
+        private final int priority;
+        private final Point pickup;
+        private final Point destination;
+        private OrderStage stage = OrderStage.QUEUED;
+        private int taxiId = HistoryEvent.NO_TAXI;
+
+        PendingOrder(long orderId, String clientName, int priority, Point pickup, Point destination) {
+            this.orderId = orderId;
+            this.clientName = clientName;
+            this.priority = priority;
+            this.pickup = pickup;
+            this.destination = destination;
+        }
+
+        public long getOrderId() {
+            return orderId;
+        }
+
+        public String getClientName() {
+            return clientName;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public Point getPickup() {
+            return pickup;
+        }
+
+        public Point getDestination() {
+            return destination;
+        }
+
+        public OrderStage getStage() {
+            return stage;
+        }
+
+        public int getTaxiId() {
+            return taxiId;
+        }
+    }
+
+    private static class TaxiPosition {
+        private final int taxiId;
+        private Point location;
+        private TaxiState state = TaxiState.AVAILABLE;
+
+        TaxiPosition(int taxiId) {
+            this.taxiId = taxiId;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package replay;
+
+import events.LifecycleEvent;
+import model.HistoryEvent;
+import model.Point;
+import model.RideRequest;
+import model.TaxiState;
+
+/**
+ * Записанное событие жизненного цикла. В отличие от слота шины объект
+ * неизменяем и хранится в журнале повтора всё время, пока не вытеснен.
+ */
+public final class ReplayEvent {
+    private final LifecycleEvent.Type type;
+    private final long nanos;
+    private final long epochNanos;
+    private final int taxiId;
+    private final TaxiState state;
+    private final Point location;
+    private final Point target;
+    private final long arrivalNanos;
+    private final RideRequest request;
+    private final HistoryEvent historyEvent;
+    private final double distance;
+    private final double price;
+
+    ReplayEvent(LifecycleEvent event, long nanos) {
+        this.type = event.getType();
+        this.nanos = nanos;
+        this.epochNanos = event.getEpochNanos();
+        this.taxiId = event.getTaxiId();
+        this.state = event.getState();
+        this.location = event.getLocation();
+        this.target = event.getTarget();
+        this.arrivalNanos = event.getType() == LifecycleEvent.Type.TAXI_LEG_STARTED
+                ? event.getArrivalNanos() + (nanos - event.getNanos())
+                : 0;
+        this.request = event.getRequest();
+        this.historyEvent = event.toHistoryEvent();
+        this.distance = event.getDistance();
+        this.price = event.getPrice();
+    }
+
+    public LifecycleEvent.Type getType() {
+        return type;
+    }
+
+    /**
+     * Момент события по System.nanoTime; в журнале не убывает.
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    public long getEpochNanos() {
+        return epochNanos;
+    }
+
+    public int getTaxiId() {
+        return taxiId;
+    }
+
+    public TaxiState getState() {
+        return state;
+    }
+
+    public Point getLocation() {
+        return location;
+    }
+
+    public Point getTarget() {
+        return target;
+    }
+
+    public long getArrivalNanos() {
+        return arrivalNanos;
+    }
+
+    public RideRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Строка истории для событий заказа и поездки, null для событий такси.
+     */
+    public HistoryEvent getHistoryEvent() {
+        return historyEvent;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+}
@@ -0,0 +1,213 @@
+package replay;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Журнал повтора: события по порядку номеров в блоках фиксированного
+ * размера, сложенных в кольцо. Блок создаётся заново при каждом обороте,
+ * поэтому читатель, уже получивший ссылку на блок, дочитывает его без
+ * блокировок, даже если запись успела его вытеснить. Часть блоков несёт
+ * опорный кадр — копию состояния перед первым событием блока; от
+ * ближайшего кадра до нужного момента применяются только события между
+ * ними. После пропуска событий шиной записывается внеочередной кадр
+ * восстановленного состояния, и переход к моменту после разрыва начинается
+ * не раньше этого кадра: события по обе стороны разрыва никогда не
+ * применяются к одному состоянию. Пишет один поток — потребитель шины.
+ */
+public class ReplayLog {
+    static final int CHUNK_BITS = 12;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private final AtomicReferenceArray<Chunk> chunks;
+    private final int maxChunks;
+    private volatile long count;
+    private ReplayState gapKeyframe;
+
+    public ReplayLog(int maxEvents) {
+        this.maxChunks = Math.max(2, (maxEvents + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        this.chunks = new AtomicReferenceArray<>(maxChunks);
+    }
+
+    void append(ReplayEvent event, ReplayState keyframe) {
+        long index = count;
+        long number = index >>> CHUNK_BITS;
+        int offset = (int) (index & (CHUNK_SIZE - 1));
+        Chunk chunk;
+        if (offset == 0) {
+            chunk = new Chunk(number, gapKeyframe != null ? gapKeyframe : keyframe);
+            chunks.set((int) (number % maxChunks), chunk);
+        } else {
+            chunk = chunks.get((int) (number % maxChunks));
+            if (gapKeyframe != null) {
+                chunk.resync = new Resync(offset, gapKeyframe, chunk.resync);
+            }
+        }
+        gapKeyframe = null;
+        chunk.events[offset] = event;
+        count = index + 1;
+    }
+
+    /**
+     * Перед следующим событием пропущены события; keyframe — состояние,
+     * с которого продолжается запись.
+     */
+    void markGap(ReplayState keyframe) {
+        gapKeyframe = keyframe;
+    }
+
+    /**
+     * Начинается ли со следующего события новый блок.
+     */
+    boolean atChunkStart() {
+        return (count & (CHUNK_SIZE - 1)) == 0;
+    }
+
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Сколько событий помещается в кольцо блоков.
+     */
+    int getCapacity() {
+        return maxChunks * CHUNK_SIZE;
+    }
+
+    /**
+     * Номер первого события, к которому можно перейти: самый ранний
+     * опорный кадр в сохранившихся блоках.
+     */
+    public long getFirstIndex() {
+        if (count == 0) {
+            return 0;
+        }
+        long last = (count - 1) >>> CHUNK_BITS;
+        for (long number = Math.max(0, last - maxChunks + 2); number <= last; number++) {
+            Chunk chunk = chunk(number);
+            if (chunk == null) {
+                continue;
+            }
+            if (chunk.keyframe != null) {
+                return number << CHUNK_BITS;
+            }
+            Resync resync = chunk.resync;
+            if (resync != null) {
+                while (resync.previous != null) {
+                    resync = resync.previous;
+                }
+                return (number << CHUNK_BITS) + resync.offset;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Событие с номером index или null, если оно уже вытеснено.
+     */
+    public ReplayEvent get(long index) {
+        Chunk chunk = chunk(index >>> CHUNK_BITS);
+        return chunk != null ? chunk.events[(int) (index & (CHUNK_SIZE - 1))] : null;
+    }
+
+    /**
+     * Номер ближайшего опорного кадра не позже index или -1. Кадр после
+     * разрыва ближе любого кадра до него, поэтому разрыв не пересекается.
+     */
+    public long keyframeIndexAtOrBefore(long index) {
+        long first = getFirstIndex();
+        int offset = (int) (index & (CHUNK_SIZE - 1));
+        for (long number = index >>> CHUNK_BITS; number >= 0 && (number + 1) << CHUNK_BITS > first; number--) {
+            Chunk chunk = chunk(number);
+            if (chunk == null) {
+                return -1;
+            }
+            Resync resync = chunk.resync;
+            while (resync != null && resync.offset > offset) {
+                resync = resync.previous;
+            }
+            if (resync != null) {
+                return (number << CHUNK_BITS) + resync.offset;
+            }
+            if (chunk.keyframe != null) {
+                return number << CHUNK_BITS;
+            }
+            offset = CHUNK_SIZE - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Копия опорного кадра перед событием index.
+     */
+    public ReplayState keyframeCopy(long index) {
+        Chunk chunk = chunk(index >>> CHUNK_BITS);
+        if (chunk == null) {
+            return null;
+        }
+        int offset = (int) (index & (CHUNK_SIZE - 1));
+        if (offset == 0) {
+            return chunk.keyframe != null ? chunk.keyframe.copy() : null;
+        }
+        for (Resync resync = chunk.resync; resync != null; resync = resync.previous) {
+            if (resync.offset == offset) {
+                return resync.keyframe.copy();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Номер первого события позже nanos среди номеров [from, to) или to,
+     * если такого нет.
+     */
+    public long indexAfter(long nanos, long from, long to) {
+        long low = from;
+        long high = to;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            ReplayEvent event = get(middle);
+            if (event == null || event.getNanos() <= nanos) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private Chunk chunk(long number) {
+        if (number < 0) {
+            return null;
+        }
+        Chunk chunk = chunks.get((int) (number % maxChunks));
+        return chunk != null && chunk.number == number ? chunk : null;
+    }
+
+    private static final class Chunk {
+        final long number;
+        final ReplayState keyframe;
+        final ReplayEvent[] events;
+        Resync resync;
+
+        Chunk(long number, ReplayState keyframe) {
+            this.number = number;
+            this.keyframe = keyframe;
+            this.events = new ReplayEvent[CHUNK_SIZE];
+        }
+    }
+
+    /**
+     * Кадр после разрыва внутри блока; более поздние разрывы в начале списка.
+     */
+    private static final class Resync {
+        final int offset;
+        final ReplayState keyframe;
+        final Resync previous;
+
+        Resync(int offset, ReplayState keyframe, Resync previous) {
+            this.offset = offset;
+            this.keyframe = keyframe;
+            this.previous = previous;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package replay;
+
+import events.EventConsumer;
+import events.LifecycleEvent;
+import model.Point;
+import model.TaxiState;
+
+/**
+ * Записывает события шины в журнал повтора и ведёт по ним текущее
+ * состояние. Опорный кадр снимается в начале блока, если с предыдущего
+ * кадра прошло не меньше событий, чем восьмикратный размер состояния:
+ * при большом парке кадры реже, и их копирование не превышает по
+ * стоимости саму запись событий. Интервал не больше половины журнала,
+ * иначе при очень большом состоянии в журнале не осталось бы ни одного
+ * кадра и перейти было бы некуда. После пропуска событий шиной
+ * ожидающие заказы сбрасываются и сразу записывается внеочередной кадр,
+ * чтобы переход не применял события поверх состояния с пропуском.
+ */
+public class ReplayRecorder implements EventConsumer {
+    public static final String EVENTS_PROPERTY = "taxi.replay.events";
+    private static final int DEFAULT_EVENTS = 262_144;
+    private static final int KEYFRAME_STATE_FACTOR = 8;
+
+    private final ReplayLog log;
+    private final ReplayState state;
+    private final long maxKeyframeInterval;
+    private long eventsSinceKeyframe;
+    private long lastNanos;
+
+    public ReplayRecorder() {
+        this(Integer.getInteger(EVENTS_PROPERTY, DEFAULT_EVENTS));
+    }
+
+    public ReplayRecorder(int maxEvents) {
+        this.log = new ReplayLog(maxEvents);
+        this.state = new ReplayState();
+        this.maxKeyframeInterval = log.getCapacity() / 2;
+        this.eventsSinceKeyframe = Long.MAX_VALUE;
+    }
+
+    /**
+     * Начальное положение такси; вызывается до запуска шины.
+     */
+    public void place(int taxiId, TaxiState taxiState, Point location) {
+        state.place(taxiId, taxiState, location, System.nanoTime());
+    }
+
+    @Override
+    public String getName() {
+        return "replay";
+    }
+
+    @Override
+    public void onEvent(LifecycleEvent event) {
+        lastNanos = Math.max(lastNanos, event.getNanos());
+        ReplayEvent recorded = new ReplayEvent(event, lastNanos);
+
+        ReplayState keyframe = null;
+        long keyframeInterval = Math.min(maxKeyframeInterval, (long) KEYFRAME_STATE_FACTOR * state.size());
+        if (log.atChunkStart() && eventsSinceKeyframe >= keyframeInterval) {
+            keyframe = state.copy();
+            eventsSinceKeyframe = 0;
+        }
+        log.append(recorded, keyframe);
+        state.apply(recorded);
+        eventsSinceKeyframe++;
+    }
+
+    @Override
+    public void onGap(long missed) {
+        state.dropPending();
+        log.markGap(state.copy());
+        eventsSinceKeyframe = 0;
+    }
+
+    public ReplayLog getLog() {
+        return log;
+    }
+}
@@ -0,0 +1,235 @@
+package replay;
+
+import model.Point;
+import model.RideRequest;
+import model.TaxiState;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Состояние системы, восстановленное из событий: текущий участок пути
+ * каждого такси, ожидающие заказы и накопленные счётчики. Копия состояния
+ * служит опорным кадром журнала.
+ */
+public class ReplayState {
+    private TaxiState[] states;
+    private double[] fromX;
+    private double[] fromY;
+    private double[] toX;
+    private double[] toY;
+    private long[] departNanos;
+    private long[] arriveNanos;
+    private int taxiCount;
+
+    private final Map<Long, RideRequest> pending;
+    private long ordersCreated;
+    private long ordersAssigned;
+    private long ordersFailed;
+    private long ridesStarted;
+    private long ridesCompleted;
+    private double revenue;
+    private double distance;
+
+    public ReplayState() {
+        this(16);
+    }
+
+    private ReplayState(int capacity) {
+        this.states = new TaxiState[capacity];
+        this.fromX = new double[capacity];
+        this.fromY = new double[capacity];
+        this.toX = new double[capacity];
+        this.toY = new double[capacity];
+        this.departNanos = new long[capacity];
+        this.arriveNanos = new long[capacity];
+        this.pending = new HashMap<>();
+    }
+
+    public void place(int taxiId, TaxiState state, Point location, long nanos) {
+        ensureTaxi(taxiId);
+        states[taxiId] = state;
+        stop(taxiId, location, nanos);
+    }
+
+    public void apply(ReplayEvent event) {
+        switch (event.getType()) {
+            case ORDER_CREATED:
+                pending.put(event.getRequest().getId(), event.getRequest());
+                ordersCreated++;
+                break;
+            case ORDER_ASSIGNED:
+                pending.remove(event.getRequest().getId());
+                ordersAssigned++;
+                break;
+            case ORDER_FAILED:
+                // диспетчер возвращает неназначенный заказ в очередь
+                pending.put(event.getRequest().getId(), event.getRequest());
+                ordersFailed++;
+                break;
+            case RIDE_STARTED:
+                ridesStarted++;
+                break;
+            case RIDE_COMPLETED:
+                ridesCompleted++;
+                revenue += event.getPrice();
+                distance += event.getDistance();
+                break;
+            case TAXI_STATE_CHANGED:
+                ensureTaxi(event.getTaxiId());
+                states[event.getTaxiId()] = event.getState();
+                if (arriveNanos[event.getTaxiId()] <= event.getNanos()) {
+                    stop(event.getTaxiId(), event.getLocation(), event.getNanos());
+                }
+                break;
+            case TAXI_LEG_STARTED:
+                int taxiId = event.getTaxiId();
+                ensureTaxi(taxiId);
+                states[taxiId] = event.getState();
+                fromX[taxiId] = event.getLocation().getX();
+                fromY[taxiId] = event.getLocation().getY();
+                toX[taxiId] = event.getTarget().getX();
+                toY[taxiId] = event.getTarget().getY();
+                departNanos[taxiId] = event.getNanos();
+                arriveNanos[taxiId] = event.getArrivalNanos();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Забывает ожидающие заказы после пропуска событий: среди них могут
+     * быть уже назначенные. Заказы, которые всё ещё ждут, вернутся со
+     * следующей неудачной попыткой назначения.
+     */
+    void dropPending() {
+        pending.clear();
+    }
+
+    private void stop(int taxiId, Point location, long nanos) {
+        fromX[taxiId] = location.getX();
+        fromY[taxiId] = location.getY();
+        toX[taxiId] = location.getX();
+        toY[taxiId] = location.getY();
+        departNanos[taxiId] = nanos;
+        arriveNanos[taxiId] = nanos;
+    }
+
+    private void ensureTaxi(int taxiId) {
+        if (taxiId >= states.length) {
+            int capacity = Math.max(taxiId + 1, states.length * 2);
+            states = Arrays.copyOf(states, capacity);
+            fromX = Arrays.copyOf(fromX, capacity);
+            fromY = Arrays.copyOf(fromY, capacity);
+            toX = Arrays.copyOf(toX, capacity);
+            toY = Arrays.copyOf(toY, capacity);
+            departNanos = Arrays.copyOf(departNanos, capacity);
+            arriveNanos = Arrays.copyOf(arriveNanos, capacity);
+        }
+        if (states[taxiId] == null) {
+            taxiCount++;
+        }
+    }
+
+    public ReplayState copy() {
+        ReplayState copy = new ReplayState(0);
+        copy.states = states.clone();
+        copy.fromX = fromX.clone();
+        copy.fromY = fromY.clone();
+        copy.toX = toX.clone();
+        copy.toY = toY.clone();
+        copy.departNanos = departNanos.clone();
+        copy.arriveNanos = arriveNanos.clone();
+        copy.taxiCount = taxiCount;
+        copy.pending.putAll(pending);
+        copy.ordersCreated = ordersCreated;
+        copy.ordersAssigned = ordersAssigned;
+        copy.ordersFailed = ordersFailed;
+        copy.ridesStarted = ridesStarted;
+        copy.ridesCompleted = ridesCompleted;
+        copy.revenue = revenue;
+        copy.distance = distance;
+        return copy;
+    }
+
+    /**
+     * Размер состояния в записях; по нему выбирается частота опорных кадров.
+     */
+    int size() {
+        return taxiCount + pending.size();
+    }
+
+    /**
+     * Наибольший номер такси плюс один; такси без записей возвращают null в getState.
+     */
+    public int getTaxiCapacity() {
+        return states.length;
+    }
+
+    public int getTaxiCount() {
+        return taxiCount;
+    }
+
+    public TaxiState getState(int taxiId) {
+        return states[taxiId];
+    }
+
+    public double getFromX(int taxiId) {
+        return fromX[taxiId];
+    }
+
+    public double getFromY(int taxiId) {
+        return fromY[taxiId];
+    }
+
+    public double getToX(int taxiId) {
+        return toX[taxiId];
+    }
+
+    public double getToY(int taxiId) {
+        return toY[taxiId];
+    }
+
+    public long getDepartNanos(int taxiId) {
+        return departNanos[taxiId];
+    }
+
+    public long getArriveNanos(int taxiId) {
+        return arriveNanos[taxiId];
+    }
+
+    public Collection<RideRequest> getPending() {
+        return pending.values();
+    }
+
+    public long getOrdersCreated() {
+        return ordersCreated;
+    }
+
+    public long getOrdersAssigned() {
+        return ordersAssigned;
+    }
+
+    public long getOrdersFailed() {
+        return ordersFailed;
+    }
+
+    public long getRidesStarted() {
+        return ridesStarted;
+    }
+
+    public long getRidesCompleted() {
+        return ridesCompleted;
+    }
+
+    public double getRevenue() {
+        return revenue;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+}
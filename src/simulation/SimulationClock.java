@@ -0,0 +1,217 @@
+package simulation;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Общие часы симуляции для такси, диспетчера и генератора. Время
+ * симуляции идёт со скоростью speed относительно System.nanoTime и стоит
+ * на паузе; шаг пускает его на STEP_NANOS и снова останавливает. Текущий
+ * режим — неизменяемая эпоха в volatile-поле, поэтому без паузы проверка
+ * ворот — одно чтение. Ожидающие потоки спят на условии под общей
+ * блокировкой и просыпаются при любой смене эпохи, чтобы пересчитать
+ * оставшееся реальное время: поездка, начатая до паузы или смены
+ * скорости, досчитывается уже по новым правилам.
+ */
+public class SimulationClock {
+    public static final double MIN_SPEED = 0.1;
+    public static final double MAX_SPEED = 10;
+    public static final long STEP_NANOS = 1_000_000_000L;
+
+    private final ReentrantLock lock;
+    private final Condition changed;
+    private volatile Epoch epoch;
+
+    public SimulationClock() {
+        this.lock = new ReentrantLock();
+        this.changed = lock.newCondition();
+        this.epoch = new Epoch(0, System.nanoTime(), 1, Long.MAX_VALUE, 0);
+    }
+
+    /**
+     * Текущее время симуляции в наносекундах от создания часов.
+     */
+    public long nanos() {
+        return epoch.simAt(System.nanoTime());
+    }
+
+    public boolean isPaused() {
+        Epoch current = epoch;
+        return !current.free() && current.simAt(System.nanoTime()) >= current.limit;
+    }
+
+    public double getSpeed() {
+        return epoch.speed;
+    }
+
+    /**
+     * Момент симуляции, на котором часы встанут без новых команд: текущий
+     * на паузе, конец шага или Long.MAX_VALUE.
+     */
+    public long getLimit() {
+        return epoch.limit;
+    }
+
+    /**
+     * Номер эпохи; меняется при каждой паузе, шаге, возобновлении и смене скорости.
+     */
+    public long getVersion() {
+        return epoch.version;
+    }
+
+    public void pause() {
+        lock.lock();
+        try {
+            long real = System.nanoTime();
+            long sim = epoch.simAt(real);
+            switchTo(sim, real, epoch.speed, sim);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void resume() {
+        lock.lock();
+        try {
+            long real = System.nanoTime();
+            switchTo(epoch.simAt(real), real, epoch.speed, Long.MAX_VALUE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Пропускает STEP_NANOS времени симуляции и снова встаёт на паузу.
+     */
+    public void step() {
+        lock.lock();
+        try {
+            long real = System.nanoTime();
+            long sim = epoch.simAt(real);
+            switchTo(sim, real, epoch.speed, sim + STEP_NANOS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void setSpeed(double speed) {
+        double clamped = Math.max(MIN_SPEED, Math.min(MAX_SPEED, speed));
+        lock.lock();
+        try {
+            long real = System.nanoTime();
+            switchTo(epoch.simAt(real), real, clamped, epoch.limit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void switchTo(long sim, long real, double speed, long limit) {
+        epoch = new Epoch(sim, real, speed, limit, epoch.version + 1);
+        changed.signalAll();
+    }
+
+    /**
+     * Ждёт, пока время симуляции идёт; без паузы возвращается сразу.
+     */
+    public void awaitRunning() throws InterruptedException {
+        if (epoch.free()) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (isPaused()) {
+                changed.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Спит milliseconds миллисекунд времени симуляции.
+     */
+    public void sleep(long milliseconds) throws InterruptedException {
+        waitUntil(nanos() + milliseconds * 1_000_000);
+    }
+
+    /**
+     * Ждёт момента симуляции deadline, как бы ни менялись пауза и скорость.
+     */
+    public void waitUntil(long deadline) throws InterruptedException {
+        while (!sleepUntil(deadline, getVersion())) {
+            // эпоха сменилась — ждём дальше по новым правилам
+        }
+    }
+
+    /**
+     * Спит до момента симуляции deadline. Возвращает false раньше срока,
+     * если эпоха уже не version или время, шедшее при вызове, встало на
+     * конце шага, — чтобы вызывающий мог обновить то, что он показывает
+     * о своём ожидании.
+     */
+    public boolean sleepUntil(long deadline, long version) throws InterruptedException {
+        lock.lock();
+        try {
+            boolean running = !isPaused();
+            while (true) {
+                Epoch current = epoch;
+                long sim = current.simAt(System.nanoTime());
+                if (sim >= deadline) {
+                    return true;
+                }
+                if (current.version != version) {
+                    return false;
+                }
+                if (sim >= current.limit) {
+                    if (running) {
+                        // шаг закончился внутри ожидания
+                        return false;
+                    }
+                    changed.await();
+                } else {
+                    long simWait = Math.min(deadline, current.limit) - sim;
+                    changed.awaitNanos(Math.max(1, (long) (simWait / current.speed)));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Реальный момент System.nanoTime, когда время симуляции дойдёт до
+     * deadline при текущей скорости, или -1, если до него часы встанут.
+     */
+    public long realNanosAt(long deadline) {
+        Epoch current = epoch;
+        if (deadline > current.limit) {
+            return -1;
+        }
+        return current.realBase + (long) ((deadline - current.simBase) / current.speed);
+    }
+
+    private static final class Epoch {
+        final long simBase;
+        final long realBase;
+        final double speed;
+        final long limit;
+        final long version;
+
+        Epoch(long simBase, long realBase, double speed, long limit, long version) {
+            this.simBase = simBase;
+            this.realBase = realBase;
+            this.speed = speed;
+            this.limit = limit;
+            this.version = version;
+        }
+
+        long simAt(long real) {
+            long sim = simBase + (long) ((real - realBase) * speed);
+            return Math.min(sim, limit);
+        }
+
+        boolean free() {
+            return limit == Long.MAX_VALUE;
+        }
+    }
+}
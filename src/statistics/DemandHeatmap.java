@@ -0,0 +1,173 @@
+package statistics;
+
+import model.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Сетка экспоненциально затухающих счётчиков по городу. Ячейка хранит в
+ * одном long значение (float, старшие 32 бита) и момент последнего
+ * обновления в тиках по 100 мс (младшие 32 бита), поэтому запись — это
+ * CAS одного слова без блокировок, а затухание считается лениво.
+ */
+public class DemandHeatmap {
+    public static final double CITY_SIZE = 100.0;
+    public static final int GRID_SIZE = 20;
+    private static final int CELLS = GRID_SIZE * GRID_SIZE;
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final double DEFAULT_HALF_LIFE_SECONDS = 60.0;
+
+    public enum Layer {
+        PICKUPS("Спрос (посадки)"),
+        DROPOFFS("Высадки"),
+        FAILED("Сбои назначения"),
+        IDLE("Простой такси, сек");
+
+        private final String displayName;
+
+        Layer(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    private final AtomicLongArray cells;
+    private final double decayPerTick;
+    private final long originNanos;
+
+    public DemandHeatmap() {
+        this(DEFAULT_HALF_LIFE_SECONDS);
+    }
+
+    public DemandHeatmap(double halfLifeSeconds) {
+        this.cells = new AtomicLongArray(Layer.values().length * CELLS);
+        this.decayPerTick = Math.log(2) / (halfLifeSeconds * 10.0);
+        this.originNanos = System.nanoTime();
+    }
+
+    public void record(Layer layer, Point location, double weight) {
+        int index = layer.ordinal() * CELLS + cellIndex(location);
+        int now = currentTick();
+
+        while (true) {
+            long current = cells.get(index);
+            double decayed = decay(current, now);
+            long next = pack((float) (decayed + weight), now);
+            if (cells.compareAndSet(index, current, next)) {
+                return;
+            }
+        }
+    }
+
+    public double getValue(Layer layer, int cellX, int cellY) {
+        return decay(cells.get(layer.ordinal() * CELLS + cellY * GRID_SIZE + cellX), currentTick());
+    }
+
+    public double snapshot(Layer layer, float[] values) {
+        int now = currentTick();
+        int offset = layer.ordinal() * CELLS;
+        double max = 0;
+        for (int i = 0; i < CELLS; i++) {
+            float value = (float) decay(cells.get(offset + i), now);
+            values[i] = value;
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    public List<HotCell> topCells(Layer layer, int k) {
+        int now = currentTick();
+        int offset = layer.ordinal() * CELLS;
+        PriorityQueue<HotCell> top = new PriorityQueue<>(k + 1,
+                (a, b) -> Double.compare(a.getValue(), b.getValue()));
+
+        for (int i = 0; i < CELLS; i++) {
+            double value = decay(cells.get(offset + i), now);
+            if (value <= 0) {
+                continue;
+            }
+            if (top.size() < k) {
+                top.add(new HotCell(i % GRID_SIZE, i / GRID_SIZE, value));
+            } else if (value > top.peek().getValue()) {
+                top.poll();
+                top.add(new HotCell(i % GRID_SIZE, i / GRID_SIZE, value));
+            }
+        }
+
+        List<HotCell> result = new ArrayList<>(top);
+        result.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
+        return result;
+    }
+
+    private double decay(long packed, int now) {
+        float value = Float.intBitsToFloat((int) (packed >>> 32));
+        if (value == 0f) {
+            return 0.0;
+        }
+        int elapsed = now - (int) packed;
+        return elapsed > 0 ? value * Math.exp(-decayPerTick * elapsed) : value;
+    }
+
+    private static long pack(float value, int tick) {
+        return ((long) Float.floatToRawIntBits(value) << 32) | (tick & 0xFFFFFFFFL);
+    }
+
+    private int currentTick() {
+        return (int) ((System.nanoTime() - originNanos) / TICK_NANOS);
+    }
+
+    private static int cellIndex(Point location) {
+        return toCell(location.getY()) * GRID_SIZE + toCell(location.getX());
+    }
+
+    private static int toCell(double coordinate) {
+        int cell = (int) (coordinate / CITY_SIZE * GRID_SIZE);
+        return Math.max(0, Math.min(GRID_SIZE - 1, cell));
+    }
+
+    public static class HotCell {
+        private final int cellX;
+        private final int cellY;
+        private final double value;
+
+        HotCell(int cellX, int cellY, double value) {
+            this.cellX = cellX;
+            this.cellY = cellY;
+            this.value = value;
+        }
+
+        public int getCellX() {
+            return cellX;
+        }
+
+        public int getCellY() {
+            return cellY;
+        }
+
+        public double getValue() {
+            return value;
+        }
+
+        public Point getCenter() {
+            double cellSize = CITY_SIZE / GRID_SIZE;
+            return new Point((cellX + 0.5) * cellSize, (cellY + 0.5) * cellSize);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %.1f", getCenter(), value);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package statistics;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Лог-линейная гистограмма задержек в микросекундах (в духе HdrHistogram):
+ * на каждую степень двойки приходится 32 линейных поддиапазона, что даёт
+ * относительную погрешность около 3%. Запись не берёт блокировок.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+    private static final int FORMAT_VERSION = 1;
+
+    private final AtomicLongArray counts;
+    private final LongAdder totalMicros;
+    private final LongAccumulator maxMicros;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKET_COUNT);
+        this.totalMicros = new LongAdder();
+        this.maxMicros = new LongAccumulator(Long::max, 0L);
+    }
+
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1000);
+    }
+
+    public void recordMicros(long micros) {
+        long value = Math.max(0, micros);
+        counts.incrementAndGet(bucketIndex(value));
+        totalMicros.add(value);
+        maxMicros.accumulate(value);
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        totalMicros.add(other.totalMicros.sum());
+        maxMicros.accumulate(other.maxMicros.get());
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    public double getMeanMicros() {
+        long count = getCount();
+        return count > 0 ? (double) totalMicros.sum() / count : 0.0;
+    }
+
+    public long getTotalMicros() {
+        return totalMicros.sum();
+    }
+
+    public long getValueAtPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+
+        double clamped = Math.min(100.0, Math.max(0.0, percentile));
+        long target = Math.max(1, (long) Math.ceil(clamped / 100.0 * total));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += counts.get(i);
+            if (cumulative >= target) {
+                return Math.min(bucketUpperBound(i), maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    public void cumulativeCounts(long[] upperBoundsMicros, long[] result) {
+        int bound = 0;
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT && bound < upperBoundsMicros.length; i++) {
+            while (bound < upperBoundsMicros.length && bucketUpperBound(i) > upperBoundsMicros[bound]) {
+                result[bound++] = cumulative;
+            }
+            cumulative += counts.get(i);
+        }
+        while (bound < upperBoundsMicros.length) {
+            result[bound++] = cumulative;
+        }
+    }
+
+    public double getPercentileMillis(double percentile) {
+        return getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(totalMicros.sum());
+        out.writeLong(maxMicros.get());
+
+        int nonEmpty = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts.get(i) != 0) {
+                nonEmpty++;
+            }
+        }
+        out.writeInt(nonEmpty);
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = counts.get(i);
+            if (count != 0) {
+                out.writeShort(i);
+                out.writeLong(count);
+            }
+        }
+    }
+
+    public static LatencyHistogram readFrom(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Неподдерживаемая версия гистограммы: " + version);
+        }
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.totalMicros.add(in.readLong());
+        histogram.maxMicros.accumulate(in.readLong());
+
+        int nonEmpty = in.readInt();
+        for (int i = 0; i < nonEmpty; i++) {
+            int index = in.readUnsignedShort();
+            long count = in.readLong();
+            if (index >= BUCKET_COUNT) {
+                throw new IOException("Некорректный индекс корзины: " + index);
+            }
+            histogram.counts.addAndGet(index, count);
+        }
+        return histogram;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) ((value >>> shift) - SUB_BUCKET_COUNT);
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,177 @@
+package statistics;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * Отметки времени этапов одного заказа (System.nanoTime). Запись ведёт
+ * только потребитель статистики; читатели получают согласованную копию
+ * через счётчик версий: нечётная версия означает, что запись идёт, а
+ * изменившаяся за время копирования — что копию нужно снять заново.
+ */
+public final class OrderTimeline {
+    public static final int MAX_FAILURES = 8;
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final long orderId;
+    private final long[] failedNanos;
+    private long createdNanos;
+    private long assignedNanos;
+    private long pickupNanos;
+    private long dropoffNanos;
+    private int failures;
+    private int taxiId;
+
+    private volatile int version;
+
+    OrderTimeline(long orderId, long createdNanos) {
+        this.orderId = orderId;
+        this.createdNanos = createdNanos;
+        this.failedNanos = new long[MAX_FAILURES];
+        this.taxiId = -1;
+    }
+
+    void recordFailure(long nanos) {
+        beginWrite();
+        if (failures < MAX_FAILURES) {
+            failedNanos[failures] = nanos;
+        }
+        failures++;
+        endWrite();
+    }
+
+    void recordAssigned(int taxiId, long nanos) {
+        beginWrite();
+        this.taxiId = taxiId;
+        this.assignedNanos = nanos;
+        endWrite();
+    }
+
+    void recordPickup(int taxiId, long nanos) {
+        beginWrite();
+        this.taxiId = taxiId;
+        this.pickupNanos = nanos;
+        endWrite();
+    }
+
+    void recordDropoff(long nanos) {
+        beginWrite();
+        this.dropoffNanos = nanos;
+        endWrite();
+    }
+
+    private void beginWrite() {
+        version = version + 1;
+        VarHandle.storeStoreFence();
+    }
+
+    private void endWrite() {
+        version = version + 1;
+    }
+
+    OrderTimeline snapshot() {
+        OrderTimeline copy = new OrderTimeline(orderId, 0);
+        while (true) {
+            int before = version;
+            if ((before & 1) == 0) {
+                copy.createdNanos = createdNanos;
+                copy.assignedNanos = assignedNanos;
+                copy.pickupNanos = pickupNanos;
+                copy.dropoffNanos = dropoffNanos;
+                copy.failures = failures;
+                copy.taxiId = taxiId;
+                System.arraycopy(failedNanos, 0, copy.failedNanos, 0, MAX_FAILURES);
+                VarHandle.acquireFence();
+                if (version == before) {
+                    return copy;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public int getTaxiId() {
+        return taxiId;
+    }
+
+    public int getFailureCount() {
+        return failures;
+    }
+
+    /**
+     * Время i-го отказа от создания заказа; хранятся первые MAX_FAILURES отказов.
+     */
+    public long getFailureOffsetNanos(int index) {
+        if (index < 0 || index >= Math.min(failures, MAX_FAILURES)) {
+            throw new IndexOutOfBoundsException("Отказ " + index + " из " + failures);
+        }
+        return failedNanos[index] - createdNanos;
+    }
+
+    public boolean isCompleted() {
+        return dropoffNanos != 0;
+    }
+
+    public long getAssignmentWaitNanos(long now) {
+        if (assignedNanos != 0) {
+            return assignedNanos - createdNanos;
+        }
+        return (pickupNanos != 0 ? pickupNanos : now) - createdNanos;
+    }
+
+    public long getApproachNanos(long now) {
+        if (assignedNanos == 0) {
+            return 0;
+        }
+        return (pickupNanos != 0 ? pickupNanos : now) - assignedNanos;
+    }
+
+    public long getRideNanos(long now) {
+        if (pickupNanos == 0) {
+            return 0;
+        }
+        return (dropoffNanos != 0 ? dropoffNanos : now) - pickupNanos;
+    }
+
+    public long getTotalNanos(long now) {
+        return (dropoffNanos != 0 ? dropoffNanos : now) - createdNanos;
+    }
+
+    public String getStage() {
+        if (dropoffNanos != 0) {
+            return "завершён";
+        }
+        if (pickupNanos != 0) {
+            return "в поездке";
+        }
+        if (assignedNanos != 0) {
+            return "такси едет к клиенту";
+        }
+        return "ожидает назначения";
+    }
+
+    public String describe(long now) {
+        StringBuilder text = new StringBuilder(160);
+        text.append(String.format("Заказ #%d [%s]", orderId, getStage()));
+        if (taxiId >= 0) {
+            text.append(String.format(", такси #%d", taxiId));
+        }
+        text.append(String.format(": ожидание назначения %.1f с", getAssignmentWaitNanos(now) / NANOS_PER_SECOND));
+        if (failures > 0) {
+            text.append(String.format(" (отказов: %d", failures));
+            for (int i = 0; i < Math.min(failures, MAX_FAILURES); i++) {
+                text.append(i == 0 ? " на " : ", ");
+                text.append(String.format("%.1f", getFailureOffsetNanos(i) / NANOS_PER_SECOND));
+            }
+            text.append(" с)");
+        }
+        text.append(String.format(", подача %.1f с, поездка %.1f с, всего %.1f с",
+                getApproachNanos(now) / NANOS_PER_SECOND,
+                getRideNanos(now) / NANOS_PER_SECOND,
+                getTotalNanos(now) / NANOS_PER_SECOND));
+        return text.toString();
+    }
+}
@@ -0,0 +1,169 @@
+package statistics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Хронология заказов по идентификатору. Пока заказ не завершён, его запись
+ * лежит в таблице активных заказов; завершённая запись удаляется оттуда и
+ * только сравнивается с кучей самых долгих заказов фиксированного размера,
+ * так что память растёт с числом заказов в работе, а не с длиной прогона.
+ */
+public class OrderTimelineTracker {
+    public static final int SLOWEST_CAPACITY = 10;
+    private static final int MAX_ACTIVE_ORDERS = 100_000;
+
+    private static final Comparator<OrderTimeline> BY_TOTAL =
+            Comparator.comparingLong(timeline -> timeline.getTotalNanos(0));
+
+    private final ConcurrentHashMap<Long, OrderTimeline> active;
+    private final PriorityQueue<OrderTimeline> slowest;
+    private final ReentrantLock slowestLock;
+    private final AtomicLong untracked;
+
+    private long completedOrders;
+    private long assignmentWaitNanos;
+    private long approachNanos;
+    private long rideNanos;
+
+    public OrderTimelineTracker() {
+        this.active = new ConcurrentHashMap<>();
+        this.slowest = new PriorityQueue<>(SLOWEST_CAPACITY + 1, BY_TOTAL);
+        this.slowestLock = new ReentrantLock();
+        this.untracked = new AtomicLong();
+    }
+
+    public void orderCreated(long orderId, long createdNanos) {
+        timeline(orderId, createdNanos);
+    }
+
+    public void orderFailed(long orderId, long createdNanos, long nanos) {
+        OrderTimeline timeline = timeline(orderId, createdNanos);
+        if (timeline != null) {
+            timeline.recordFailure(nanos);
+        }
+    }
+
+    public void orderAssigned(long orderId, long createdNanos, int taxiId, long nanos) {
+        OrderTimeline timeline = timeline(orderId, createdNanos);
+        if (timeline != null) {
+            timeline.recordAssigned(taxiId, nanos);
+        }
+    }
+
+    public void pickup(long orderId, long createdNanos, int taxiId, long nanos) {
+        OrderTimeline timeline = timeline(orderId, createdNanos);
+        if (timeline != null) {
+            timeline.recordPickup(taxiId, nanos);
+        }
+    }
+
+    public void dropoff(long orderId, long createdNanos, long nanos) {
+        OrderTimeline timeline = timeline(orderId, createdNanos);
+        if (timeline == null) {
+            return;
+        }
+        timeline.recordDropoff(nanos);
+        active.remove(orderId);
+
+        slowestLock.lock();
+        try {
+            completedOrders++;
+            assignmentWaitNanos += timeline.getAssignmentWaitNanos(nanos);
+            approachNanos += timeline.getApproachNanos(nanos);
+            rideNanos += timeline.getRideNanos(nanos);
+
+            if (slowest.size() < SLOWEST_CAPACITY) {
+                slowest.add(timeline);
+            } else if (BY_TOTAL.compare(timeline, slowest.peek()) > 0) {
+                slowest.poll();
+                slowest.add(timeline);
+            }
+        } finally {
+            slowestLock.unlock();
+        }
+    }
+
+    private OrderTimeline timeline(long orderId, long createdNanos) {
+        OrderTimeline timeline = active.get(orderId);
+        if (timeline != null) {
+            return timeline;
+        }
+        if (active.size() >= MAX_ACTIVE_ORDERS) {
+            untracked.incrementAndGet();
+            return null;
+        }
+        timeline = new OrderTimeline(orderId, createdNanos);
+        active.put(orderId, timeline);
+        return timeline;
+    }
+
+    public Optional<OrderTimeline> find(long orderId) {
+        OrderTimeline timeline = active.get(orderId);
+        if (timeline != null) {
+            return Optional.of(timeline.snapshot());
+        }
+
+        slowestLock.lock();
+        try {
+            for (OrderTimeline completed : slowest) {
+                if (completed.getOrderId() == orderId) {
+                    return Optional.of(completed);
+                }
+            }
+        } finally {
+            slowestLock.unlock();
+        }
+        return Optional.empty();
+    }
+
+    public List<OrderTimeline> getActive() {
+        List<OrderTimeline> result = new ArrayList<>(active.size());
+        for (OrderTimeline timeline : active.values()) {
+            result.add(timeline.snapshot());
+        }
+        result.sort(Comparator.comparingLong(OrderTimeline::getOrderId));
+        return result;
+    }
+
+    public List<OrderTimeline> getSlowest() {
+        slowestLock.lock();
+        try {
+            List<OrderTimeline> result = new ArrayList<>(slowest);
+            result.sort(BY_TOTAL.reversed());
+            return result;
+        } finally {
+            slowestLock.unlock();
+        }
+    }
+
+    public int getActiveCount() {
+        return active.size();
+    }
+
+    public long getUntrackedCount() {
+        return untracked.get();
+    }
+
+    public String describeAverages() {
+        slowestLock.lock();
+        try {
+            if (completedOrders == 0) {
+                return "Завершённых заказов нет";
+            }
+            return String.format("Среднее по %d заказам: ожидание назначения %.1f с, подача %.1f с, поездка %.1f с",
+                    completedOrders,
+                    assignmentWaitNanos / 1e9 / completedOrders,
+                    approachNanos / 1e9 / completedOrders,
+                    rideNanos / 1e9 / completedOrders);
+        } finally {
+            slowestLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package statistics;
+
+public enum RateWindow {
+    LAST_10_SECONDS("10с", 10),
+    LAST_MINUTE("1м", 60),
+    LAST_5_MINUTES("5м", 300),
+    LAST_15_MINUTES("15м", 900);
+
+    private final String displayName;
+    private final int seconds;
+
+    RateWindow(String displayName, int seconds) {
+        this.displayName = displayName;
+        this.seconds = seconds;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public int getSeconds() {
+        return seconds;
+    }
+
+    public static int maxSeconds() {
+        return LAST_15_MINUTES.seconds;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
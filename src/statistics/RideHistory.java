@@ -2,96 +2,416 @@ package statistics;
 
 import model.HistoryEvent;
 
-import java.util.concurrent.ConcurrentLinkedDeque;
-import java.util.List;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Кольцевой буфер фиксированной ёмкости для нескольких писателей. Каждое
+ * событие получает порядковый номер из общего счётчика и кладётся в слот
+ * вместе с ним. Писатели не ждут друг друга: запись в слот делается CAS и
+ * пропускается, если там уже лежит более новое событие, а читатель
+ * сверяет номер в слоте с тем, который ожидает увидеть.
+ * <p>
+ * Для запросов по заказу и по такси каждый слот хранит номер предыдущего
+ * события того же заказа и того же такси, а словари хранят только номер
+ * последнего события. Цепочка обрывается на событиях, вытесненных из
+ * буфера. Живых голов не больше ёмкости: у каждой свой номер в буфере.
+ * Когда словарь перерастает ёмкость, каждое добавление снимает несколько
+ * устаревших голов, так что словари не выходят за пару ёмкостей и ни одно
+ * добавление не обходит их целиком.
+ * <p>
+ * Время события ставится производителем до того, как событие получает
+ * номер, поэтому порядок номеров и порядок времени могут расходиться.
+ * Запросы по времени опираются на кольцо секундных корзин: корзина знает
+ * наименьший и наибольший номер событий своей секунды и последний номер
+ * каждого такси в ней. Корзин столько же, сколько слотов буфера (от
+ * MIN_TIME_BUCKETS до MAX_TIME_BUCKETS), и они покрывают столько же
+ * последних секунд; для более старых моментов запрос просматривает буфер
+ * от самого старого события. Каждое добавление проверяет одну корзину и
+ * снимает её, если все её события уже вытеснены, поэтому память корзин
+ * ограничена событиями последних ёмкость + число корзин добавлений и
+ * одной секунды на границе буфера.
+ */
 public class RideHistory {
-    private static final int MAX_HISTORY_SIZE = 500;
-    private final ConcurrentLinkedDeque<HistoryEvent> events;
+    public static final String CAPACITY_PROPERTY = "taxi.history.capacity";
+    private static final int DEFAULT_CAPACITY = 512;
+    private static final int MAX_CAPACITY = 1 << 26;
+    private static final long NONE = -1;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final int MIN_TIME_BUCKETS = 64;
+    private static final int MAX_TIME_BUCKETS = 4096;
+    private static final int PRUNE_PER_APPEND = 2;
+
+    private final AtomicReferenceArray<Slot> slots;
+    private final AtomicLong cursor;
+    private final ConcurrentHashMap<Long, Long> lastEventByOrder;
+    private final ConcurrentHashMap<Integer, Long> lastEventByTaxi;
+    private final AtomicReferenceArray<TimeBucket> timeBuckets;
+    private final int bucketCount;
+    private final AtomicLong latestSecond;
+    private final ReentrantLock pruneLock;
+    private Iterator<Map.Entry<Long, Long>> orderPruneCursor;
+    private Iterator<Map.Entry<Integer, Long>> taxiPruneCursor;
+    private int bucketSweep;
+    private final int capacity;
+    private final int mask;
+
+    private volatile long firstVisible;
 
     public RideHistory() {
-        this.events = new ConcurrentLinkedDeque<>();
+        this(Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY));
     }
 
-    public void addEvent(HistoryEvent event) {
-        events.addFirst(event);
+    public RideHistory(int requestedCapacity) {
+        if (requestedCapacity <= 0 || requestedCapacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Ёмкость истории должна быть от 1 до " + MAX_CAPACITY);
+        }
+        this.capacity = requestedCapacity == 1 ? 1 : Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.cursor = new AtomicLong();
+        this.lastEventByOrder = new ConcurrentHashMap<>();
+        this.lastEventByTaxi = new ConcurrentHashMap<>();
+        this.bucketCount = Math.max(MIN_TIME_BUCKETS, Math.min(MAX_TIME_BUCKETS, capacity));
+        this.timeBuckets = new AtomicReferenceArray<>(bucketCount);
+        this.latestSecond = new AtomicLong(Long.MIN_VALUE);
+        this.pruneLock = new ReentrantLock();
+    }
+
+    public long addEvent(HistoryEvent event) {
+        long sequence = cursor.getAndIncrement();
+        int index = (int) (sequence & mask);
+        Long previousForOrder = lastEventByOrder.put(event.getOrderId(), sequence);
+        Long previousForTaxi = event.hasTaxi() ? lastEventByTaxi.put(event.getTaxiId(), sequence) : null;
+        Slot slot = new Slot(sequence, event,
+                previousForOrder != null ? previousForOrder : NONE,
+                previousForTaxi != null ? previousForTaxi : NONE);
+
+        indexTime(event, sequence);
+        if (sequence >= capacity) {
+            pruneIndexes(sequence - capacity);
+        }
 
-        while (events.size() > MAX_HISTORY_SIZE) {
-            events.removeLast();
+        while (true) {
+            Slot current = slots.get(index);
+            if (current != null && current.sequence > sequence) {
+                return sequence;
+            }
+            if (slots.compareAndSet(index, current, slot)) {
+                return sequence;
+            }
         }
     }
 
-    public void recordOrderCreated(long orderId, String clientName, String details) {
-        addEvent(new HistoryEvent(
-                HistoryEvent.EventType.ORDER_CREATED,
-                orderId,
-                null,
-                clientName,
-                details
-        ));
+    public List<HistoryEvent> getRecentEvents(int count) {
+        long newest = cursor.get() - 1;
+        long oldest = Math.max(firstVisible, newest - capacity + 1);
+        int limit = (int) Math.max(0, Math.min(count, newest - oldest + 1));
+
+        List<HistoryEvent> result = new ArrayList<>(limit);
+        for (long sequence = newest; sequence >= oldest && result.size() < limit; sequence--) {
+            HistoryEvent event = read(sequence);
+            if (event != null) {
+                result.add(event);
+            }
+        }
+        return result;
     }
 
-    public void recordOrderAssigned(long orderId, int taxiId, String clientName, String details) {
-        addEvent(new HistoryEvent(
-                HistoryEvent.EventType.ORDER_ASSIGNED,
-                orderId,
-                taxiId,
-                clientName,
-                details
-        ));
+    public List<HistoryEvent> getAllEvents() {
+        return getRecentEvents(capacity);
     }
 
-    public void recordOrderFailed(long orderId, String clientName, String reason) {
-        addEvent(new HistoryEvent(
-                HistoryEvent.EventType.ORDER_FAILED,
-                orderId,
-                null,
-                clientName,
-                reason
-        ));
+    public HistoryEvent getEvent(long sequence) {
+        if (sequence < firstVisible) {
+            return null;
+        }
+        return read(sequence);
     }
 
-    public void recordRideStarted(long orderId, int taxiId, String clientName, String details) {
-        addEvent(new HistoryEvent(
-                HistoryEvent.EventType.RIDE_STARTED,
-                orderId,
-                taxiId,
-                clientName,
-                details
-        ));
+    private HistoryEvent read(long sequence) {
+        Slot slot = slots.get((int) (sequence & mask));
+        return slot != null && slot.sequence == sequence ? slot.event : null;
     }
 
-    public void recordRideCompleted(long orderId, int taxiId, String clientName, String details) {
-        addEvent(new HistoryEvent(
-                HistoryEvent.EventType.RIDE_COMPLETED,
-                orderId,
-                taxiId,
-                clientName,
-                details
-        ));
+    public List<HistoryEvent> eventsForOrder(long orderId) {
+        List<Slot> chain = new ArrayList<>();
+        Long head = lastEventByOrder.get(orderId);
+        Slot slot = head != null ? readPublished(head) : null;
+        while (slot != null) {
+            chain.add(slot);
+            slot = readPublished(slot.previousForOrder);
+        }
+        return toChronological(chain);
     }
 
-    public List<HistoryEvent> getRecentEvents(int count) {
+    /**
+     * События такси с временем в [from, to]. Цепочка такси входит с его
+     * последнего события среди корзин диапазона и обходится только до
+     * наименьшего номера диапазона.
+     */
+    public List<HistoryEvent> eventsForTaxi(int taxiId, long fromEpochNanos, long toEpochNanos) {
+        List<Slot> chain = new ArrayList<>();
+        SequenceRange range = rangeFor(fromEpochNanos, toEpochNanos, taxiId);
+        if (range == null) {
+            return toChronological(chain);
+        }
+        long start = range.lastForTaxi;
+        if (range.beyondIndex) {
+            Long head = lastEventByTaxi.get(taxiId);
+            start = head != null ? head : NONE;
+        }
+        Slot slot = start != NONE ? readPublished(start) : null;
+        while (slot != null && slot.sequence >= range.first) {
+            long time = slot.event.getEpochNanos();
+            if (time >= fromEpochNanos && time <= toEpochNanos) {
+                chain.add(slot);
+            }
+            slot = readPublished(slot.previousForTaxi);
+        }
+        return toChronological(chain);
+    }
+
+    public List<HistoryEvent> eventsForTaxi(int taxiId) {
+        return eventsForTaxi(taxiId, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * События с временем в [from, to] в порядке номеров. Просматриваются
+     * только номера между наименьшим и наибольшим номером корзин
+     * диапазона.
+     */
+    public List<HistoryEvent> eventsBetween(long fromEpochNanos, long toEpochNanos) {
         List<HistoryEvent> result = new ArrayList<>();
-        int added = 0;
-        for (HistoryEvent event : events) {
-            if (added >= count) break;
-            result.add(event);
-            added++;
+        SequenceRange range = rangeFor(fromEpochNanos, toEpochNanos, HistoryEvent.NO_TAXI);
+        if (range == null) {
+            return result;
+        }
+        for (long sequence = range.first; sequence <= range.last; sequence++) {
+            HistoryEvent event = read(sequence);
+            if (event != null && event.getEpochNanos() >= fromEpochNanos && event.getEpochNanos() <= toEpochNanos) {
+                result.add(event);
+            }
         }
         return result;
     }
 
-    public List<HistoryEvent> getAllEvents() {
-        return new ArrayList<>(events);
+    private void indexTime(HistoryEvent event, long sequence) {
+        long second = Math.floorDiv(event.getEpochNanos(), NANOS_PER_SECOND);
+        int index = (int) Math.floorMod(second, (long) bucketCount);
+        TimeBucket bucket = timeBuckets.get(index);
+        while (bucket == null || bucket.second < second) {
+            TimeBucket fresh = new TimeBucket(second);
+            if (timeBuckets.compareAndSet(index, bucket, fresh)) {
+                bucket = fresh;
+                break;
+            }
+            bucket = timeBuckets.get(index);
+        }
+        if (bucket.second != second) {
+            // событие старше горизонта корзин: его найдёт только запрос за горизонт
+            return;
+        }
+        if (sequence < bucket.firstSequence.get()) {
+            bucket.firstSequence.accumulateAndGet(sequence, Math::min);
+        }
+        if (sequence > bucket.lastSequence.get()) {
+            bucket.lastSequence.accumulateAndGet(sequence, Math::max);
+        }
+        if (event.hasTaxi()) {
+            bucket.lastByTaxi.merge(event.getTaxiId(), sequence, Math::max);
+        }
+        if (second > latestSecond.get()) {
+            latestSecond.accumulateAndGet(second, Math::max);
+        }
+    }
+
+    /**
+     * Номера, среди которых лежат все события с временем в [from, to], или
+     * null, если таких событий в буфере нет. Для taxiId != NO_TAXI также
+     * последний номер этого такси в диапазоне.
+     */
+    private SequenceRange rangeFor(long fromEpochNanos, long toEpochNanos, int taxiId) {
+        long newest = cursor.get() - 1;
+        long oldest = Math.max(firstVisible, newest - capacity + 1);
+        if (fromEpochNanos > toEpochNanos || newest < oldest) {
+            return null;
+        }
+
+        long fromSecond = Math.floorDiv(fromEpochNanos, NANOS_PER_SECOND);
+        long toSecond = Math.min(Math.floorDiv(toEpochNanos, NANOS_PER_SECOND), latestSecond.get());
+        long horizon = latestSecond.get() - bucketCount + 1;
+        boolean beyondIndex = fromSecond < horizon;
+
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        long lastForTaxi = NONE;
+        for (long second = Math.max(fromSecond, horizon); second <= toSecond; second++) {
+            TimeBucket bucket = timeBuckets.get((int) Math.floorMod(second, (long) bucketCount));
+            if (bucket == null || bucket.second != second) {
+                beyondIndex |= bucket != null && bucket.second > second;
+                continue;
+            }
+            first = Math.min(first, bucket.firstSequence.get());
+            last = Math.max(last, bucket.lastSequence.get());
+            if (taxiId != HistoryEvent.NO_TAXI) {
+                lastForTaxi = Math.max(lastForTaxi, bucket.lastByTaxi.getOrDefault(taxiId, NONE));
+            }
+        }
+
+        if (beyondIndex) {
+            first = oldest;
+            if (last == Long.MIN_VALUE) {
+                last = newest;
+            }
+        }
+        first = Math.max(first, oldest);
+        last = Math.min(last, newest);
+        return first <= last ? new SequenceRange(first, last, lastForTaxi, beyondIndex) : null;
+    }
+
+    private Slot readPublished(long sequence) {
+        while (sequence >= firstVisible && sequence > cursor.get() - 1 - capacity) {
+            Slot slot = slots.get((int) (sequence & mask));
+            if (slot != null && slot.sequence == sequence) {
+                return slot;
+            }
+            if (slot != null && slot.sequence > sequence) {
+                return null;
+            }
+            Thread.yield();
+        }
+        return null;
+    }
+
+    private static List<HistoryEvent> toChronological(List<Slot> chain) {
+        chain.sort(Comparator.comparingLong(slot -> slot.sequence));
+        List<HistoryEvent> result = new ArrayList<>(chain.size());
+        for (Slot slot : chain) {
+            result.add(slot.event);
+        }
+        return result;
+    }
+
+    /**
+     * Снимает одну корзину, все события которой вытеснены, и, если словарь
+     * перерос ёмкость, несколько его устаревших голов, продолжая обход с
+     * места, где остановилось прошлое добавление. Новый ключ появляется не
+     * чаще одного раза на добавление, поэтому обход успевает за ростом
+     * словаря. Писатель, заставший обход занятым, его пропускает.
+     */
+    private void pruneIndexes(long evictedBefore) {
+        if (!pruneLock.tryLock()) {
+            return;
+        }
+        try {
+            int index = bucketSweep;
+            bucketSweep = index + 1 == bucketCount ? 0 : index + 1;
+            TimeBucket bucket = timeBuckets.get(index);
+            if (bucket != null && bucket.lastSequence.get() < evictedBefore) {
+                timeBuckets.compareAndSet(index, bucket, null);
+            }
+
+            if (lastEventByOrder.mappingCount() > capacity) {
+                if (orderPruneCursor == null || !orderPruneCursor.hasNext()) {
+                    orderPruneCursor = lastEventByOrder.entrySet().iterator();
+                }
+                for (int i = 0; i < PRUNE_PER_APPEND && orderPruneCursor.hasNext(); i++) {
+                    Map.Entry<Long, Long> entry = orderPruneCursor.next();
+                    if (entry.getValue() < evictedBefore) {
+                        lastEventByOrder.remove(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            if (lastEventByTaxi.mappingCount() > capacity) {
+                if (taxiPruneCursor == null || !taxiPruneCursor.hasNext()) {
+                    taxiPruneCursor = lastEventByTaxi.entrySet().iterator();
+                }
+                for (int i = 0; i < PRUNE_PER_APPEND && taxiPruneCursor.hasNext(); i++) {
+                    Map.Entry<Integer, Long> entry = taxiPruneCursor.next();
+                    if (entry.getValue() < evictedBefore) {
+                        lastEventByTaxi.remove(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+        } finally {
+            pruneLock.unlock();
+        }
     }
 
     public int getEventCount() {
-        return events.size();
+        long published = cursor.get();
+        return (int) Math.min(capacity, published - firstVisible);
+    }
+
+    public long getTotalEvents() {
+        return cursor.get();
+    }
+
+    public long getLastSequence() {
+        return cursor.get() - 1;
+    }
+
+    public int getCapacity() {
+        return capacity;
     }
 
     public void clear() {
-        events.clear();
+        firstVisible = cursor.get();
+        lastEventByOrder.clear();
+        lastEventByTaxi.clear();
+        latestSecond.set(Long.MIN_VALUE);
+        for (int i = 0; i < bucketCount; i++) {
+            timeBuckets.set(i, null);
+        }
+    }
+
+    private static final class TimeBucket {
+        final long second;
+        final AtomicLong firstSequence;
+        final AtomicLong lastSequence;
+        final ConcurrentHashMap<Integer, Long> lastByTaxi;
+
+        TimeBucket(long second) {
+            this.second = second;
+            this.firstSequence = new AtomicLong(Long.MAX_VALUE);
+            this.lastSequence = new AtomicLong(Long.MIN_VALUE);
+            this.lastByTaxi = new ConcurrentHashMap<>();
+        }
+    }
+
+    private static final class SequenceRange {
+        final long first;
+        final long last;
+        final long lastForTaxi;
+        final boolean beyondIndex;
+
+        SequenceRange(long first, long last, long lastForTaxi, boolean beyondIndex) {
+            this.first = first;
+            this.last = last;
+            this.lastForTaxi = lastForTaxi;
+            this.beyondIndex = beyondIndex;
+        }
+    }
+
+    private static final class Slot {
+        final long sequence;
+        final HistoryEvent event;
+        final long previousForOrder;
+        final long previousForTaxi;
+
+        Slot(long sequence, HistoryEvent event, long previousForOrder, long previousForTaxi) {
+            this.sequence = sequence;
+            this.event = event;
+            this.previousForOrder = previousForOrder;
+            this.previousForTaxi = previousForTaxi;
+        }
     }
 }
@@ -0,0 +1,137 @@
+package statistics;
+
+import model.TaxiType;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+public class RideLatencies {
+    public static final int PRIORITY_LEVELS = 3;
+
+    public enum Phase {
+        WAIT("Ожидание назначения"),
+        PICKUP("Подача такси"),
+        RIDE("Поездка"),
+        TOTAL("Заказ целиком");
+
+        private final String displayName;
+
+        Phase(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    private final LatencyHistogram[] overall;
+    private final LatencyHistogram[][] byPriority;
+    private final LatencyHistogram[][] byType;
+
+    public RideLatencies() {
+        int phases = Phase.values().length;
+        int types = TaxiType.values().length;
+
+        this.overall = new LatencyHistogram[phases];
+        this.byPriority = new LatencyHistogram[phases][PRIORITY_LEVELS];
+        this.byType = new LatencyHistogram[phases][types];
+
+        for (int p = 0; p < phases; p++) {
+            overall[p] = new LatencyHistogram();
+            for (int i = 0; i < PRIORITY_LEVELS; i++) {
+                byPriority[p][i] = new LatencyHistogram();
+            }
+            for (int t = 0; t < types; t++) {
+                byType[p][t] = new LatencyHistogram();
+            }
+        }
+    }
+
+    public void record(Phase phase, int priority, TaxiType type, long nanos) {
+        int p = phase.ordinal();
+        overall[p].recordNanos(nanos);
+        byPriority[p][clampPriority(priority)].recordNanos(nanos);
+        if (type != null) {
+            byType[p][type.ordinal()].recordNanos(nanos);
+        }
+    }
+
+    public LatencyHistogram get(Phase phase) {
+        return overall[phase.ordinal()];
+    }
+
+    public LatencyHistogram getByPriority(Phase phase, int priority) {
+        return byPriority[phase.ordinal()][clampPriority(priority)];
+    }
+
+    public LatencyHistogram getByType(Phase phase, TaxiType type) {
+        return byType[phase.ordinal()][type.ordinal()];
+    }
+
+    public void add(RideLatencies other) {
+        for (int p = 0; p < overall.length; p++) {
+            overall[p].add(other.overall[p]);
+            for (int i = 0; i < PRIORITY_LEVELS; i++) {
+                byPriority[p][i].add(other.byPriority[p][i]);
+            }
+            for (int t = 0; t < byType[p].length; t++) {
+                byType[p][t].add(other.byType[p][t]);
+            }
+        }
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(overall.length);
+        out.writeInt(PRIORITY_LEVELS);
+        out.writeInt(byType[0].length);
+        for (int p = 0; p < overall.length; p++) {
+            overall[p].writeTo(out);
+            for (int i = 0; i < PRIORITY_LEVELS; i++) {
+                byPriority[p][i].writeTo(out);
+            }
+            for (int t = 0; t < byType[p].length; t++) {
+                byType[p][t].writeTo(out);
+            }
+        }
+    }
+
+    public static RideLatencies readFrom(DataInputStream in) throws IOException {
+        int phases = in.readInt();
+        int priorities = in.readInt();
+        int types = in.readInt();
+
+        RideLatencies latencies = new RideLatencies();
+        if (phases != latencies.overall.length || priorities != PRIORITY_LEVELS
+                || types != latencies.byType[0].length) {
+            throw new IOException("Несовместимый формат файла задержек");
+        }
+
+        for (int p = 0; p < phases; p++) {
+            latencies.overall[p].add(LatencyHistogram.readFrom(in));
+            for (int i = 0; i < priorities; i++) {
+                latencies.byPriority[p][i].add(LatencyHistogram.readFrom(in));
+            }
+            for (int t = 0; t < types; t++) {
+                latencies.byType[p][t].add(LatencyHistogram.readFrom(in));
+            }
+        }
+        return latencies;
+    }
+
+    public static String priorityName(int priority) {
+        switch (clampPriority(priority)) {
+            case 2:
+                return "VIP";
+            case 1:
+                return "Высокий";
+            default:
+                return "Обычный";
+        }
+    }
+
+    private static int clampPriority(int priority) {
+        return Math.max(0, Math.min(PRIORITY_LEVELS - 1, priority));
+    }
+}
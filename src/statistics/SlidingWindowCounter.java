@@ -0,0 +1,74 @@
+package statistics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Кольцо секундных корзин. Каждая корзина хранит в одном long номер секунды
+ * (старшие 24 бита) и накопленное значение (младшие 40 бит), поэтому запись —
+ * одна атомарная операция, а сброс устаревшей корзины не требует блокировок.
+ */
+public class SlidingWindowCounter {
+    private static final int STAMP_BITS = 24;
+    private static final int VALUE_BITS = 64 - STAMP_BITS;
+    private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+    private static final long STAMP_MASK = (1L << STAMP_BITS) - 1;
+
+    private final AtomicLongArray buckets;
+    private final int bucketCount;
+    private final long originNanos;
+
+    public SlidingWindowCounter(int windowSeconds) {
+        this.bucketCount = windowSeconds + 1;
+        this.buckets = new AtomicLongArray(bucketCount);
+        this.originNanos = System.nanoTime();
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    public void add(long delta) {
+        long second = currentSecond();
+        int index = (int) (second % bucketCount);
+        long stamp = second & STAMP_MASK;
+
+        while (true) {
+            long current = buckets.get(index);
+            long next = (current >>> VALUE_BITS) == stamp
+                    ? current + delta
+                    : (stamp << VALUE_BITS) | (delta & VALUE_MASK);
+            if (buckets.compareAndSet(index, current, next)) {
+                return;
+            }
+        }
+    }
+
+    public long sum(int seconds) {
+        long second = currentSecond();
+        int span = Math.min(seconds, bucketCount - 1);
+        long total = 0;
+
+        for (int i = 0; i < span; i++) {
+            long bucketSecond = second - i;
+            if (bucketSecond < 0) {
+                break;
+            }
+            long value = buckets.get((int) (bucketSecond % bucketCount));
+            if ((value >>> VALUE_BITS) == (bucketSecond & STAMP_MASK)) {
+                total += value & VALUE_MASK;
+            }
+        }
+        return total;
+    }
+
+    public double ratePerSecond(int seconds) {
+        int span = Math.min(seconds, bucketCount - 1);
+        long elapsed = Math.max(1, Math.min(span, currentSecond() + 1));
+        return (double) sum(span) / elapsed;
+    }
+
+    private long currentSecond() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - originNanos);
+    }
+}
@@ -1,67 +1,154 @@
 package statistics;
 
+import model.RideRequest;
+import model.TaxiState;
+import model.TaxiType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
 
 public class Statistics {
     private static final Logger LOGGER = Logger.getLogger(Statistics.class.getName());
+    private static final long SNAPSHOT_MAX_AGE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
 
     private final LocalDateTime startTime;
-    private final AtomicInteger totalRidesCompleted;
+
+    private final long startNanos;
     private final AtomicInteger totalOrdersAssigned;
     private final AtomicInteger totalOrdersFailed;
-    private final DoubleAccumulator totalDistance;
-    private final DoubleAccumulator totalRevenue;
+    private final AtomicReference<StatisticsSnapshot> lastSnapshot;
+
+    private final TaxiStatsTable taxiStats;
+    private final RideLatencies latencies;
+    private final DemandHeatmap heatmap;
+    private final OrderTimelineTracker orderTimelines;
+
+    private final SlidingWindowCounter ridesWindow;
+    private final SlidingWindowCounter assignmentsWindow;
+    private final SlidingWindowCounter failuresWindow;
+    private final SlidingWindowCounter revenueKopecksWindow;
+    private final SlidingWindowCounter queueDepthSumWindow;
+    private final SlidingWindowCounter queueDepthSamplesWindow;
+    private volatile int lastQueueDepth;
+    private final AtomicLong lostEvents;
 
-    private final ConcurrentHashMap<Integer, TaxiStatistics> taxiStats;
+    private volatile long restoredRides;
+    private volatile double restoredDistance;
+    private volatile double restoredRevenue;
 
     public Statistics() {
         this.startTime = LocalDateTime.now();
-        this.totalRidesCompleted = new AtomicInteger(0);
+        this.startNanos = System.nanoTime();
         this.totalOrdersAssigned = new AtomicInteger(0);
         this.totalOrdersFailed = new AtomicInteger(0);
-        this.totalDistance = new DoubleAccumulator(Double::sum, 0.0);
-        this.totalRevenue = new DoubleAccumulator(Double::sum, 0.0);
-        this.taxiStats = new ConcurrentHashMap<>();
+        this.lastSnapshot = new AtomicReference<>();
+        this.lostEvents = new AtomicLong();
+        this.taxiStats = new TaxiStatsTable();
+        this.latencies = new RideLatencies();
+        this.heatmap = new DemandHeatmap();
+        this.orderTimelines = new OrderTimelineTracker();
+
+        int windowSeconds = RateWindow.maxSeconds();
+        this.ridesWindow = new SlidingWindowCounter(windowSeconds);
+        this.assignmentsWindow = new SlidingWindowCounter(windowSeconds);
+        this.failuresWindow = new SlidingWindowCounter(windowSeconds);
+        this.revenueKopecksWindow = new SlidingWindowCounter(windowSeconds);
+        this.queueDepthSumWindow = new SlidingWindowCounter(windowSeconds);
+        this.queueDepthSamplesWindow = new SlidingWindowCounter(windowSeconds);
     }
 
-    public void recordCompletedRide(int taxiId, double distance, double price) {
-        totalRidesCompleted.incrementAndGet();
-        totalDistance.accumulate(distance);
-        totalRevenue.accumulate(price);
+    public void recordCompletedRide(int taxiId, RideRequest request, TaxiType type,
+                                    double distance, double price, long now) {
+        if (request.getPickedUpNanos() != 0) {
+            latencies.record(RideLatencies.Phase.RIDE, request.getPriority(), type,
+                    now - request.getPickedUpNanos());
+        }
+        latencies.record(RideLatencies.Phase.TOTAL, request.getPriority(), type,
+                now - request.getCreatedNanos());
+
+        ridesWindow.increment();
+        revenueKopecksWindow.add(Math.round(price * 100));
 
-        taxiStats.computeIfAbsent(taxiId, k -> new TaxiStatistics())
-                .recordRide(distance, price);
+        taxiStats.recordRide(taxiId, distance, price);
     }
 
-    public void recordOrderAssigned() {
+    public void recordOrderAssigned(RideRequest request, TaxiType type, long now) {
+        latencies.record(RideLatencies.Phase.WAIT, request.getPriority(), type,
+                now - request.getCreatedNanos());
+
         totalOrdersAssigned.incrementAndGet();
+        assignmentsWindow.increment();
+    }
+
+    public void recordPickup(RideRequest request, TaxiType type, long now) {
+        request.markPickedUp(now);
+        if (request.getAssignedNanos() != 0) {
+            latencies.record(RideLatencies.Phase.PICKUP, request.getPriority(), type,
+                    now - request.getAssignedNanos());
+        }
+    }
+
+    public void registerTaxi(int taxiId, TaxiType type, TaxiState initialState) {
+        taxiStats.register(taxiId, type, initialState, System.nanoTime());
+    }
+
+    public void recordStateChange(int taxiId, TaxiState newState, long now) {
+        taxiStats.recordStateChange(taxiId, newState, now);
+    }
+
+    public void recordDeadhead(int taxiId, double distance) {
+        taxiStats.recordDeadhead(taxiId, distance);
     }
 
     public void recordOrderFailed() {
         totalOrdersFailed.incrementAndGet();
+        failuresWindow.increment();
     }
 
-    public void printSummary() {
-        Duration uptime = Duration.between(startTime, LocalDateTime.now());
-        long uptimeSeconds = uptime.getSeconds();
+    public void recordQueueDepth(int depth) {
+        lastQueueDepth = depth;
+        queueDepthSumWindow.add(depth);
+        queueDepthSamplesWindow.increment();
+    }
 
-        double avgDistance = totalRidesCompleted.get() > 0
-                ? totalDistance.get() / totalRidesCompleted.get()
-                : 0.0;
+    /**
+     * События, которые статистика пропустила; итоги после пропуска
+     * занижены на них.
+     */
+    public void recordLostEvents(long count) {
+        lostEvents.addAndGet(count);
+    }
+
+    public long getLostEvents() {
+        return lostEvents.get();
+    }
 
-        double avgRevenue = totalRidesCompleted.get() > 0
-                ? totalRevenue.get() / totalRidesCompleted.get()
-                : 0.0;
+    public void restoreTotals(long ridesCompleted, int ordersAssigned, int ordersFailed,
+                              double totalDistance, double totalRevenue) {
+        restoredRides = ridesCompleted;
+        restoredDistance = totalDistance;
+        restoredRevenue = totalRevenue;
+        totalOrdersAssigned.addAndGet(ordersAssigned);
+        totalOrdersFailed.addAndGet(ordersFailed);
+        lastSnapshot.set(null);
+    }
 
-        double ridesPerMinute = uptimeSeconds > 0
-                ? (totalRidesCompleted.get() * 60.0) / uptimeSeconds
-                : 0.0;
+    public void printSummary() {
+        StatisticsSnapshot snapshot = freshSnapshot();
+        Duration uptime = snapshot.getUptime();
 
         System.out.println("\n╔════════════════════════════════════════════════════════════════╗");
         System.out.println("║           ИТОГОВАЯ СТАТИСТИКА РАБОТЫ СИСТЕМЫ                   ║");
@@ -70,25 +157,90 @@ public class Statistics {
                 uptime.toHours(), uptime.toMinutesPart(), uptime.toSecondsPart());
         System.out.println("╠════════════════════════════════════════════════════════════════╣");
         System.out.printf("║ Всего поездок завершено:           %-8d                   ║%n",
-                totalRidesCompleted.get());
+                snapshot.getRidesCompleted());
         System.out.printf("║ Заказов назначено:                 %-8d                   ║%n",
-                totalOrdersAssigned.get());
+                snapshot.getOrdersAssigned());
         System.out.printf("║ Заказов не назначено:              %-8d                   ║%n",
-                totalOrdersFailed.get());
+                snapshot.getOrdersFailed());
         System.out.println("╠════════════════════════════════════════════════════════════════╣");
         System.out.printf("║ Общая дистанция:                   %-10.1f км             ║%n",
-                totalDistance.get());
+                snapshot.getTotalDistance());
         System.out.printf("║ Средняя дистанция поездки:         %-10.1f км             ║%n",
-                avgDistance);
+                snapshot.getAverageDistance());
         System.out.println("╠════════════════════════════════════════════════════════════════╣");
         System.out.printf("║ Общая выручка:                     %-10.2f руб.          ║%n",
-                totalRevenue.get());
+                snapshot.getTotalRevenue());
         System.out.printf("║ Средняя стоимость поездки:         %-10.2f руб.          ║%n",
-                avgRevenue);
+                snapshot.getAverageRevenue());
         System.out.println("╠════════════════════════════════════════════════════════════════╣");
         System.out.printf("║ Поездок в минуту:                  %-10.2f                ║%n",
-                ridesPerMinute);
+                snapshot.getLifetimeRidesPerMinute());
+        System.out.printf("║ Поездок в минуту (последняя мин.): %-10.2f                ║%n",
+                snapshot.getRidesPerMinute(RateWindow.LAST_MINUTE));
         System.out.println("╚════════════════════════════════════════════════════════════════╝");
+        if (lostEvents.get() > 0) {
+            System.out.printf("ВНИМАНИЕ: статистика пропустила %d событий, итоги занижены%n", lostEvents.get());
+        }
+
+        printLatencies();
+    }
+
+    public void printLatencies() {
+        RideLatencies.Phase[] phases = RideLatencies.Phase.values();
+
+        System.out.println("\n╔════════════════════════════════════════════════════════════════╗");
+        System.out.println("║                  ЗАДЕРЖКИ ОБСЛУЖИВАНИЯ (мс)                    ║");
+        System.out.println("╠════════════════════════════════════════════════════════════════╣");
+        System.out.printf("║ %-20s %9s %9s %9s %9s   ║%n", "Этап", "p50", "p90", "p99", "max");
+        System.out.println("╠════════════════════════════════════════════════════════════════╣");
+        for (RideLatencies.Phase phase : phases) {
+            LatencyHistogram histogram = latencies.get(phase);
+            System.out.printf("║ %-20s %9.1f %9.1f %9.1f %9.1f   ║%n",
+                    phase.getDisplayName(),
+                    histogram.getPercentileMillis(50),
+                    histogram.getPercentileMillis(90),
+                    histogram.getPercentileMillis(99),
+                    histogram.getMaxMicros() / 1000.0);
+        }
+
+        System.out.println("╠════════════════════════════════════════════════════════════════╣");
+        System.out.printf("║ %-20s %9s %9s %9s %9s   ║%n", "p99 по приоритету", "Ожид.", "Подача", "Поездка", "Всего");
+        for (int priority = RideLatencies.PRIORITY_LEVELS - 1; priority >= 0; priority--) {
+            System.out.printf("║ %-20s %9.1f %9.1f %9.1f %9.1f   ║%n",
+                    RideLatencies.priorityName(priority),
+                    latencies.getByPriority(phases[0], priority).getPercentileMillis(99),
+                    latencies.getByPriority(phases[1], priority).getPercentileMillis(99),
+                    latencies.getByPriority(phases[2], priority).getPercentileMillis(99),
+                    latencies.getByPriority(phases[3], priority).getPercentileMillis(99));
+        }
+
+        System.out.println("╠════════════════════════════════════════════════════════════════╣");
+        System.out.printf("║ %-20s %9s %9s %9s %9s   ║%n", "p99 по типу такси", "Ожид.", "Подача", "Поездка", "Всего");
+        for (TaxiType type : TaxiType.values()) {
+            System.out.printf("║ %-20s %9.1f %9.1f %9.1f %9.1f   ║%n",
+                    type.getDisplayName(),
+                    latencies.getByType(phases[0], type).getPercentileMillis(99),
+                    latencies.getByType(phases[1], type).getPercentileMillis(99),
+                    latencies.getByType(phases[2], type).getPercentileMillis(99),
+                    latencies.getByType(phases[3], type).getPercentileMillis(99));
+        }
+        System.out.println("╚════════════════════════════════════════════════════════════════╝");
+    }
+
+    public void mergeLatenciesInto(Path file) throws IOException {
+        RideLatencies merged = new RideLatencies();
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                merged.add(RideLatencies.readFrom(in));
+            }
+        }
+        merged.add(latencies);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            merged.writeTo(out);
+        }
+        LOGGER.info(String.format("Гистограммы задержек объединены с %s (заказов всего: %d)",
+                file, merged.get(RideLatencies.Phase.TOTAL).getCount()));
     }
 
     public void printTaxiStats() {
@@ -98,54 +250,150 @@ public class Statistics {
         System.out.println("║ ID  │ Поездок │ Дистанция (км) │ Выручка (руб.) │ Средний чек ║");
         System.out.println("╠════════════════════════════════════════════════════════════════╣");
 
-        taxiStats.forEach((taxiId, stats) -> {
-            double avgPrice = stats.getRidesCompleted() > 0
-                    ? stats.getTotalRevenue() / stats.getRidesCompleted()
-                    : 0.0;
-
+        TaxiStatsTable.Snapshot snapshot = taxiStats.snapshot();
+        for (int i = 0; i < snapshot.size(); i++) {
             System.out.printf("║ %-3d │ %-7d │ %-14.1f │ %-14.2f │ %-11.2f ║%n",
-                    taxiId,
-                    stats.getRidesCompleted(),
-                    stats.getTotalDistance(),
-                    stats.getTotalRevenue(),
-                    avgPrice);
-        });
+                    snapshot.getTaxiId(i),
+                    snapshot.getRides(i),
+                    snapshot.getDistance(i),
+                    snapshot.getRevenue(i),
+                    snapshot.getAveragePrice(i));
+        }
 
         System.out.println("╚════════════════════════════════════════════════════════════════╝");
+
+        printUtilization(snapshot);
     }
 
-    private static class TaxiStatistics {
-        private final AtomicInteger ridesCompleted;
-        private final DoubleAccumulator totalDistance;
-        private final DoubleAccumulator totalRevenue;
+    public void printSlowestOrders() {
+        List<OrderTimeline> slowest = orderTimelines.getSlowest();
+        if (slowest.isEmpty()) {
+            return;
+        }
 
-        public TaxiStatistics() {
-            this.ridesCompleted = new AtomicInteger(0);
-            this.totalDistance = new DoubleAccumulator(Double::sum, 0.0);
-            this.totalRevenue = new DoubleAccumulator(Double::sum, 0.0);
+        System.out.println("\n╔════════════════════════════════════════════════════════════════╗");
+        System.out.println("║                 САМЫЕ ДОЛГИЕ ЗАКАЗЫ                            ║");
+        System.out.println("╚════════════════════════════════════════════════════════════════╝");
+        for (OrderTimeline timeline : slowest) {
+            System.out.println("  " + timeline.describe(0));
         }
+        System.out.println("  " + orderTimelines.describeAverages());
+        if (orderTimelines.getActiveCount() > 0) {
+            System.out.printf("  Незавершённых заказов: %d%n", orderTimelines.getActiveCount());
+        }
+    }
 
-        public void recordRide(double distance, double price) {
-            ridesCompleted.incrementAndGet();
-            totalDistance.accumulate(distance);
-            totalRevenue.accumulate(price);
+    private void printUtilization(TaxiStatsTable.Snapshot snapshot) {
+        System.out.println("\n╔════════════════════════════════════════════════════════════════╗");
+        System.out.println("║                    ЗАГРУЗКА ПАРКА                              ║");
+        System.out.println("╠════════════════════════════════════════════════════════════════╣");
+        System.out.println("║ ID  │ Тип      │ С пасс. │ К клиенту │ Простой │ Порожний, км  ║");
+        System.out.println("╠════════════════════════════════════════════════════════════════╣");
+
+        for (int i = 0; i < snapshot.size(); i++) {
+            long online = snapshot.getOnlineNanos(i);
+            TaxiType type = snapshot.getType(i);
+            System.out.printf("║ %-3d │ %-8s │ %6.1f%% │ %8.1f%% │ %6.1f%% │ %13.1f ║%n",
+                    snapshot.getTaxiId(i),
+                    type != null ? type.getDisplayName() : "-",
+                    percent(snapshot.getStateNanos(i, TaxiState.TRANSPORTING), online),
+                    percent(snapshot.getStateNanos(i, TaxiState.GOING_TO_CLIENT), online),
+                    percent(snapshot.getStateNanos(i, TaxiState.AVAILABLE), online),
+                    snapshot.getDeadheadKm(i));
         }
 
-        public int getRidesCompleted() {
-            return ridesCompleted.get();
+        System.out.println("╠════════════════════════════════════════════════════════════════╣");
+        for (TaxiType type : TaxiType.values()) {
+            if (snapshot.countTaxis(type) > 0) {
+                printUtilizationTotal(snapshot, type, type.getDisplayName());
+            }
         }
+        printUtilizationTotal(snapshot, null, "Весь парк");
+        System.out.println("╚════════════════════════════════════════════════════════════════╝");
+    }
+
+    private void printUtilizationTotal(TaxiStatsTable.Snapshot snapshot, TaxiType type, String name) {
+        long transporting = snapshot.sumStateNanos(TaxiState.TRANSPORTING, type);
+        long going = snapshot.sumStateNanos(TaxiState.GOING_TO_CLIENT, type);
+        long idle = snapshot.sumStateNanos(TaxiState.AVAILABLE, type);
+        long online = transporting + going + idle;
 
-        public double getTotalDistance() {
-            return totalDistance.get();
+        System.out.printf("║ %-14s │ %6.1f%% │ %8.1f%% │ %6.1f%% │ %13.1f ║%n",
+                name,
+                percent(transporting, online),
+                percent(going, online),
+                percent(idle, online),
+                snapshot.sumDeadheadKm(type));
+        System.out.printf("║ %-14s │ простой %s, холостой ход %5.1f%%         ║%n",
+                "",
+                formatDuration(idle),
+                percent(going, going + transporting));
+    }
+
+    private static double percent(long part, long total) {
+        return total > 0 ? part * 100.0 / total : 0.0;
+    }
+
+    private static String formatDuration(long nanos) {
+        long seconds = nanos / 1_000_000_000L;
+        return String.format("%02d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+    }
+
+    public TaxiStatsTable.Snapshot getTaxiStatsSnapshot() {
+        return taxiStats.snapshot();
+    }
+
+    public StatisticsSnapshot snapshot() {
+        StatisticsSnapshot current = lastSnapshot.get();
+        long now = System.nanoTime();
+        if (current != null && now - current.getTakenAtNanos() < SNAPSHOT_MAX_AGE_NANOS) {
+            return current;
         }
 
-        public double getTotalRevenue() {
-            return totalRevenue.get();
+        StatisticsSnapshot fresh = buildSnapshot(now);
+        return lastSnapshot.compareAndSet(current, fresh) ? fresh : lastSnapshot.get();
+    }
+
+    public StatisticsSnapshot freshSnapshot() {
+        StatisticsSnapshot fresh = buildSnapshot(System.nanoTime());
+        lastSnapshot.set(fresh);
+        return fresh;
+    }
+
+    private StatisticsSnapshot buildSnapshot(long now) {
+        TaxiStatsTable.RideTotals totals = taxiStats.totals();
+
+        RateWindow[] windows = RateWindow.values();
+        double[] ridesPerMinute = new double[windows.length];
+        long[] assignments = new long[windows.length];
+        long[] failures = new long[windows.length];
+        double[] revenue = new double[windows.length];
+        double[] queueDepth = new double[windows.length];
+        for (RateWindow window : windows) {
+            ridesPerMinute[window.ordinal()] = getRidesPerMinute(window);
+            assignments[window.ordinal()] = getAssignmentsInWindow(window);
+            failures[window.ordinal()] = getFailuresInWindow(window);
+            revenue[window.ordinal()] = getRevenueInWindow(window);
+            queueDepth[window.ordinal()] = getAverageQueueDepth(window);
         }
+
+        return new StatisticsSnapshot(
+                now,
+                Duration.ofNanos(now - startNanos),
+                restoredRides + totals.getRides(),
+                totalOrdersAssigned.get(),
+                totalOrdersFailed.get(),
+                restoredDistance + totals.getDistance(),
+                restoredRevenue + totals.getRevenue(),
+                ridesPerMinute,
+                assignments,
+                failures,
+                revenue,
+                queueDepth);
     }
 
-    public int getTotalRidesCompleted() {
-        return totalRidesCompleted.get();
+    public long getTotalRidesCompleted() {
+        return snapshot().getRidesCompleted();
     }
 
     public int getTotalOrdersAssigned() {
@@ -157,11 +405,73 @@ public class Statistics {
     }
 
     public double getTotalDistance() {
-        return totalDistance.get();
+        return snapshot().getTotalDistance();
     }
 
     public double getTotalRevenue() {
-        return totalRevenue.get();
+        return snapshot().getTotalRevenue();
+    }
+
+    public long getRidesInWindow(RateWindow window) {
+        return ridesWindow.sum(window.getSeconds());
+    }
+
+    public long getAssignmentsInWindow(RateWindow window) {
+        return assignmentsWindow.sum(window.getSeconds());
+    }
+
+    public long getFailuresInWindow(RateWindow window) {
+        return failuresWindow.sum(window.getSeconds());
+    }
+
+    public double getRevenueInWindow(RateWindow window) {
+        return revenueKopecksWindow.sum(window.getSeconds()) / 100.0;
+    }
+
+    public double getRidesPerMinute(RateWindow window) {
+        return ridesWindow.ratePerSecond(window.getSeconds()) * 60.0;
+    }
+
+    public double getAverageQueueDepth(RateWindow window) {
+        long samples = queueDepthSamplesWindow.sum(window.getSeconds());
+        return samples > 0
+                ? (double) queueDepthSumWindow.sum(window.getSeconds()) / samples
+                : lastQueueDepth;
+    }
+
+    public int getLastQueueDepth() {
+        return lastQueueDepth;
+    }
+
+    public String formatWindowRates() {
+        StringBuilder text = new StringBuilder();
+        for (RateWindow window : RateWindow.values()) {
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(String.format(
+                    "[%s] поездок: %d (%.1f/мин), назначено: %d, сбоев: %d, выручка: %.2f руб, очередь: %.1f",
+                    window.getDisplayName(),
+                    getRidesInWindow(window),
+                    getRidesPerMinute(window),
+                    getAssignmentsInWindow(window),
+                    getFailuresInWindow(window),
+                    getRevenueInWindow(window),
+                    getAverageQueueDepth(window)));
+        }
+        return text.toString();
+    }
+
+    public DemandHeatmap getHeatmap() {
+        return heatmap;
+    }
+
+    public OrderTimelineTracker getOrderTimelines() {
+        return orderTimelines;
+    }
+
+    public RideLatencies getLatencies() {
+        return latencies;
     }
 
     public LocalDateTime getStartTime() {
@@ -0,0 +1,98 @@
+package statistics;
+
+import java.time.Duration;
+
+public final class StatisticsSnapshot {
+    private final long takenAtNanos;
+    private final Duration uptime;
+    private final long ridesCompleted;
+    private final long ordersAssigned;
+    private final long ordersFailed;
+    private final double totalDistance;
+    private final double totalRevenue;
+    private final double[] ridesPerMinute;
+    private final long[] assignmentsInWindow;
+    private final long[] failuresInWindow;
+    private final double[] revenueInWindow;
+    private final double[] averageQueueDepth;
+
+    StatisticsSnapshot(long takenAtNanos, Duration uptime, long ridesCompleted,
+                       long ordersAssigned, long ordersFailed,
+                       double totalDistance, double totalRevenue,
+                       double[] ridesPerMinute, long[] assignmentsInWindow, long[] failuresInWindow,
+                       double[] revenueInWindow, double[] averageQueueDepth) {
+        this.takenAtNanos = takenAtNanos;
+        this.uptime = uptime;
+        this.ridesCompleted = ridesCompleted;
+        this.ordersAssigned = ordersAssigned;
+        this.ordersFailed = ordersFailed;
+        this.totalDistance = totalDistance;
+        this.totalRevenue = totalRevenue;
+        this.ridesPerMinute = ridesPerMinute;
+        this.assignmentsInWindow = assignmentsInWindow;
+        this.failuresInWindow = failuresInWindow;
+        this.revenueInWindow = revenueInWindow;
+        this.averageQueueDepth = averageQueueDepth;
+    }
+
+    public long getTakenAtNanos() {
+        return takenAtNanos;
+    }
+
+    public Duration getUptime() {
+        return uptime;
+    }
+
+    public long getRidesCompleted() {
+        return ridesCompleted;
+    }
+
+    public long getOrdersAssigned() {
+        return ordersAssigned;
+    }
+
+    public long getOrdersFailed() {
+        return ordersFailed;
+    }
+
+    public double getTotalDistance() {
+        return totalDistance;
+    }
+
+    public double getTotalRevenue() {
+        return totalRevenue;
+    }
+
+    public double getAverageDistance() {
+        return ridesCompleted > 0 ? totalDistance / ridesCompleted : 0.0;
+    }
+
+    public double getAverageRevenue() {
+        return ridesCompleted > 0 ? totalRevenue / ridesCompleted : 0.0;
+    }
+
+    public double getLifetimeRidesPerMinute() {
+        long seconds = uptime.getSeconds();
+        return seconds > 0 ? ridesCompleted * 60.0 / seconds : 0.0;
+    }
+
+    public double getRidesPerMinute(RateWindow window) {
+        return ridesPerMinute[window.ordinal()];
+    }
+
+    public long getAssignmentsInWindow(RateWindow window) {
+        return assignmentsInWindow[window.ordinal()];
+    }
+
+    public long getFailuresInWindow(RateWindow window) {
+        return failuresInWindow[window.ordinal()];
+    }
+
+    public double getRevenueInWindow(RateWindow window) {
+        return revenueInWindow[window.ordinal()];
+    }
+
+    public double getAverageQueueDepth(RateWindow window) {
+        return averageQueueDepth[window.ordinal()];
+    }
+}
@@ -0,0 +1,406 @@
+package statistics;
+
+import model.TaxiState;
+import model.TaxiType;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Плотная таблица статистики по такси, индексируемая id. Строка занимает
+ * 16 long (128 байт), поэтому записи разных такси не делят кэш-линию.
+ * Таблица растёт блоками: уже выданные блоки никогда не копируются, и
+ * параллельные записи при росте парка не теряются.
+ */
+public class TaxiStatsTable {
+    static final int ROW_STRIDE = 16;
+    private static final int ROWS_PER_CHUNK_BITS = 6;
+    private static final int ROWS_PER_CHUNK = 1 << ROWS_PER_CHUNK_BITS;
+    private static final int ROW_MASK = ROWS_PER_CHUNK - 1;
+
+    private static final int RIDES = 0;
+    private static final int DISTANCE_METERS = 1;
+    private static final int REVENUE_KOPECKS = 2;
+    private static final int REGISTERED = 3;
+    private static final int TYPE = 4;
+    private static final int DEADHEAD_METERS = 5;
+    private static final int CURRENT_STATE = 6;
+    private static final int STATE_SINCE_NANOS = 7;
+    private static final int STATE_NANOS = 8;
+    private static final int RIDE_SEQUENCE = 12;
+
+    private static final int STATE_COUNT = TaxiState.values().length;
+
+    private static final double METERS_PER_KM = 1000.0;
+    private static final double KOPECKS_PER_RUBLE = 100.0;
+
+    private final ReentrantLock growLock;
+    private volatile AtomicLongArray[] chunks;
+
+    public TaxiStatsTable() {
+        this.growLock = new ReentrantLock();
+        this.chunks = new AtomicLongArray[0];
+    }
+
+    /**
+     * Поля поездок строки защищены seqlock'ом: у строки один писатель
+     * (тот, кто завершает поездки этого такси), а читатели перечитывают
+     * строку, если во время чтения шла запись.
+     */
+    public void recordRide(int taxiId, double distanceKm, double price) {
+        AtomicLongArray chunk = chunkFor(taxiId);
+        int base = (taxiId & ROW_MASK) * ROW_STRIDE;
+
+        markRegistered(chunk, base);
+        long sequence = chunk.getPlain(base + RIDE_SEQUENCE);
+        chunk.setOpaque(base + RIDE_SEQUENCE, sequence + 1);
+        VarHandle.releaseFence();
+        chunk.setOpaque(base + DISTANCE_METERS,
+                chunk.getPlain(base + DISTANCE_METERS) + Math.round(distanceKm * METERS_PER_KM));
+        chunk.setOpaque(base + REVENUE_KOPECKS,
+                chunk.getPlain(base + REVENUE_KOPECKS) + Math.round(price * KOPECKS_PER_RUBLE));
+        chunk.setOpaque(base + RIDES, chunk.getPlain(base + RIDES) + 1);
+        chunk.setRelease(base + RIDE_SEQUENCE, sequence + 2);
+    }
+
+    public void register(int taxiId, TaxiType type, TaxiState initialState, long nowNanos) {
+        AtomicLongArray chunk = chunkFor(taxiId);
+        int base = (taxiId & ROW_MASK) * ROW_STRIDE;
+
+        chunk.set(base + TYPE, type.ordinal() + 1);
+        chunk.set(base + CURRENT_STATE, initialState.ordinal());
+        chunk.set(base + STATE_SINCE_NANOS, nowNanos);
+        markRegistered(chunk, base);
+    }
+
+    /**
+     * Вызывается только потоком потребителя статистики на шине событий,
+     * поэтому поля состояния строки имеют единственного писателя и
+     * обновляются без CAS.
+     */
+    public void recordStateChange(int taxiId, TaxiState newState, long nowNanos) {
+        AtomicLongArray chunk = chunkFor(taxiId);
+        int base = (taxiId & ROW_MASK) * ROW_STRIDE;
+
+        int previous = (int) chunk.get(base + CURRENT_STATE);
+        long since = chunk.get(base + STATE_SINCE_NANOS);
+        if (since != 0 && nowNanos > since) {
+            chunk.lazySet(base + STATE_NANOS + previous, chunk.get(base + STATE_NANOS + previous) + nowNanos - since);
+        }
+        chunk.lazySet(base + CURRENT_STATE, newState.ordinal());
+        chunk.set(base + STATE_SINCE_NANOS, nowNanos);
+    }
+
+    public void recordDeadhead(int taxiId, double distanceKm) {
+        AtomicLongArray chunk = chunkFor(taxiId);
+        int base = (taxiId & ROW_MASK) * ROW_STRIDE;
+        chunk.addAndGet(base + DEADHEAD_METERS, Math.round(distanceKm * METERS_PER_KM));
+    }
+
+    public long getRides(int taxiId) {
+        return read(taxiId, RIDES);
+    }
+
+    public double getDistance(int taxiId) {
+        return read(taxiId, DISTANCE_METERS) / METERS_PER_KM;
+    }
+
+    public double getRevenue(int taxiId) {
+        return read(taxiId, REVENUE_KOPECKS) / KOPECKS_PER_RUBLE;
+    }
+
+    public int capacity() {
+        return chunks.length * ROWS_PER_CHUNK;
+    }
+
+    public Snapshot snapshot() {
+        AtomicLongArray[] current = chunks;
+        int rows = 0;
+        for (AtomicLongArray chunk : current) {
+            if (chunk == null) {
+                continue;
+            }
+            for (int row = 0; row < ROWS_PER_CHUNK; row++) {
+                if (chunk.get(row * ROW_STRIDE + REGISTERED) != 0) {
+                    rows++;
+                }
+            }
+        }
+
+        Snapshot snapshot = new Snapshot(rows);
+        long[] rideRow = new long[3];
+        long now = System.nanoTime();
+        int i = 0;
+        for (int c = 0; c < current.length && i < rows; c++) {
+            AtomicLongArray chunk = current[c];
+            if (chunk == null) {
+                continue;
+            }
+            for (int row = 0; row < ROWS_PER_CHUNK && i < rows; row++) {
+                int base = row * ROW_STRIDE;
+                if (chunk.get(base + REGISTERED) == 0) {
+                    continue;
+                }
+                snapshot.taxiIds[i] = (c << ROWS_PER_CHUNK_BITS) | row;
+                readRideRow(chunk, base, rideRow);
+                snapshot.rides[i] = rideRow[0];
+                snapshot.distance[i] = rideRow[1] / METERS_PER_KM;
+                snapshot.revenue[i] = rideRow[2] / KOPECKS_PER_RUBLE;
+                snapshot.types[i] = (byte) (chunk.get(base + TYPE) - 1);
+                snapshot.deadhead[i] = chunk.get(base + DEADHEAD_METERS) / METERS_PER_KM;
+
+                int state = (int) chunk.get(base + CURRENT_STATE);
+                long since = chunk.get(base + STATE_SINCE_NANOS);
+                for (int st = 0; st < STATE_COUNT; st++) {
+                    snapshot.stateNanos[i * STATE_COUNT + st] = chunk.get(base + STATE_NANOS + st);
+                }
+                if (since != 0 && now > since) {
+                    snapshot.stateNanos[i * STATE_COUNT + state] += now - since;
+                }
+                snapshot.states[i] = (byte) state;
+                i++;
+            }
+        }
+        snapshot.size = i;
+        return snapshot;
+    }
+
+    public RideTotals totals() {
+        AtomicLongArray[] current = chunks;
+        long rides = 0;
+        long meters = 0;
+        long kopecks = 0;
+        long[] row = new long[3];
+
+        for (AtomicLongArray chunk : current) {
+            if (chunk == null) {
+                continue;
+            }
+            for (int r = 0; r < ROWS_PER_CHUNK; r++) {
+                int base = r * ROW_STRIDE;
+                if (chunk.getPlain(base + REGISTERED) == 0) {
+                    continue;
+                }
+                readRideRow(chunk, base, row);
+                rides += row[0];
+                meters += row[1];
+                kopecks += row[2];
+            }
+        }
+        return new RideTotals(rides, meters / METERS_PER_KM, kopecks / KOPECKS_PER_RUBLE);
+    }
+
+    private static void readRideRow(AtomicLongArray chunk, int base, long[] row) {
+        while (true) {
+            long before = chunk.getAcquire(base + RIDE_SEQUENCE);
+            if ((before & 1) == 0) {
+                row[0] = chunk.getOpaque(base + RIDES);
+                row[1] = chunk.getOpaque(base + DISTANCE_METERS);
+                row[2] = chunk.getOpaque(base + REVENUE_KOPECKS);
+                VarHandle.acquireFence();
+                if (chunk.getOpaque(base + RIDE_SEQUENCE) == before) {
+                    return;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private long read(int taxiId, int field) {
+        AtomicLongArray[] current = chunks;
+        int chunkIndex = taxiId >>> ROWS_PER_CHUNK_BITS;
+        if (taxiId < 0 || chunkIndex >= current.length || current[chunkIndex] == null) {
+            return 0;
+        }
+        return current[chunkIndex].get((taxiId & ROW_MASK) * ROW_STRIDE + field);
+    }
+
+    private void markRegistered(AtomicLongArray chunk, int base) {
+        if (chunk.get(base + REGISTERED) == 0) {
+            chunk.set(base + REGISTERED, 1);
+        }
+    }
+
+    private AtomicLongArray chunkFor(int taxiId) {
+        if (taxiId < 0) {
+            throw new IllegalArgumentException("Отрицательный id такси: " + taxiId);
+        }
+        int chunkIndex = taxiId >>> ROWS_PER_CHUNK_BITS;
+        AtomicLongArray[] current = chunks;
+        if (chunkIndex < current.length && current[chunkIndex] != null) {
+            return current[chunkIndex];
+        }
+        return grow(chunkIndex);
+    }
+
+    private AtomicLongArray grow(int chunkIndex) {
+        growLock.lock();
+        try {
+            AtomicLongArray[] current = chunks;
+            if (chunkIndex >= current.length) {
+                int newLength = Math.max(chunkIndex + 1, current.length * 2);
+                AtomicLongArray[] grown = new AtomicLongArray[newLength];
+                System.arraycopy(current, 0, grown, 0, current.length);
+                current = grown;
+            }
+            if (current[chunkIndex] == null) {
+                current[chunkIndex] = new AtomicLongArray(ROWS_PER_CHUNK * ROW_STRIDE);
+            }
+            chunks = current;
+            return current[chunkIndex];
+        } finally {
+            growLock.unlock();
+        }
+    }
+
+    public static class RideTotals {
+        private final long rides;
+        private final double distance;
+        private final double revenue;
+
+        RideTotals(long rides, double distance, double revenue) {
+            this.rides = rides;
+            this.distance = distance;
+            this.revenue = revenue;
+        }
+
+        public long getRides() {
+            return rides;
+        }
+
+        public double getDistance() {
+            return distance;
+        }
+
+        public double getRevenue() {
+            return revenue;
+        }
+    }
+
+    public static class Snapshot {
+        private final int[] taxiIds;
+        private final long[] rides;
+        private final double[] distance;
+        private final double[] revenue;
+        private final byte[] types;
+        private final byte[] states;
+        private final double[] deadhead;
+        private final long[] stateNanos;
+        private int size;
+
+        private Snapshot(int capacity) {
+            this.taxiIds = new int[capacity];
+            this.rides = new long[capacity];
+            this.distance = new double[capacity];
+            this.revenue = new double[capacity];
+            this.types = new byte[capacity];
+            this.states = new byte[capacity];
+            this.deadhead = new double[capacity];
+            this.stateNanos = new long[capacity * STATE_COUNT];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int getTaxiId(int index) {
+            return taxiIds[index];
+        }
+
+        public long getRides(int index) {
+            return rides[index];
+        }
+
+        public double getDistance(int index) {
+            return distance[index];
+        }
+
+        public double getRevenue(int index) {
+            return revenue[index];
+        }
+
+        public double getAveragePrice(int index) {
+            return rides[index] > 0 ? revenue[index] / rides[index] : 0.0;
+        }
+
+        public TaxiType getType(int index) {
+            return types[index] >= 0 ? TaxiType.values()[types[index]] : null;
+        }
+
+        public TaxiState getState(int index) {
+            return TaxiState.values()[states[index]];
+        }
+
+        public double getDeadheadKm(int index) {
+            return deadhead[index];
+        }
+
+        public long getStateNanos(int index, TaxiState state) {
+            return stateNanos[index * STATE_COUNT + state.ordinal()];
+        }
+
+        public long getOnlineNanos(int index) {
+            return getStateNanos(index, TaxiState.AVAILABLE)
+                    + getStateNanos(index, TaxiState.GOING_TO_CLIENT)
+                    + getStateNanos(index, TaxiState.TRANSPORTING);
+        }
+
+        public double getUtilization(int index) {
+            long online = getOnlineNanos(index);
+            return online > 0 ? (double) getStateNanos(index, TaxiState.TRANSPORTING) / online : 0.0;
+        }
+
+        public double getEmptyDrivingRatio(int index) {
+            long going = getStateNanos(index, TaxiState.GOING_TO_CLIENT);
+            long driving = going + getStateNanos(index, TaxiState.TRANSPORTING);
+            return driving > 0 ? (double) going / driving : 0.0;
+        }
+
+        public long sumStateNanos(TaxiState state, TaxiType type) {
+            long total = 0;
+            for (int i = 0; i < size; i++) {
+                if (type == null || types[i] == type.ordinal()) {
+                    total += getStateNanos(i, state);
+                }
+            }
+            return total;
+        }
+
+        public double sumDeadheadKm(TaxiType type) {
+            double total = 0;
+            for (int i = 0; i < size; i++) {
+                if (type == null || types[i] == type.ordinal()) {
+                    total += deadhead[i];
+                }
+            }
+            return total;
+        }
+
+        public int countTaxis(TaxiType type) {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (type == null || types[i] == type.ordinal()) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        public int indexOf(int taxiId) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (taxiIds[mid] < taxiId) {
+                    low = mid + 1;
+                } else if (taxiIds[mid] > taxiId) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+    }
+}
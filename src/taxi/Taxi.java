@@ -1,8 +1,10 @@
 package taxi;
 
+import events.EventBus;
+import jfr.RidePhaseEvent;
 import model.*;
+import simulation.SimulationClock;
 import statistics.Statistics;
-import statistics.RideHistory;
 
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -17,8 +19,8 @@ public class Taxi implements Runnable {
     private final int id;
     private final TaxiType type;
     private final BlockingQueue<RideRequest> assignedOrders;
-    private final Statistics statistics;
-    private final RideHistory history;
+    private final EventBus eventBus;
+    private final SimulationClock clock;
     private final ReentrantLock stateLock;
 
     private volatile TaxiState state;
@@ -27,16 +29,24 @@ public class Taxi implements Runnable {
     private volatile RideRequest currentRide;
 
     public Taxi(int id, TaxiType type, Point initialLocation,
-                BlockingQueue<RideRequest> assignedOrders, Statistics statistics, RideHistory history) {
+                BlockingQueue<RideRequest> assignedOrders, Statistics statistics, EventBus eventBus) {
+        this(id, type, initialLocation, assignedOrders, statistics, eventBus, new SimulationClock());
+    }
+
+    public Taxi(int id, TaxiType type, Point initialLocation,
+                BlockingQueue<RideRequest> assignedOrders, Statistics statistics, EventBus eventBus,
+                SimulationClock clock) {
         this.id = id;
         this.type = type;
         this.currentLocation = initialLocation;
         this.assignedOrders = assignedOrders;
-        this.statistics = statistics;
-        this.history = history;
+        this.eventBus = eventBus;
+        this.clock = clock;
         this.state = TaxiState.AVAILABLE;
         this.stateLock = new ReentrantLock();
         this.running = true;
+
+        statistics.registerTaxi(id, type, state);
     }
 
     @Override
@@ -50,6 +60,7 @@ public class Taxi implements Runnable {
                     RideRequest request = assignedOrders.poll(1, TimeUnit.SECONDS);
 
                     if (request != null) {
+                        clock.awaitRunning();
                         processRide(request);
                     }
                 } catch (InterruptedException e) {
@@ -72,8 +83,7 @@ public class Taxi implements Runnable {
             LOGGER.info(String.format("Такси #%d (%s) получило заказ: %s",
                                       id, type, request));
 
-            goToClient(request.getPickupLocation());
-
+            goToClient(request);
             transportClient(request);
 
             completeRide(request);
@@ -84,16 +94,20 @@ public class Taxi implements Runnable {
         }
     }
 
-    private void goToClient(Point pickupLocation) {
-        setState(TaxiState.GOING_TO_CLIENT);
+    private void goToClient(RideRequest request) {
+        Point pickupLocation = request.getPickupLocation();
         double distance = currentLocation.distanceTo(pickupLocation);
         long travelTime = calculateTravelTime(distance);
+        setState(TaxiState.GOING_TO_CLIENT, distance);
 
         LOGGER.info(String.format("Такси #%d едет к клиенту (%.1f км, ~%d сек)",
                                   id, distance, travelTime / 1000));
 
-        simulateTravel(travelTime);
+        RidePhaseEvent event = new RidePhaseEvent();
+        event.begin();
+        travel(TaxiState.GOING_TO_CLIENT, currentLocation, pickupLocation, travelTime);
         currentLocation = pickupLocation;
+        commitPhase(event, RidePhaseEvent.GOING_TO_CLIENT, request, distance, travelTime);
 
         LOGGER.info(String.format("Такси #%d прибыло к клиенту в точке %s",
                                   id, currentLocation));
@@ -105,19 +119,17 @@ public class Taxi implements Runnable {
         long travelTime = calculateTravelTime(distance);
         double price = calculatePrice(distance);
 
-        history.recordRideStarted(
-            request.getId(),
-            id,
-            request.getClientName(),
-            String.format("Дистанция: %.1f км, Цена: %.2f руб", distance, price)
-        );
+        eventBus.publishRideStarted(request, id, type, distance, price);
 
         LOGGER.info(String.format("Такси #%d везет клиента [%s] (%.1f км, ~%d сек, стоимость: %.2f руб)",
                                   id, request.getClientName(), distance,
                                   travelTime / 1000, price));
 
-        simulateTravel(travelTime);
+        RidePhaseEvent event = new RidePhaseEvent();
+        event.begin();
+        travel(TaxiState.TRANSPORTING, currentLocation, request.getDestination(), travelTime);
         currentLocation = request.getDestination();
+        commitPhase(event, RidePhaseEvent.TRANSPORTING, request, distance, travelTime);
 
         LOGGER.info(String.format("Такси #%d завершило перевозку клиента [%s] в точке %s",
                                   id, request.getClientName(), currentLocation));
@@ -128,19 +140,26 @@ public class Taxi implements Runnable {
         double distance = request.getDistance();
         double price = calculatePrice(distance);
 
-        statistics.recordCompletedRide(id, distance, price);
-
-        history.recordRideCompleted(
-            request.getId(),
-            id,
-            request.getClientName(),
-            String.format("Выручка: %.2f руб, Дистанция: %.1f км", price, distance)
-        );
+        eventBus.publishRideCompleted(request, id, type, distance, price);
 
         LOGGER.info(String.format("Такси #%d доступно для новых заказов в точке %s",
                                   id, currentLocation));
     }
 
+    private void commitPhase(RidePhaseEvent event, String phase, RideRequest request,
+                             double distance, long plannedMillis) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.taxiId = id;
+            event.taxiType = type.name();
+            event.orderId = request.getId();
+            event.phase = phase;
+            event.distanceKm = distance;
+            event.plannedMillis = plannedMillis;
+            event.commit();
+        }
+    }
+
     private long calculateTravelTime(double distanceKm) {
         double baseTime = (distanceKm / SPEED_KM_PER_HOUR) * MS_PER_HOUR;
         double adjustedTime = baseTime / type.getSpeedMultiplier();
@@ -151,19 +170,57 @@ public class Taxi implements Runnable {
         return distanceKm * type.getBasePricePerKm();
     }
 
-    private void simulateTravel(long milliseconds) {
+    /**
+     * Едет from → to milliseconds миллисекунд времени симуляции. Участок
+     * пути публикуется заново при каждой паузе, шаге и смене скорости — от
+     * точки, где такси находится сейчас, до точки, где оно окажется, когда
+     * часы встанут или поездка закончится, — чтобы карта и повтор шли
+     * вместе с часами.
+     */
+    private void travel(TaxiState phase, Point from, Point to, long milliseconds) {
+        long depart = clock.nanos();
+        long arrive = depart + milliseconds * 1_000_000;
         try {
-            Thread.sleep(milliseconds);
+            while (true) {
+                long version = clock.getVersion();
+                long now = clock.nanos();
+                long stop = Math.min(arrive, Math.max(now, clock.getLimit()));
+                Point position = pointAt(from, to, depart, arrive, now);
+                Point target = stop == arrive ? to : pointAt(from, to, depart, arrive, stop);
+                long travelNanos = Math.max(0, clock.realNanosAt(stop) - System.nanoTime());
+                eventBus.publishLegStarted(id, type, phase, position, target, travelNanos);
+
+                if (clock.sleepUntil(arrive, version)) {
+                    return;
+                }
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             LOGGER.warning(String.format("Такси #%d прервано во время поездки", id));
         }
     }
 
+    private static Point pointAt(Point from, Point to, long depart, long arrive, long nanos) {
+        if (arrive <= depart) {
+            return to;
+        }
+        double progress = Math.max(0, Math.min(1, (double) (nanos - depart) / (arrive - depart)));
+        return new Point(from.getX() + (to.getX() - from.getX()) * progress,
+                         from.getY() + (to.getY() - from.getY()) * progress);
+    }
+
     private void setState(TaxiState newState) {
+        setState(newState, 0);
+    }
+
+    private void setState(TaxiState newState, double deadheadKm) {
         stateLock.lock();
         try {
+            TaxiState previous = this.state;
             this.state = newState;
+            if (previous != newState) {
+                eventBus.publishStateChange(id, type, previous, newState, currentLocation, deadheadKm);
+            }
         } finally {
             stateLock.unlock();
         }
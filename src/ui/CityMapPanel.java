@@ -1,28 +1,81 @@
 package ui;
 
+import dispatcher.OrderQueue;
 import model.RideRequest;
-import model.TaxiState;
+import statistics.DemandHeatmap;
 import taxi.Taxi;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.awt.geom.*;
+import java.awt.image.BufferedImage;
 import java.util.*;
 import java.util.List;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.function.LongSupplier;
 
 public class CityMapPanel extends JPanel {
     private static final int CITY_SIZE = 100;
     private static final Color BG_COLOR = new Color(240, 248, 255);
     private static final Color GRID_COLOR = new Color(200, 220, 240);
     private static final Color ROAD_COLOR = new Color(180, 180, 180);
+    private static final Stroke DEFAULT_STROKE = new BasicStroke(1);
+    private static final Stroke ROAD_STROKE = new BasicStroke(2);
+    private static final Stroke ROUTE_STROKE = new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL,
+            0, new float[]{5}, 0);
+    private static final Color ROUTE_COLOR = new Color(100, 100, 100, 100);
+    private static final Color LOW_PRIORITY_COLOR = new Color(100, 200, 100);
+    private static final Color DESTINATION_COLOR = new Color(200, 100, 100);
+    private static final int HOT_CELLS_TO_MARK = 5;
+    private static final Color HOT_CELL_COLOR = new Color(150, 0, 0);
+    private static final Color[] HEAT_COLORS = createHeatColors(16);
+    private static final Font LEGEND_FONT = new Font("Arial", Font.PLAIN, 10);
+    private static final int LEGEND_WIDTH = 150;
+    private static final int LEGEND_HEIGHT = 70;
+    private static final Font STATUS_FONT = new Font("Arial", Font.PLAIN, 11);
+    private static final Color STATUS_BACKGROUND = new Color(255, 255, 255, 200);
+    private static final double WHEEL_ZOOM_STEP = 1.25;
+    private static final int ORDERS_ON_MAP = 10;
+    private static final int ANIMATION_FRAME_MILLIS = 16;
+    private static final int BACKGROUND_SETTLE_MILLIS = 150;
+    private static final long BACKGROUND_SETTLE_NANOS = BACKGROUND_SETTLE_MILLIS * 1_000_000L;
 
     private final List<Taxi> taxiFleet;
-    private final PriorityBlockingQueue<RideRequest> orderQueue;
-
-    public CityMapPanel(List<Taxi> taxiFleet, PriorityBlockingQueue<RideRequest> orderQueue) {
+    private final OrderQueue orderQueue;
+    private final DemandHeatmap heatmap;
+    private final float[] heatmapValues;
+
+    private volatile DemandHeatmap.Layer heatmapLayer;
+    private BufferedImage backgroundLayer;
+    private BufferedImage legendLayer;
+    private long backgroundVersion = -1;
+    private long seenVersion = -1;
+    private long seenVersionNanos;
+    private final MapViewport viewport;
+    private final TaxiLayer taxiLayer;
+    private final RideRequest[] visibleOrders;
+    private final javax.swing.Timer animationTimer;
+    private final javax.swing.Timer backgroundSettleTimer;
+    private FleetMotion motion;
+    private LongSupplier motionClock = System::nanoTime;
+    private boolean ownClock = true;
+    private boolean animated;
+
+    public CityMapPanel(List<Taxi> taxiFleet, OrderQueue orderQueue,
+                        DemandHeatmap heatmap) {
         this.taxiFleet = taxiFleet;
         this.orderQueue = orderQueue;
+        this.heatmap = heatmap;
+        this.heatmapValues = new float[DemandHeatmap.GRID_SIZE * DemandHeatmap.GRID_SIZE];
+        this.viewport = new MapViewport(CITY_SIZE);
+        this.taxiLayer = new TaxiLayer();
+        this.visibleOrders = new RideRequest[ORDERS_ON_MAP];
+        this.animationTimer = new javax.swing.Timer(ANIMATION_FRAME_MILLIS, e -> onAnimationFrame());
+        this.animationTimer.setCoalesce(true);
+        this.backgroundSettleTimer = new javax.swing.Timer(BACKGROUND_SETTLE_MILLIS, e -> repaint());
+        this.backgroundSettleTimer.setRepeats(false);
 
         setBackground(BG_COLOR);
         setDoubleBuffered(true);
@@ -33,12 +86,142 @@ public class CityMapPanel extends JPanel {
                 0,
                 new Font("Arial", Font.BOLD, 14)
         ));
+        installNavigation();
+    }
+
+    private void installNavigation() {
+        MouseAdapter navigation = new MouseAdapter() {
+            private int lastX;
+            private int lastY;
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                lastX = e.getX();
+                lastY = e.getY();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                viewport.panBy(e.getX() - lastX, e.getY() - lastY);
+                lastX = e.getX();
+                lastY = e.getY();
+                repaint();
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    viewport.reset();
+                    repaint();
+                }
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                viewport.zoomAt(e.getX(), e.getY(), Math.pow(WHEEL_ZOOM_STEP, -e.getPreciseWheelRotation()));
+                repaint();
+            }
+        };
+        addMouseListener(navigation);
+        addMouseMotionListener(navigation);
+        addMouseWheelListener(navigation);
+    }
+
+    /**
+     * Показывает область города с центром (x, y) в заданном масштабе.
+     */
+    public void showArea(double centerX, double centerY, double zoom) {
+        viewport.setSize(getWidth(), getHeight());
+        viewport.show(centerX, centerY, zoom);
+        repaint();
+    }
+
+    /**
+     * Источник участков пути для плавной анимации; без него такси рисуются
+     * в последних известных точках.
+     */
+    public void setMotion(FleetMotion motion) {
+        this.motion = motion;
+    }
+
+    /**
+     * Внешние часы анимации, например время повтора. Кадры в этом случае
+     * заказывает владелец часов, собственный таймер панели не запускается.
+     */
+    public void setMotionClock(LongSupplier clock) {
+        this.motionClock = clock;
+        this.ownClock = false;
+        animationTimer.stop();
+    }
+
+    public void setAnimated(boolean animated) {
+        this.animated = animated && motion != null;
+        if (!this.animated) {
+            animationTimer.stop();
+        }
+        refresh();
     }
 
+    /**
+     * Перерисовка по изменению модели. Пока хоть одно такси в пути и
+     * включена анимация, кадры идут от собственного таймера панели; когда
+     * все доехали, таймер останавливается до следующего выезда.
+     */
+    public void refresh() {
+        repaint();
+        if (animated && ownClock && !animationTimer.isRunning() && motion.isMoving(motionClock.getAsLong())) {
+            animationTimer.start();
+        }
+    }
+
+    private void onAnimationFrame() {
+        if (!motion.isMoving(motionClock.getAsLong())) {
+            animationTimer.stop();
+        }
+        repaint();
+    }
+
+    /**
+     * Сетка, дороги и легенда не меняются между кадрами, поэтому рисуются
+     * один раз в изображения; в каждом кадре рисуются только тепловая
+     * карта и такси. Пока видимая область меняется (перетаскивание,
+     * колесо, изменение размера), сетка рисуется прямо в кадр, а
+     * изображение фона перестраивается один раз, когда область
+     * простояла BACKGROUND_SETTLE_MILLIS.
+     */
     @Override
     protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
         Graphics2D g2d = (Graphics2D) g;
+        int width = getWidth();
+        int height = getHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        viewport.setSize(width, height);
+        long version = viewport.getVersion();
+        long now = System.nanoTime();
+        if (version != seenVersion) {
+            seenVersion = version;
+            seenVersionNanos = now;
+        }
+        if (backgroundLayer != null && backgroundVersion != version
+                && now - seenVersionNanos < BACKGROUND_SETTLE_NANOS) {
+            drawBackground(g2d, width, height);
+            backgroundSettleTimer.restart();
+        } else {
+            if (backgroundLayer == null || backgroundVersion != version) {
+                if (backgroundLayer == null || backgroundLayer.getWidth() != width
+                        || backgroundLayer.getHeight() != height) {
+                    backgroundLayer = createLayer(width, height, Transparency.OPAQUE);
+                }
+                renderBackground(backgroundLayer, width, height);
+                backgroundVersion = version;
+            }
+            g2d.drawImage(backgroundLayer, 0, 0, null);
+        }
+        if (legendLayer == null) {
+            legendLayer = renderLegend();
+        }
 
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
         g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
@@ -46,118 +229,198 @@ public class CityMapPanel extends JPanel {
         g2d.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_SPEED);
         g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
 
-        drawCityGrid(g2d);
-        drawTaxis(g2d);
-        drawLegend(g2d);
+        drawHeatmap(g2d, width, height);
+        drawOrders(g2d);
+        if (animated) {
+            taxiLayer.draw(g2d, motion, motionClock.getAsLong(), viewport, width, height);
+        } else {
+            taxiLayer.draw(g2d, taxiFleet, viewport, width, height);
+        }
+        g2d.drawImage(legendLayer, 10, height - 80, null);
+        drawStatus(g2d, width);
     }
 
-    private void drawCityGrid(Graphics2D g2d) {
-        int width = getWidth();
-        int height = getHeight();
+    private void drawStatus(Graphics2D g2d, int width) {
+        String status;
+        if (taxiLayer.isDensityMode()) {
+            status = String.format("×%.1f · на экране %d из %d · плотность",
+                    viewport.getZoom(), taxiLayer.getVisibleCount(), taxiFleet.size());
+        } else {
+            status = String.format("×%.1f · на экране %d из %d · групп %d",
+                    viewport.getZoom(), taxiLayer.getVisibleCount(), taxiFleet.size(), taxiLayer.getClusterCount());
+        }
+
+        g2d.setFont(STATUS_FONT);
+        FontMetrics metrics = g2d.getFontMetrics();
+        int textWidth = metrics.stringWidth(status);
+        int x = width - textWidth - 16;
+        int y = 22;
+        g2d.setColor(STATUS_BACKGROUND);
+        g2d.fillRect(x - 4, y - metrics.getAscent(), textWidth + 8, metrics.getHeight());
+        g2d.setColor(Color.BLACK);
+        g2d.drawString(status, x, y);
+    }
+
+    private BufferedImage createLayer(int width, int height, int transparency) {
+        GraphicsConfiguration configuration = getGraphicsConfiguration();
+        if (configuration != null) {
+            return configuration.createCompatibleImage(width, height, transparency);
+        }
+        return new BufferedImage(width, height,
+                transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+    }
+
+    private static Color[] createHeatColors(int steps) {
+        Color[] colors = new Color[steps];
+        for (int i = 0; i < steps; i++) {
+            float t = (i + 1) / (float) steps;
+            colors[i] = new Color(255, (int) (220 * (1 - t)), 0, (int) (40 + 120 * t));
+        }
+        return colors;
+    }
+
+    private void renderBackground(BufferedImage image, int width, int height) {
+        Graphics2D g2d = image.createGraphics();
+        try {
+            drawBackground(g2d, width, height);
+        } finally {
+            g2d.dispose();
+        }
+    }
+
+    private void drawBackground(Graphics2D g2d, int width, int height) {
+        g2d.setColor(BG_COLOR);
+        g2d.fillRect(0, 0, width, height);
+        drawCityGrid(g2d, width, height);
+    }
+
+    private void drawCityGrid(Graphics2D g2d, int width, int height) {
         int gridSize = 10;
+        double step = CITY_SIZE / (double) gridSize;
 
         g2d.setColor(GRID_COLOR);
         for (int i = 0; i <= gridSize; i++) {
-            int x = (int) (width * i / (double) gridSize);
-            int y = (int) (height * i / (double) gridSize);
+            int x = viewport.toScreenX(i * step);
+            int y = viewport.toScreenY(i * step);
             g2d.drawLine(x, 0, x, height);
             g2d.drawLine(0, y, width, y);
         }
 
         g2d.setColor(ROAD_COLOR);
-        g2d.setStroke(new BasicStroke(2));
+        g2d.setStroke(ROAD_STROKE);
         for (int i = 0; i <= gridSize; i += 2) {
-            int x = (int) (width * i / (double) gridSize);
-            int y = (int) (height * i / (double) gridSize);
+            int x = viewport.toScreenX(i * step);
+            int y = viewport.toScreenY(i * step);
             g2d.drawLine(x, 0, x, height);
             g2d.drawLine(0, y, width, y);
         }
-        g2d.setStroke(new BasicStroke(1));
+        g2d.setStroke(DEFAULT_STROKE);
     }
 
-    private void drawOrders(Graphics2D g2d) {
-        int width = getWidth();
-        int height = getHeight();
+    public void setHeatmapLayer(DemandHeatmap.Layer layer) {
+        this.heatmapLayer = layer;
+        repaint();
+    }
 
-        List<RideRequest> orders = new ArrayList<>(orderQueue);
-        int maxOrders = Math.min(10, orders.size());
-        for (int i = 0; i < maxOrders; i++) {
-            RideRequest order = orders.get(i);
+    private void drawHeatmap(Graphics2D g2d, int width, int height) {
+        DemandHeatmap.Layer layer = heatmapLayer;
+        if (layer == null) {
+            return;
+        }
+
+        double max = heatmap.snapshot(layer, heatmapValues);
+        if (max <= 0) {
+            return;
+        }
+
+        int grid = DemandHeatmap.GRID_SIZE;
+        double cell = CITY_SIZE / (double) grid;
+
+        for (int cy = 0; cy < grid; cy++) {
+            int y1 = viewport.toScreenY(cy * cell);
+            int y2 = viewport.toScreenY((cy + 1) * cell);
+            if (y2 < 0 || y1 > height) {
+                continue;
+            }
+            for (int cx = 0; cx < grid; cx++) {
+                float intensity = (float) (heatmapValues[cy * grid + cx] / max);
+                if (intensity < 0.02f) {
+                    continue;
+                }
+                int x1 = viewport.toScreenX(cx * cell);
+                int x2 = viewport.toScreenX((cx + 1) * cell);
+                if (x2 < 0 || x1 > width) {
+                    continue;
+                }
+                g2d.setColor(HEAT_COLORS[Math.min(HEAT_COLORS.length - 1, (int) (intensity * HEAT_COLORS.length))]);
+                g2d.fillRect(x1, y1, x2 - x1, y2 - y1);
+            }
+        }
+
+        g2d.setColor(HOT_CELL_COLOR);
+        for (DemandHeatmap.HotCell hot : heatmap.topCells(layer, HOT_CELLS_TO_MARK)) {
+            int x1 = viewport.toScreenX(hot.getCellX() * cell);
+            int y1 = viewport.toScreenY(hot.getCellY() * cell);
+            int x2 = viewport.toScreenX((hot.getCellX() + 1) * cell);
+            int y2 = viewport.toScreenY((hot.getCellY() + 1) * cell);
+            g2d.drawRect(x1, y1, x2 - x1, y2 - y1);
+        }
+    }
+
+    private void drawOrders(Graphics2D g2d) {
+        int count = orderQueue.topPending(visibleOrders);
+        for (int i = 0; i < count; i++) {
+            RideRequest order = visibleOrders[i];
+            visibleOrders[i] = null;
             model.Point pickup = order.getPickupLocation();
             model.Point dest = order.getDestination();
 
-            int x1 = (int) (pickup.getX() * width / CITY_SIZE);
-            int y1 = (int) (pickup.getY() * height / CITY_SIZE);
-            int x2 = (int) (dest.getX() * width / CITY_SIZE);
-            int y2 = (int) (dest.getY() * height / CITY_SIZE);
+            int x1 = viewport.toScreenX(pickup.getX());
+            int y1 = viewport.toScreenY(pickup.getY());
+            int x2 = viewport.toScreenX(dest.getX());
+            int y2 = viewport.toScreenY(dest.getY());
 
-            g2d.setColor(new Color(100, 100, 100, 100));
-            g2d.setStroke(new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL,
-                    0, new float[]{5}, 0));
+            g2d.setColor(ROUTE_COLOR);
+            g2d.setStroke(ROUTE_STROKE);
             g2d.drawLine(x1, y1, x2, y2);
-            g2d.setStroke(new BasicStroke(1));
+            g2d.setStroke(DEFAULT_STROKE);
 
             Color pickupColor = order.getPriority() == 2 ? Color.ORANGE :
                                order.getPriority() == 1 ? Color.YELLOW :
-                               new Color(100, 200, 100);
+                               LOW_PRIORITY_COLOR;
             g2d.setColor(pickupColor);
             g2d.fillOval(x1 - 6, y1 - 6, 12, 12);
             g2d.setColor(Color.BLACK);
             g2d.drawOval(x1 - 6, y1 - 6, 12, 12);
 
-            g2d.setColor(new Color(200, 100, 100));
+            g2d.setColor(DESTINATION_COLOR);
             g2d.fillRect(x2 - 5, y2 - 5, 10, 10);
             g2d.setColor(Color.BLACK);
             g2d.drawRect(x2 - 5, y2 - 5, 10, 10);
         }
     }
 
-    private static final Font TAXI_FONT = new Font("Arial", Font.BOLD, 12);
-
-    private void drawTaxis(Graphics2D g2d) {
-        int width = getWidth();
-        int height = getHeight();
-
-        g2d.setFont(TAXI_FONT);
-
-        for (Taxi taxi : taxiFleet) {
-            model.Point location = taxi.getCurrentLocation();
-            int x = (int) (location.getX() * width / CITY_SIZE);
-            int y = (int) (location.getY() * height / CITY_SIZE);
-
-            Color color;
-            TaxiState state = taxi.getState();
-            if (state == TaxiState.AVAILABLE) {
-                color = Color.GREEN;
-            } else if (state == TaxiState.GOING_TO_CLIENT) {
-                color = Color.YELLOW;
-            } else if (state == TaxiState.TRANSPORTING) {
-                color = Color.RED;
-            } else {
-                color = Color.GRAY;
-            }
-
-            g2d.setColor(color);
-            g2d.fillOval(x - 8, y - 8, 16, 16);
-
-            g2d.setColor(Color.BLACK);
-            g2d.drawOval(x - 8, y - 8, 16, 16);
-
-            String label = String.valueOf(taxi.getId());
-            g2d.drawString(label, x - 4, y + 4);
+    private BufferedImage renderLegend() {
+        BufferedImage image = createLayer(LEGEND_WIDTH + 1, LEGEND_HEIGHT + 1, Transparency.OPAQUE);
+        Graphics2D g2d = image.createGraphics();
+        try {
+            drawLegend(g2d);
+        } finally {
+            g2d.dispose();
         }
+        return image;
     }
 
     private void drawLegend(Graphics2D g2d) {
-        int x = 10;
-        int y = getHeight() - 80;
+        int x = 0;
+        int y = 0;
 
         g2d.setColor(Color.WHITE);
-        g2d.fillRect(x, y, 150, 70);
+        g2d.fillRect(x, y, LEGEND_WIDTH, LEGEND_HEIGHT);
         g2d.setColor(Color.BLACK);
-        g2d.drawRect(x, y, 150, 70);
+        g2d.drawRect(x, y, LEGEND_WIDTH, LEGEND_HEIGHT);
 
-        g2d.setFont(new Font("Arial", Font.PLAIN, 10));
+        g2d.setFont(LEGEND_FONT);
         int lineY = y + 15;
 
         g2d.setColor(Color.GREEN);
@@ -1,7 +1,10 @@
 package ui;
 
+import statistics.DemandHeatmap;
+
 import javax.swing.*;
 import java.awt.*;
+import java.util.Hashtable;
 
 public class ControlPanel extends JPanel {
     private final TaxiSystemUI parentUI;
@@ -9,8 +12,18 @@ public class ControlPanel extends JPanel {
     private final JButton startButton;
     private final JButton pauseButton;
     private final JButton resumeButton;
+    private final JButton stepButton;
     private final JButton stopButton;
     private final JLabel statusLabel;
+    private final JComboBox<Object> heatmapSelector;
+    private final JCheckBox animationToggle;
+    private final JSlider simulationSpeedSlider;
+    private final JToggleButton replayButton;
+    private final JButton playButton;
+    private final JComboBox<String> speedSelector;
+    private final JSlider seekSlider;
+    private final JLabel replayTimeLabel;
+    private boolean updatingSlider;
 
     private boolean isRunning = false;
     private boolean isPaused = false;
@@ -18,9 +31,11 @@ public class ControlPanel extends JPanel {
     public ControlPanel(TaxiSystemUI parentUI) {
         this.parentUI = parentUI;
 
-        setLayout(new FlowLayout(FlowLayout.CENTER, 10, 10));
+        setLayout(new GridLayout(2, 1));
         setBorder(BorderFactory.createTitledBorder("Управление"));
-        setPreferredSize(new Dimension(0, 80));
+        setPreferredSize(new Dimension(0, 130));
+        JPanel systemRow = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 5));
+        JPanel replayRow = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 5));
 
         startButton = new JButton("Запустить систему");
         startButton.setFont(new Font("Arial", Font.BOLD, 14));
@@ -41,6 +56,13 @@ public class ControlPanel extends JPanel {
         resumeButton.setFocusPainted(false);
         resumeButton.addActionListener(e -> resumeSystem());
 
+        stepButton = new JButton("⏭ Шаг");
+        stepButton.setFont(new Font("Arial", Font.PLAIN, 14));
+        stepButton.setToolTipText("Пропустить 1 секунду времени симуляции");
+        stepButton.setEnabled(false);
+        stepButton.setFocusPainted(false);
+        stepButton.addActionListener(e -> parentUI.stepSystem());
+
         stopButton = new JButton("⏹ Остановить");
         stopButton.setFont(new Font("Arial", Font.BOLD, 14));
         stopButton.setBackground(new Color(255, 150, 150));
@@ -48,15 +70,98 @@ public class ControlPanel extends JPanel {
         stopButton.setFocusPainted(false);
         stopButton.addActionListener(e -> stopSystem());
 
+        heatmapSelector = new JComboBox<>();
+        heatmapSelector.addItem("Без тепловой карты");
+        for (DemandHeatmap.Layer layer : DemandHeatmap.Layer.values()) {
+            heatmapSelector.addItem(layer);
+        }
+        heatmapSelector.setFocusable(false);
+        heatmapSelector.addActionListener(e -> {
+            Object selected = heatmapSelector.getSelectedItem();
+            parentUI.setHeatmapLayer(selected instanceof DemandHeatmap.Layer
+                    ? (DemandHeatmap.Layer) selected
+                    : null);
+        });
+
+        animationToggle = new JCheckBox("Плавное движение", true);
+        animationToggle.setFocusable(false);
+        animationToggle.addActionListener(e -> parentUI.setAnimationEnabled(animationToggle.isSelected()));
+
+        // степень двойки: -2..3 → ×0.25..×8
+        simulationSpeedSlider = new JSlider(-2, 3, 0);
+        simulationSpeedSlider.setMajorTickSpacing(1);
+        simulationSpeedSlider.setSnapToTicks(true);
+        simulationSpeedSlider.setPaintLabels(true);
+        simulationSpeedSlider.setPreferredSize(new Dimension(220, 40));
+        simulationSpeedSlider.setFocusable(false);
+        Hashtable<Integer, JComponent> speedLabels = new Hashtable<>();
+        String[] speedNames = {"×0.25", "×0.5", "×1", "×2", "×4", "×8"};
+        for (int i = 0; i < speedNames.length; i++) {
+            speedLabels.put(i - 2, new JLabel(speedNames[i]));
+        }
+        simulationSpeedSlider.setLabelTable(speedLabels);
+        simulationSpeedSlider.addChangeListener(e ->
+                parentUI.setSimulationSpeed(Math.pow(2, simulationSpeedSlider.getValue())));
+
         statusLabel = new JLabel("⏳ Загрузка системы...");
         statusLabel.setFont(new Font("Arial", Font.BOLD, 14));
         statusLabel.setForeground(new Color(0, 100, 200));
 
-        add(pauseButton);
-        add(resumeButton);
-        add(stopButton);
-        add(Box.createHorizontalStrut(20));
-        add(statusLabel);
+        replayButton = new JToggleButton("⏪ Повтор");
+        replayButton.setFont(new Font("Arial", Font.PLAIN, 14));
+        replayButton.setFocusPainted(false);
+        replayButton.addActionListener(e -> parentUI.setReplayMode(replayButton.isSelected()));
+
+        playButton = new JButton("▶");
+        playButton.setFocusPainted(false);
+        playButton.addActionListener(e -> parentUI.toggleReplayPlayback());
+
+        speedSelector = new JComboBox<>(new String[]{"×0.25", "×0.5", "×1", "×2", "×4", "×8", "×16"});
+        speedSelector.setSelectedItem("×1");
+        speedSelector.setFocusable(false);
+        speedSelector.addActionListener(e -> parentUI.setReplaySpeed(
+                Double.parseDouble(((String) speedSelector.getSelectedItem()).substring(1))));
+
+        seekSlider = new JSlider(0, ReplayController.SEEK_STEPS, ReplayController.SEEK_STEPS);
+        seekSlider.setPreferredSize(new Dimension(400, 24));
+        seekSlider.addChangeListener(e -> {
+            if (!updatingSlider) {
+                parentUI.seekReplay(seekSlider.getValue() / (double) ReplayController.SEEK_STEPS);
+            }
+        });
+
+        replayTimeLabel = new JLabel("--:--:--");
+        replayTimeLabel.setFont(new Font("Monospaced", Font.BOLD, 13));
+        setReplayControlsEnabled(false);
+
+        systemRow.add(pauseButton);
+        systemRow.add(resumeButton);
+        systemRow.add(stepButton);
+        systemRow.add(stopButton);
+        systemRow.add(new JLabel("Скорость симуляции:"));
+        systemRow.add(simulationSpeedSlider);
+        systemRow.add(Box.createHorizontalStrut(20));
+        systemRow.add(new JLabel("Тепловая карта:"));
+        systemRow.add(heatmapSelector);
+        systemRow.add(animationToggle);
+        systemRow.add(Box.createHorizontalStrut(20));
+        systemRow.add(statusLabel);
+
+        replayRow.add(replayButton);
+        replayRow.add(playButton);
+        replayRow.add(new JLabel("Скорость:"));
+        replayRow.add(speedSelector);
+        replayRow.add(seekSlider);
+        replayRow.add(replayTimeLabel);
+
+        add(systemRow);
+        add(replayRow);
+    }
+
+    private void setReplayControlsEnabled(boolean enabled) {
+        playButton.setEnabled(enabled);
+        speedSelector.setEnabled(enabled);
+        seekSlider.setEnabled(enabled);
     }
 
     private void startSystem() {
@@ -103,6 +208,7 @@ public class ControlPanel extends JPanel {
 
         pauseButton.setEnabled(false);
         resumeButton.setEnabled(true);
+        stepButton.setEnabled(true);
 
         statusLabel.setText("Система на паузе");
         statusLabel.setForeground(new Color(200, 150, 0));
@@ -113,8 +219,32 @@ public class ControlPanel extends JPanel {
 
         pauseButton.setEnabled(true);
         resumeButton.setEnabled(false);
+        stepButton.setEnabled(false);
 
         statusLabel.setText("Система работает");
         statusLabel.setForeground(new Color(0, 150, 0));
     }
+
+    public void onReplayModeChanged(boolean active) {
+        replayButton.setSelected(active);
+        replayButton.setText(active ? "⏹ Выйти из повтора" : "⏪ Повтор");
+        setReplayControlsEnabled(active);
+        if (!active) {
+            playButton.setText("▶");
+            replayTimeLabel.setText("--:--:--");
+        }
+    }
+
+    public void onReplayPosition(double fraction, String time, boolean playing) {
+        updatingSlider = true;
+        try {
+            if (!seekSlider.getValueIsAdjusting()) {
+                seekSlider.setValue((int) Math.round(fraction * ReplayController.SEEK_STEPS));
+            }
+        } finally {
+            updatingSlider = false;
+        }
+        replayTimeLabel.setText(time);
+        playButton.setText(playing ? "⏸" : "▶");
+    }
 }
@@ -0,0 +1,124 @@
+package ui;
+
+import model.Point;
+import model.TaxiState;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Текущий участок пути каждого такси для анимации карты. Участок
+ * записывается один раз — при выезде или смене состояния — неизменяемым
+ * объектом, а кадр по номеру такси читает его и вычисляет положение по
+ * времени, не обращаясь к самим такси и ничего не создавая. Таблица
+ * растёт по наибольшему номеру такси: запись под монитором копирует
+ * массив, чтение идёт без блокировок через volatile-ссылку.
+ */
+public class FleetMotion {
+    private volatile AtomicReferenceArray<Leg> legs;
+    private volatile long lastArrivalNanos;
+
+    public FleetMotion() {
+        this.legs = new AtomicReferenceArray<>(64);
+    }
+
+    public synchronized void place(int taxiId, TaxiState state, Point location) {
+        long now = System.nanoTime();
+        slots(taxiId).set(taxiId, new Leg(taxiId, state, location, location, now, now));
+    }
+
+    public synchronized void stateChanged(int taxiId, TaxiState state, Point location, long now) {
+        AtomicReferenceArray<Leg> current = slots(taxiId);
+        Leg leg = current.get(taxiId);
+        if (leg != null && leg.arriveNanos > now) {
+            // смена состояния посреди участка не должна обрывать движение
+            current.set(taxiId, new Leg(taxiId, state, leg.fromX, leg.fromY, leg.toX, leg.toY,
+                    leg.departNanos, leg.arriveNanos));
+        } else {
+            current.set(taxiId, new Leg(taxiId, state, location, location, now, now));
+        }
+    }
+
+    public synchronized void legStarted(int taxiId, TaxiState state, Point from, Point to,
+                                        long departNanos, long arriveNanos) {
+        slots(taxiId).set(taxiId, new Leg(taxiId, state, from, to, departNanos, arriveNanos));
+        if (arriveNanos > lastArrivalNanos) {
+            lastArrivalNanos = arriveNanos;
+        }
+    }
+
+    /**
+     * Участок, восстановленный из записанного состояния.
+     */
+    public synchronized void restore(int taxiId, TaxiState state, double fromX, double fromY,
+                                     double toX, double toY, long departNanos, long arriveNanos) {
+        slots(taxiId).set(taxiId, new Leg(taxiId, state, fromX, fromY, toX, toY, departNanos, arriveNanos));
+        if (arriveNanos > lastArrivalNanos) {
+            lastArrivalNanos = arriveNanos;
+        }
+    }
+
+    private AtomicReferenceArray<Leg> slots(int taxiId) {
+        AtomicReferenceArray<Leg> current = legs;
+        if (taxiId < current.length()) {
+            return current;
+        }
+        int capacity = current.length();
+        while (capacity <= taxiId) {
+            capacity *= 2;
+        }
+        AtomicReferenceArray<Leg> grown = new AtomicReferenceArray<>(capacity);
+        for (int i = 0; i < current.length(); i++) {
+            grown.set(i, current.get(i));
+        }
+        legs = grown;
+        return grown;
+    }
+
+    /**
+     * Хотя бы одно такси ещё в пути к моменту now.
+     */
+    public boolean isMoving(long now) {
+        return lastArrivalNanos > now;
+    }
+
+    AtomicReferenceArray<Leg> getLegs() {
+        return legs;
+    }
+
+    static final class Leg {
+        final int taxiId;
+        final byte state;
+        final double fromX;
+        final double fromY;
+        final double toX;
+        final double toY;
+        final long departNanos;
+        final long arriveNanos;
+
+        Leg(int taxiId, TaxiState state, Point from, Point to, long departNanos, long arriveNanos) {
+            this(taxiId, state, from.getX(), from.getY(), to.getX(), to.getY(), departNanos, arriveNanos);
+        }
+
+        Leg(int taxiId, TaxiState state, double fromX, double fromY, double toX, double toY,
+            long departNanos, long arriveNanos) {
+            this.taxiId = taxiId;
+            this.state = (byte) state.ordinal();
+            this.fromX = fromX;
+            this.fromY = fromY;
+            this.toX = toX;
+            this.toY = toY;
+            this.departNanos = departNanos;
+            this.arriveNanos = arriveNanos;
+        }
+
+        double progress(long now) {
+            if (now >= arriveNanos) {
+                return 1;
+            }
+            if (now <= departNanos) {
+                return 0;
+            }
+            return (double) (now - departNanos) / (arriveNanos - departNanos);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package ui;
+
+import model.HistoryEvent;
+import statistics.RideHistory;
+
+import java.awt.*;
+
+/**
+ * Таблица истории без копии данных: строка r — это событие с номером
+ * newest - r в кольцевом буфере RideHistory. Новые события добавляются
+ * сверху одним диапазоном, вытесненные уходят снизу, а события, которые
+ * буфер успел перезаписать между обновлением и отрисовкой, показываются
+ * пустой строкой.
+ */
+class HistoryTableModel extends SnapshotTableModel {
+    private static final Color CREATED_COLOR = new Color(220, 240, 255);
+    private static final Color ASSIGNED_COLOR = new Color(220, 255, 220);
+    private static final Color FAILED_COLOR = new Color(255, 220, 220);
+    private static final Color STARTED_COLOR = new Color(255, 255, 200);
+    private static final Color COMPLETED_COLOR = new Color(200, 255, 200);
+
+    private final RideHistory history;
+    private long newest = -1;
+    private int rowCount;
+
+    private long cachedSequence = -1;
+    private HistoryEvent cachedEvent;
+
+    HistoryTableModel(RideHistory history) {
+        super("Время", "Событие", "Заказ", "Такси", "Клиент", "Детали");
+        this.history = history;
+    }
+
+    void update() {
+        long latest = history.getLastSequence();
+        int count = (int) Math.min(history.getEventCount(), latest + 1);
+        long added = latest - newest;
+        int oldCount = rowCount;
+        long expected = Math.min(history.getCapacity(), oldCount + added);
+
+        newest = latest;
+        cachedSequence = -1;
+        cachedEvent = null;
+
+        if (count < expected || added > count) {
+            // история очищена или обновилась целиком
+            rowCount = count;
+            fireTableDataChanged();
+            return;
+        }
+
+        rowCount = count;
+        if (added > 0) {
+            fireTableRowsInserted(0, (int) added - 1);
+        }
+        int shifted = oldCount + (int) added;
+        if (shifted > count) {
+            fireTableRowsDeleted(count, shifted - 1);
+        }
+    }
+
+    long getTotalEvents() {
+        return history.getTotalEvents();
+    }
+
+    private HistoryEvent eventAt(int row) {
+        long sequence = newest - row;
+        if (sequence != cachedSequence) {
+            cachedSequence = sequence;
+            cachedEvent = history.getEvent(sequence);
+        }
+        return cachedEvent;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    boolean sameRow(int row) {
+        // события истории неизменяемы, меняется только их номер строки
+        return true;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return eventAt(row);
+    }
+
+    @Override
+    String formatCell(int row, int column) {
+        HistoryEvent event = eventAt(row);
+        if (event == null) {
+            return "";
+        }
+        switch (column) {
+            case 0:
+                return event.getFormattedTime();
+            case 1:
+                return event.getType().getDisplayName();
+            case 2:
+                return "#" + event.getOrderId();
+            case 3:
+                return event.hasTaxi() ? "#" + event.getTaxiId() : "-";
+            case 4:
+                return event.getClientName() != null ? event.getClientName() : "-";
+            default:
+                return event.getDescription();
+        }
+    }
+
+    @Override
+    Color cellBackground(int row, int column) {
+        HistoryEvent event = column == 1 ? eventAt(row) : null;
+        if (event == null) {
+            return Color.WHITE;
+        }
+        switch (event.getType()) {
+            case ORDER_CREATED:
+                return CREATED_COLOR;
+            case ORDER_ASSIGNED:
+                return ASSIGNED_COLOR;
+            case ORDER_FAILED:
+                return FAILED_COLOR;
+            case RIDE_STARTED:
+                return STARTED_COLOR;
+            case RIDE_COMPLETED:
+                return COMPLETED_COLOR;
+            default:
+                return Color.WHITE;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package ui;
+
+/**
+ * Видимая часть города: левый верхний угол в координатах города и масштаб
+ * (1 — весь город на панели). Используется только из потока отрисовки.
+ */
+final class MapViewport {
+    static final double MIN_ZOOM = 1;
+    static final double MAX_ZOOM = 64;
+
+    private final double citySize;
+    private double originX;
+    private double originY;
+    private double zoom = MIN_ZOOM;
+    private int width;
+    private int height;
+    private long version;
+
+    MapViewport(double citySize) {
+        this.citySize = citySize;
+    }
+
+    void setSize(int width, int height) {
+        if (this.width != width || this.height != height) {
+            this.width = width;
+            this.height = height;
+            version++;
+        }
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    double getZoom() {
+        return zoom;
+    }
+
+    double scaleX() {
+        return width * zoom / citySize;
+    }
+
+    double scaleY() {
+        return height * zoom / citySize;
+    }
+
+    int toScreenX(double x) {
+        return (int) ((x - originX) * scaleX());
+    }
+
+    int toScreenY(double y) {
+        return (int) ((y - originY) * scaleY());
+    }
+
+    double toCityX(int screenX) {
+        return originX + screenX / scaleX();
+    }
+
+    double toCityY(int screenY) {
+        return originY + screenY / scaleY();
+    }
+
+    double getMinX() {
+        return originX;
+    }
+
+    double getMinY() {
+        return originY;
+    }
+
+    double getMaxX() {
+        return originX + citySize / zoom;
+    }
+
+    double getMaxY() {
+        return originY + citySize / zoom;
+    }
+
+    void zoomAt(int screenX, int screenY, double factor) {
+        double cityX = toCityX(screenX);
+        double cityY = toCityY(screenY);
+        double previousX = originX;
+        double previousY = originY;
+        double previousZoom = zoom;
+        zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+        originX = cityX - screenX / scaleX();
+        originY = cityY - screenY / scaleY();
+        clamp(previousX, previousY, previousZoom);
+    }
+
+    void panBy(int dx, int dy) {
+        double previousX = originX;
+        double previousY = originY;
+        originX -= dx / scaleX();
+        originY -= dy / scaleY();
+        clamp(previousX, previousY, zoom);
+    }
+
+    void show(double centerX, double centerY, double zoom) {
+        double previousX = originX;
+        double previousY = originY;
+        double previousZoom = this.zoom;
+        this.zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom));
+        originX = centerX - citySize / this.zoom / 2;
+        originY = centerY - citySize / this.zoom / 2;
+        clamp(previousX, previousY, previousZoom);
+    }
+
+    void reset() {
+        show(citySize / 2, citySize / 2, MIN_ZOOM);
+    }
+
+    /**
+     * Возвращает область в пределы города. Версия меняется, только если
+     * область действительно сдвинулась, а не на каждое событие мыши у
+     * края города или на предельном масштабе.
+     */
+    private void clamp(double previousX, double previousY, double previousZoom) {
+        double span = citySize / zoom;
+        originX = Math.max(0, Math.min(citySize - span, originX));
+        originY = Math.max(0, Math.min(citySize - span, originY));
+        if (originX != previousX || originY != previousY || zoom != previousZoom) {
+            version++;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ui;
+
+import dispatcher.OrderQueue;
+import model.RideRequest;
+
+import java.awt.*;
+
+class OrderQueueTableModel extends SnapshotTableModel {
+    private static final Color VIP_COLOR = new Color(255, 200, 100);
+    private static final Color HIGH_COLOR = new Color(255, 255, 150);
+
+    private final OrderQueue orderQueue;
+    private RideRequest[] current;
+    private RideRequest[] previous;
+    private int currentCount;
+    private int previousCount;
+
+    OrderQueueTableModel(OrderQueue orderQueue, int visibleOrders) {
+        super("ID", "Клиент", "Приоритет", "Дистанция");
+        this.orderQueue = orderQueue;
+        this.current = new RideRequest[visibleOrders];
+        this.previous = new RideRequest[visibleOrders];
+    }
+
+    void update() {
+        RideRequest[] next = previous;
+        int nextCount = orderQueue.topPending(next);
+        for (int i = nextCount; i < previousCount; i++) {
+            next[i] = null;
+        }
+
+        previous = current;
+        previousCount = currentCount;
+        current = next;
+        currentCount = nextCount;
+        fireSnapshotChanged(previousCount, currentCount);
+    }
+
+    @Override
+    public int getRowCount() {
+        return currentCount;
+    }
+
+    @Override
+    boolean sameRow(int row) {
+        return previous[row] == current[row];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return current[row];
+    }
+
+    @Override
+    String formatCell(int row, int column) {
+        RideRequest order = current[row];
+        switch (column) {
+            case 0:
+                return "#" + order.getId();
+            case 1:
+                return order.getClientName();
+            case 2:
+                return order.getPriority() == 2 ? "VIP" :
+                        order.getPriority() == 1 ? "Высокий" : "Обычный";
+            default:
+                return String.format("%.1f км", order.getDistance());
+        }
+    }
+
+    @Override
+    Color cellBackground(int row, int column) {
+        if (column != 2) {
+            return Color.WHITE;
+        }
+        int priority = current[row].getPriority();
+        return priority == 2 ? VIP_COLOR : priority == 1 ? HIGH_COLOR : Color.WHITE;
+    }
+}
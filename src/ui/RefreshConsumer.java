@@ -0,0 +1,66 @@
+package ui;
+
+import events.EventConsumer;
+import events.LifecycleEvent;
+
+/**
+ * Переводит события шины в пометки панелей. Биты копятся за пачку и
+ * передаются планировщику один раз в её конце. Участки пути и смены
+ * состояния такси попутно записываются в таблицу анимации карты.
+ */
+class RefreshConsumer implements EventConsumer {
+    private static final int ORDER_CHANGE = RefreshScheduler.ORDERS | RefreshScheduler.HISTORY
+            | RefreshScheduler.STATS | RefreshScheduler.MAP;
+    private static final int RIDE_CHANGE = RefreshScheduler.HISTORY | RefreshScheduler.STATS
+            | RefreshScheduler.TAXIS | RefreshScheduler.MAP;
+    private static final int TAXI_CHANGE = RefreshScheduler.TAXIS | RefreshScheduler.STATS
+            | RefreshScheduler.MAP;
+
+    private final RefreshScheduler scheduler;
+    private final FleetMotion motion;
+    private int pending;
+
+    RefreshConsumer(RefreshScheduler scheduler, FleetMotion motion) {
+        this.scheduler = scheduler;
+        this.motion = motion;
+    }
+
+    @Override
+    public String getName() {
+        return "ui-refresh";
+    }
+
+    @Override
+    public void onEvent(LifecycleEvent event) {
+        switch (event.getType()) {
+            case ORDER_CREATED:
+            case ORDER_ASSIGNED:
+            case ORDER_FAILED:
+                pending |= ORDER_CHANGE;
+                break;
+            case RIDE_STARTED:
+            case RIDE_COMPLETED:
+                pending |= RIDE_CHANGE;
+                break;
+            case TAXI_STATE_CHANGED:
+                motion.stateChanged(event.getTaxiId(), event.getState(), event.getLocation(), event.getNanos());
+                pending |= TAXI_CHANGE;
+                break;
+            case TAXI_LEG_STARTED:
+                motion.legStarted(event.getTaxiId(), event.getState(), event.getLocation(), event.getTarget(),
+                        event.getNanos(), event.getArrivalNanos());
+                pending |= RefreshScheduler.MAP;
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void onBatchEnd() {
+        if (pending != 0) {
+            scheduler.markDirty(pending);
+            pending = 0;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package ui;
+
+import statistics.RateWindow;
+
+import javax.swing.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Обновление панелей по изменениям. Любой поток помечает панели грязными
+ * битами; на EDT стоит не больше одной задачи обновления, и она снимает
+ * все накопленные биты разом. Между обновлениями выдерживается интервал
+ * не короче кадра, который растёт вместе с их стоимостью и удваивается,
+ * если задача попала на EDT позже срока, поэтому поток событий любой
+ * плотности превращается в ограниченное число обновлений. Без изменений
+ * не выполняется ничего, кроме редкого обновления скользящих окон
+ * статистики, которое тоже останавливается, когда окна опустели.
+ */
+final class RefreshScheduler {
+    static final int MAP = 1;
+    static final int STATS = 1 << 1;
+    static final int ORDERS = 1 << 2;
+    static final int TAXIS = 1 << 3;
+    static final int HISTORY = 1 << 4;
+    static final int ALL = MAP | STATS | ORDERS | TAXIS | HISTORY;
+    private static final int PANELS = 5;
+
+    private static final long MIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+    private static final long MAX_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int INTERVAL_PER_COST = 4;
+    private static final int HEARTBEAT_MILLIS = 1000;
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(RateWindow.maxSeconds());
+
+    private final AtomicInteger dirty = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable[] panels = new Runnable[PANELS];
+    private final javax.swing.Timer delayTimer;
+    private final javax.swing.Timer heartbeat;
+
+    private volatile long requestedNanos;
+    private volatile long lastChangeNanos;
+
+    // поля ниже читаются и пишутся только на EDT
+    private boolean started;
+    private boolean paused;
+    private long lastFlushNanos;
+    private long intervalNanos = MIN_INTERVAL_NANOS;
+    private long averageCostNanos;
+
+    RefreshScheduler() {
+        delayTimer = new javax.swing.Timer(0, e -> flush());
+        delayTimer.setRepeats(false);
+        heartbeat = new javax.swing.Timer(HEARTBEAT_MILLIS, e -> onHeartbeat());
+    }
+
+    void register(int panel, Runnable refresh) {
+        panels[Integer.numberOfTrailingZeros(panel)] = refresh;
+    }
+
+    /**
+     * Помечает панели устаревшими; вызывается из любого потока.
+     */
+    void markDirty(int bits) {
+        lastChangeNanos = System.nanoTime();
+        dirty.getAndAccumulate(bits, (current, added) -> current | added);
+        if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+            requestedNanos = System.nanoTime();
+            SwingUtilities.invokeLater(this::flush);
+        }
+    }
+
+    /**
+     * Включает обновления; вызывается на EDT. Пометка, пришедшая до
+     * запуска, могла оставить scheduled поднятым без задачи на EDT,
+     * поэтому первое обновление ставится безусловно.
+     */
+    void start() {
+        started = true;
+        lastChangeNanos = System.nanoTime();
+        dirty.getAndAccumulate(ALL, (current, added) -> current | added);
+        scheduled.set(true);
+        requestedNanos = System.nanoTime();
+        flush();
+    }
+
+    void pause() {
+        paused = true;
+        delayTimer.stop();
+        heartbeat.stop();
+    }
+
+    void resume() {
+        paused = false;
+        requestedNanos = System.nanoTime();
+        flush();
+    }
+
+    void stop() {
+        started = false;
+        delayTimer.stop();
+        heartbeat.stop();
+    }
+
+    private void flush() {
+        if (!started || paused) {
+            // флаг scheduled остаётся поднятым, чтобы пометки не ставили новых задач
+            return;
+        }
+
+        long now = System.nanoTime();
+        long due = Math.max(requestedNanos, lastFlushNanos + intervalNanos);
+        if (due > now) {
+            delayTimer.setInitialDelay((int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(due - now)));
+            delayTimer.restart();
+            return;
+        }
+
+        scheduled.set(false);
+        int bits = dirty.getAndSet(0);
+        if (bits == 0) {
+            return;
+        }
+
+        for (int panel = 0; panel < PANELS; panel++) {
+            if ((bits & 1 << panel) != 0 && panels[panel] != null) {
+                refresh(panels[panel]);
+            }
+        }
+        if (!heartbeat.isRunning()) {
+            heartbeat.start();
+        }
+
+        long finished = System.nanoTime();
+        lastFlushNanos = now;
+        adapt(finished - now, now - due);
+    }
+
+    private void refresh(Runnable panel) {
+        try {
+            panel.run();
+        } catch (RuntimeException e) {
+            System.err.println("ERROR: Could not refresh panel");
+            e.printStackTrace();
+        }
+    }
+
+    private void adapt(long costNanos, long lagNanos) {
+        averageCostNanos = averageCostNanos == 0 ? costNanos : (averageCostNanos * 7 + costNanos) / 8;
+        long interval = Math.max(MIN_INTERVAL_NANOS, averageCostNanos * INTERVAL_PER_COST);
+        if (lagNanos > intervalNanos) {
+            interval = Math.max(interval, intervalNanos * 2);
+        }
+        intervalNanos = Math.min(MAX_INTERVAL_NANOS, interval);
+    }
+
+    private void onHeartbeat() {
+        if (System.nanoTime() - lastChangeNanos > WINDOW_NANOS) {
+            heartbeat.stop();
+            return;
+        }
+        dirty.getAndAccumulate(STATS, (current, added) -> current | added);
+        if (scheduled.compareAndSet(false, true)) {
+            requestedNanos = System.nanoTime();
+            flush();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package ui;
+
+import dispatcher.OrderQueue;
+import model.HistoryEvent;
+import model.RideRequest;
+import model.TaxiState;
+import replay.ReplayEvent;
+import replay.ReplayLog;
+import replay.ReplayState;
+import statistics.DemandHeatmap;
+import statistics.RideHistory;
+import statistics.Statistics;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+
+/**
+ * Режим повтора. Держит собственные экземпляры карты, истории, очереди и
+ * статистики и наполняет их состоянием на выбранный момент. Переход
+ * вперёд в пределах текущего опорного кадра применяет только новые
+ * события, в том числе к карте, очереди и истории; иначе состояние
+ * берётся из ближайшего опорного кадра журнала, события до нужного
+ * момента применяются к нему, а представления перестраиваются один раз.
+ * Все методы вызываются на EDT.
+ */
+class ReplayController {
+    private static final int FRAME_MILLIS = 16;
+    static final int SEEK_STEPS = 1000;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.S");
+
+    private final ReplayLog log;
+    private final ControlPanel controlPanel;
+    private final OrderQueue queue;
+    private final RideHistory history;
+    private final CityMapPanel mapPanel;
+    private final HistoryPanel historyPanel;
+    private final OrderQueuePanel orderPanel;
+    private final StatisticsPanel statsPanel;
+    private final javax.swing.Timer playTimer;
+
+    private FleetMotion motion;
+    private ReplayState state;
+    private long applied;
+    private long replayNanos;
+    private double speed = 1;
+    private long lastTickNanos;
+
+    ReplayController(ReplayLog log, Statistics statistics, ControlPanel controlPanel) {
+        this.log = log;
+        this.controlPanel = controlPanel;
+        this.queue = new OrderQueue(64);
+        this.history = new RideHistory();
+        this.motion = new FleetMotion();
+        this.mapPanel = new CityMapPanel(Collections.emptyList(), queue, new DemandHeatmap());
+        this.mapPanel.setMotion(motion);
+        this.mapPanel.setMotionClock(() -> replayNanos);
+        this.mapPanel.setAnimated(true);
+        this.historyPanel = new HistoryPanel(history);
+        this.orderPanel = new OrderQueuePanel(queue);
+        this.statsPanel = new StatisticsPanel(statistics);
+        this.playTimer = new javax.swing.Timer(FRAME_MILLIS, e -> onFrame());
+        this.playTimer.setCoalesce(true);
+    }
+
+    /**
+     * Открывает повтор на последнем записанном моменте; false, если
+     * записывать пока нечего.
+     */
+    boolean enter() {
+        if (log.getFirstIndex() >= log.size()) {
+            return false;
+        }
+        state = null;
+        seek(lastNanos());
+        return true;
+    }
+
+    void exit() {
+        playTimer.stop();
+        state = null;
+        queue.clear();
+        history.clear();
+    }
+
+    void togglePlayback() {
+        if (playTimer.isRunning()) {
+            playTimer.stop();
+        } else {
+            if (replayNanos >= lastNanos()) {
+                seek(firstNanos());
+            }
+            lastTickNanos = System.nanoTime();
+            playTimer.start();
+        }
+        publishPosition();
+    }
+
+    void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    void seekFraction(double fraction) {
+        long first = firstNanos();
+        seek(first + (long) ((lastNanos() - first) * fraction));
+    }
+
+    private void onFrame() {
+        long now = System.nanoTime();
+        long target = replayNanos + (long) ((now - lastTickNanos) * speed);
+        lastTickNanos = now;
+        long last = lastNanos();
+        if (target >= last) {
+            target = last;
+            playTimer.stop();
+        }
+        seek(target);
+    }
+
+    private void seek(long nanos) {
+        long first = log.getFirstIndex();
+        long size = log.size();
+        if (first >= size) {
+            return;
+        }
+
+        long target = log.indexAfter(nanos, first, size);
+        long keyframe = log.keyframeIndexAtOrBefore(Math.min(target, size - 1));
+        if (keyframe < 0) {
+            return;
+        }
+
+        if (state != null && applied >= keyframe && applied >= first && applied <= target) {
+            applyForward(target);
+        } else {
+            restore(keyframe, target);
+        }
+
+        replayNanos = nanos;
+        mapPanel.repaint();
+        orderPanel.updateOrders();
+        historyPanel.updateHistory();
+        statsPanel.showReplay(state, formatTime(target));
+        publishPosition();
+    }
+
+    private void applyForward(long target) {
+        for (; applied < target; applied++) {
+            ReplayEvent event = log.get(applied);
+            if (event == null) {
+                break;
+            }
+            state.apply(event);
+            switch (event.getType()) {
+                case ORDER_CREATED:
+                    queue.offer(event.getRequest());
+                    break;
+                case ORDER_ASSIGNED:
+                    queue.remove(event.getRequest());
+                    break;
+                case ORDER_FAILED:
+                    if (!queue.contains(event.getRequest())) {
+                        queue.offer(event.getRequest());
+                    }
+                    break;
+                case TAXI_STATE_CHANGED:
+                    motion.stateChanged(event.getTaxiId(), event.getState(), event.getLocation(), event.getNanos());
+                    break;
+                case TAXI_LEG_STARTED:
+                    motion.legStarted(event.getTaxiId(), event.getState(), event.getLocation(), event.getTarget(),
+                            event.getNanos(), event.getArrivalNanos());
+                    break;
+                default:
+                    break;
+            }
+            HistoryEvent historyEvent = event.getHistoryEvent();
+            if (historyEvent != null) {
+                history.addEvent(historyEvent);
+            }
+        }
+    }
+
+    private void restore(long keyframe, long target) {
+        state = log.keyframeCopy(keyframe);
+        applied = keyframe;
+        for (; applied < target; applied++) {
+            ReplayEvent event = log.get(applied);
+            if (event == null) {
+                break;
+            }
+            state.apply(event);
+        }
+
+        motion = new FleetMotion();
+        for (int taxiId = 0; taxiId < state.getTaxiCapacity(); taxiId++) {
+            TaxiState taxiState = state.getState(taxiId);
+            if (taxiState != null) {
+                motion.restore(taxiId, taxiState, state.getFromX(taxiId), state.getFromY(taxiId),
+                        state.getToX(taxiId), state.getToY(taxiId),
+                        state.getDepartNanos(taxiId), state.getArriveNanos(taxiId));
+            }
+        }
+        mapPanel.setMotion(motion);
+
+        queue.clear();
+        for (RideRequest request : state.getPending()) {
+            queue.offer(request);
+        }
+
+        rebuildHistory();
+    }
+
+    /**
+     * Заполняет историю последними событиями до текущего момента — не
+     * больше, чем вмещает её буфер.
+     */
+    private void rebuildHistory() {
+        history.clear();
+        HistoryEvent[] recent = new HistoryEvent[history.getCapacity()];
+        int count = 0;
+        long first = log.getFirstIndex();
+        for (long index = applied - 1; index >= first && count < recent.length; index--) {
+            ReplayEvent event = log.get(index);
+            if (event == null) {
+                break;
+            }
+            if (event.getHistoryEvent() != null) {
+                recent[count++] = event.getHistoryEvent();
+            }
+        }
+        for (int i = count - 1; i >= 0; i--) {
+            history.addEvent(recent[i]);
+        }
+    }
+
+    private void publishPosition() {
+        long first = firstNanos();
+        long span = lastNanos() - first;
+        double fraction = span > 0 ? (replayNanos - first) / (double) span : 1;
+        controlPanel.onReplayPosition(Math.max(0, Math.min(1, fraction)), formatTime(applied),
+                playTimer.isRunning());
+    }
+
+    private String formatTime(long index) {
+        ReplayEvent event = log.get(Math.max(log.getFirstIndex(), Math.min(index, log.size()) - 1));
+        if (event == null) {
+            return "-";
+        }
+        long epochNanos = event.getEpochNanos() + (replayNanos - event.getNanos());
+        return Instant.ofEpochSecond(0, epochNanos).atZone(ZoneId.systemDefault()).format(TIME_FORMAT);
+    }
+
+    private long firstNanos() {
+        ReplayEvent event = log.get(log.getFirstIndex());
+        return event != null ? event.getNanos() : 0;
+    }
+
+    private long lastNanos() {
+        ReplayEvent event = log.get(log.size() - 1);
+        return event != null ? event.getNanos() : 0;
+    }
+
+    CityMapPanel getMapPanel() {
+        return mapPanel;
+    }
+
+    HistoryPanel getHistoryPanel() {
+        return historyPanel;
+    }
+
+    OrderQueuePanel getOrderPanel() {
+        return orderPanel;
+    }
+
+    StatisticsPanel getStatsPanel() {
+        return statsPanel;
+    }
+}
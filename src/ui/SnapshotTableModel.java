@@ -0,0 +1,122 @@
+package ui;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.*;
+
+/**
+ * Модель таблицы поверх снимка данных. Наследник при обновлении снимает
+ * новый снимок целиком, а эта модель сравнивает его с предыдущим построчно
+ * и сообщает таблице только об изменившихся строках, склеивая соседние в
+ * один диапазон. Текст ячеек формирует отрисовщик и только для видимых
+ * строк, поэтому стоимость обновления не зависит от форматирования всех
+ * строк таблицы.
+ */
+abstract class SnapshotTableModel extends AbstractTableModel {
+    private static final int MAX_UPDATE_RANGES = 32;
+
+    private final String[] columnNames;
+
+    SnapshotTableModel(String... columnNames) {
+        this.columnNames = columnNames;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    /**
+     * Текст ячейки для отрисовщика; getValueAt наследников возвращает
+     * неформатированные значения.
+     */
+    abstract String formatCell(int row, int column);
+
+    Color cellBackground(int row, int column) {
+        return Color.WHITE;
+    }
+
+    /**
+     * Строка row совпадает в предыдущем и текущем снимке.
+     */
+    abstract boolean sameRow(int row);
+
+    /**
+     * Вызывается после замены снимка: getRowCount уже возвращает новое число строк.
+     */
+    final void fireSnapshotChanged(int oldRowCount, int newRowCount) {
+        if (newRowCount < oldRowCount) {
+            fireTableRowsDeleted(newRowCount, oldRowCount - 1);
+        }
+
+        int common = Math.min(oldRowCount, newRowCount);
+        int ranges = 0;
+        int rangeStart = -1;
+        int lastChanged = -1;
+        for (int row = 0; row < common; row++) {
+            if (!sameRow(row)) {
+                if (rangeStart < 0) {
+                    rangeStart = row;
+                }
+                lastChanged = row;
+            } else if (rangeStart >= 0 && ranges < MAX_UPDATE_RANGES - 1) {
+                fireTableRowsUpdated(rangeStart, lastChanged);
+                ranges++;
+                rangeStart = -1;
+            }
+        }
+        if (rangeStart >= 0) {
+            fireTableRowsUpdated(rangeStart, lastChanged);
+        }
+
+        if (newRowCount > oldRowCount) {
+            fireTableRowsInserted(oldRowCount, newRowCount - 1);
+        }
+    }
+
+    static JTable createTable(SnapshotTableModel model) {
+        JTable table = new JTable(model);
+        table.setFont(new Font("Arial", Font.PLAIN, 11));
+        table.getTableHeader().setFont(new Font("Arial", Font.BOLD, 11));
+        table.setRowHeight(22);
+        table.setDefaultRenderer(Object.class, new Renderer(model));
+        return table;
+    }
+
+    private static final class Renderer extends DefaultTableCellRenderer {
+        private final SnapshotTableModel model;
+
+        Renderer(SnapshotTableModel model) {
+            this.model = model;
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value,
+                                                       boolean isSelected, boolean hasFocus,
+                                                       int row, int column) {
+            super.getTableCellRendererComponent(table, null, isSelected, hasFocus, row, column);
+            int modelRow = table.convertRowIndexToModel(row);
+            int modelColumn = table.convertColumnIndexToModel(column);
+            if (modelRow >= model.getRowCount()) {
+                setText("");
+                return this;
+            }
+            setText(model.formatCell(modelRow, modelColumn));
+            if (!isSelected) {
+                setBackground(model.cellBackground(modelRow, modelColumn));
+            }
+            return this;
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package ui;
 
+import replay.ReplayState;
+import statistics.LatencyHistogram;
+import statistics.RateWindow;
+import statistics.RideLatencies;
 import statistics.Statistics;
+import statistics.StatisticsSnapshot;
 
 import javax.swing.*;
 import java.awt.*;
@@ -13,16 +18,20 @@ public class StatisticsPanel extends JPanel {
     private final JLabel failedLabel;
     private final JLabel revenueLabel;
     private final JLabel distanceLabel;
+    private final JLabel latencyLabel;
+    private final JLabel ratesLabel;
 
     public StatisticsPanel(Statistics statistics) {
         this.statistics = statistics;
 
-        setLayout(new GridLayout(1, 5, 10, 5));
+        setLayout(new BorderLayout(5, 5));
         setBorder(BorderFactory.createCompoundBorder(
                 BorderFactory.createTitledBorder("Статистика работы системы"),
                 BorderFactory.createEmptyBorder(5, 10, 5, 10)
         ));
-        setPreferredSize(new Dimension(0, 80));
+        setPreferredSize(new Dimension(0, 125));
+
+        JPanel countersPanel = new JPanel(new GridLayout(1, 5, 10, 5));
 
         completedLabel = createStatLabel("Завершено поездок", "0");
         assignedLabel = createStatLabel("Назначено заказов", "0");
@@ -30,11 +39,26 @@ public class StatisticsPanel extends JPanel {
         revenueLabel = createStatLabel("Выручка", "0.00 руб");
         distanceLabel = createStatLabel("Дистанция", "0.0 км");
 
-        add(completedLabel);
-        add(assignedLabel);
-        add(failedLabel);
-        add(revenueLabel);
-        add(distanceLabel);
+        countersPanel.add(completedLabel);
+        countersPanel.add(assignedLabel);
+        countersPanel.add(failedLabel);
+        countersPanel.add(revenueLabel);
+        countersPanel.add(distanceLabel);
+        add(countersPanel, BorderLayout.CENTER);
+
+        JPanel detailsPanel = new JPanel(new GridLayout(2, 1, 0, 2));
+
+        ratesLabel = new JLabel("Скорость: нет данных");
+        ratesLabel.setFont(new Font("Arial", Font.PLAIN, 11));
+        ratesLabel.setForeground(Color.DARK_GRAY);
+        detailsPanel.add(ratesLabel);
+
+        latencyLabel = new JLabel("Задержки p50/p99: нет данных");
+        latencyLabel.setFont(new Font("Arial", Font.PLAIN, 11));
+        latencyLabel.setForeground(Color.DARK_GRAY);
+        detailsPanel.add(latencyLabel);
+
+        add(detailsPanel, BorderLayout.SOUTH);
     }
 
     private JLabel createStatLabel(String title, String value) {
@@ -60,11 +84,53 @@ public class StatisticsPanel extends JPanel {
     }
 
     public void updateStats() {
-        updateLabelValue(completedLabel, String.valueOf(statistics.getTotalRidesCompleted()));
-        updateLabelValue(assignedLabel, String.valueOf(statistics.getTotalOrdersAssigned()));
-        updateLabelValue(failedLabel, String.valueOf(statistics.getTotalOrdersFailed()));
-        updateLabelValue(revenueLabel, String.format("%.2f руб", statistics.getTotalRevenue()));
-        updateLabelValue(distanceLabel, String.format("%.1f км", statistics.getTotalDistance()));
+        StatisticsSnapshot snapshot = statistics.snapshot();
+
+        updateLabelValue(completedLabel, String.valueOf(snapshot.getRidesCompleted()));
+        updateLabelValue(assignedLabel, String.valueOf(snapshot.getOrdersAssigned()));
+        updateLabelValue(failedLabel, String.valueOf(snapshot.getOrdersFailed()));
+        updateLabelValue(revenueLabel, String.format("%.2f руб", snapshot.getTotalRevenue()));
+        updateLabelValue(distanceLabel, String.format("%.1f км", snapshot.getTotalDistance()));
+        ratesLabel.setText(formatRates(snapshot));
+        latencyLabel.setText(formatLatencies(statistics.getLatencies()));
+    }
+
+    /**
+     * Показывает счётчики, восстановленные из журнала повтора, вместо живых.
+     */
+    public void showReplay(ReplayState state, String position) {
+        updateLabelValue(completedLabel, String.valueOf(state.getRidesCompleted()));
+        updateLabelValue(assignedLabel, String.valueOf(state.getOrdersAssigned()));
+        updateLabelValue(failedLabel, String.valueOf(state.getOrdersFailed()));
+        updateLabelValue(revenueLabel, String.format("%.2f руб", state.getRevenue()));
+        updateLabelValue(distanceLabel, String.format("%.1f км", state.getDistance()));
+        ratesLabel.setText(String.format("Повтор: %s  |  Создано заказов %d, ожидают назначения %d, начато поездок %d",
+                position, state.getOrdersCreated(), state.getPending().size(), state.getRidesStarted()));
+        latencyLabel.setText(String.format("Такси в записи: %d", state.getTaxiCount()));
+    }
+
+    private String formatRates(StatisticsSnapshot snapshot) {
+        StringBuilder text = new StringBuilder("Поездок/мин:");
+        for (RateWindow window : RateWindow.values()) {
+            text.append(String.format("  %s %.1f", window.getDisplayName(), snapshot.getRidesPerMinute(window)));
+        }
+        RateWindow lastMinute = RateWindow.LAST_MINUTE;
+        text.append(String.format("  |  За минуту: назначено %d, сбоев %d, выручка %.2f руб, очередь %.1f",
+                snapshot.getAssignmentsInWindow(lastMinute),
+                snapshot.getFailuresInWindow(lastMinute),
+                snapshot.getRevenueInWindow(lastMinute),
+                snapshot.getAverageQueueDepth(lastMinute)));
+        return text.toString();
+    }
+
+    private String formatLatencies(RideLatencies latencies) {
+        StringBuilder text = new StringBuilder("Задержки p50/p99, мс:");
+        for (RideLatencies.Phase phase : RideLatencies.Phase.values()) {
+            LatencyHistogram histogram = latencies.get(phase);
+            text.append(String.format("  %s %.0f / %.0f", phase.getDisplayName(),
+                    histogram.getPercentileMillis(50), histogram.getPercentileMillis(99)));
+        }
+        return text.toString();
     }
 
     private void updateLabelValue(JLabel containerLabel, String newValue) {
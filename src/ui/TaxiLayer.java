@@ -0,0 +1,350 @@
+package ui;
+
+import model.Point;
+import model.TaxiState;
+import taxi.Taxi;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Слой такси. Положения берутся либо у самих такси, либо из таблицы
+ * участков FleetMotion с интерполяцией по времени кадра. Сначала
+ * отбрасываются машины вне видимой области, затем
+ * видимые раскладываются по ячейкам экрана: одиночная машина рисуется
+ * как раньше, несколько машин в одной ячейке — кругом с их числом. Когда
+ * видимых машин больше порога, вместо отдельных фигур строится растр
+ * плотности: число машин на блок пикселей и доля занятых в нём. Все
+ * буферы переиспользуются между кадрами, а круги групп и подписи с
+ * числом машин рисуются один раз в маленькие изображения и дальше только
+ * копируются: при тысяче групп на экране текст и контуры были основной
+ * частью кадра.
+ */
+final class TaxiLayer {
+    static final int CLUSTER_CELL = 24;
+    static final int DENSITY_THRESHOLD = 20_000;
+    private static final int DENSITY_PIXEL = 2;
+    private static final int TAXI_RADIUS = 8;
+    private static final int MAX_CLUSTER_RADIUS = 19;
+    private static final int CACHED_LABELS = 1024;
+
+    private static final Font TAXI_FONT = new Font("Arial", Font.BOLD, 12);
+    private static final Font CLUSTER_FONT = new Font("Arial", Font.BOLD, 11);
+    private static final Color CLUSTER_OUTLINE = new Color(40, 40, 40);
+    private static final Color[] STATE_COLORS = stateColors();
+
+    private int visibleCount;
+    private int[] visibleX = new int[1024];
+    private int[] visibleY = new int[1024];
+    private int[] visibleId = new int[1024];
+    private byte[] visibleState = new byte[1024];
+
+    private int[] cellCount = new int[0];
+    private int[] cellFirst = new int[0];
+    private int[] cellSumX = new int[0];
+    private int[] cellSumY = new int[0];
+    private int[] cellStates = new int[0];
+    private int[] touchedCells = new int[0];
+    private int touchedCount;
+
+    private BufferedImage densityImage;
+    private int[] densityPixels;
+    private int[] densityCounts;
+    private int[] densityBusy;
+    private int[] densityAlpha = new int[64];
+    private String[] labels = new String[0];
+    private final BufferedImage[][] clusterSprites =
+            new BufferedImage[TaxiState.values().length][MAX_CLUSTER_RADIUS + 1];
+    private final BufferedImage[] countLabels = new BufferedImage[CACHED_LABELS];
+    private FontMetrics clusterMetrics;
+
+    private int clusterCount;
+    private boolean densityMode;
+
+    private static Color[] stateColors() {
+        Color[] colors = new Color[TaxiState.values().length];
+        Arrays.fill(colors, Color.GRAY);
+        colors[TaxiState.AVAILABLE.ordinal()] = Color.GREEN;
+        colors[TaxiState.GOING_TO_CLIENT.ordinal()] = Color.YELLOW;
+        colors[TaxiState.TRANSPORTING.ordinal()] = Color.RED;
+        return colors;
+    }
+
+    void draw(Graphics2D g2d, List<Taxi> taxiFleet, MapViewport viewport, int width, int height) {
+        visibleCount = 0;
+        int size = taxiFleet.size();
+        for (int i = 0; i < size; i++) {
+            Taxi taxi = taxiFleet.get(i);
+            Point location = taxi.getCurrentLocation();
+            addIfVisible(viewport, taxi.getId(), location.getX(), location.getY(), taxi.getState().ordinal());
+        }
+        drawVisible(g2d, width, height);
+    }
+
+    /**
+     * Кадр анимации: положение каждого такси интерполируется по его
+     * текущему участку на момент now.
+     */
+    void draw(Graphics2D g2d, FleetMotion motion, long now, MapViewport viewport, int width, int height) {
+        visibleCount = 0;
+        AtomicReferenceArray<FleetMotion.Leg> legs = motion.getLegs();
+        int size = legs.length();
+        for (int i = 0; i < size; i++) {
+            FleetMotion.Leg leg = legs.get(i);
+            if (leg == null) {
+                continue;
+            }
+            double t = leg.progress(now);
+            addIfVisible(viewport, leg.taxiId,
+                    leg.fromX + (leg.toX - leg.fromX) * t,
+                    leg.fromY + (leg.toY - leg.fromY) * t,
+                    leg.state);
+        }
+        drawVisible(g2d, width, height);
+    }
+
+    private void addIfVisible(MapViewport viewport, int taxiId, double x, double y, int state) {
+        double marginX = TAXI_RADIUS / viewport.scaleX();
+        double marginY = TAXI_RADIUS / viewport.scaleY();
+        if (x < viewport.getMinX() - marginX || x > viewport.getMaxX() + marginX
+                || y < viewport.getMinY() - marginY || y > viewport.getMaxY() + marginY) {
+            return;
+        }
+
+        if (visibleCount == visibleX.length) {
+            int capacity = visibleCount * 2;
+            visibleX = Arrays.copyOf(visibleX, capacity);
+            visibleY = Arrays.copyOf(visibleY, capacity);
+            visibleId = Arrays.copyOf(visibleId, capacity);
+            visibleState = Arrays.copyOf(visibleState, capacity);
+        }
+        visibleX[visibleCount] = viewport.toScreenX(x);
+        visibleY[visibleCount] = viewport.toScreenY(y);
+        visibleId[visibleCount] = taxiId;
+        visibleState[visibleCount] = (byte) state;
+        visibleCount++;
+    }
+
+    private void drawVisible(Graphics2D g2d, int width, int height) {
+        densityMode = visibleCount > DENSITY_THRESHOLD;
+        if (densityMode) {
+            drawDensity(g2d, width, height);
+            clusterCount = 0;
+        } else {
+            drawClusters(g2d, width, height);
+        }
+    }
+
+    private void drawClusters(Graphics2D g2d, int width, int height) {
+        int columns = width / CLUSTER_CELL + 1;
+        int rows = height / CLUSTER_CELL + 1;
+        int cells = columns * rows;
+        int states = TaxiState.values().length;
+        if (cellCount.length < cells) {
+            cellCount = new int[cells];
+            cellFirst = new int[cells];
+            cellSumX = new int[cells];
+            cellSumY = new int[cells];
+            cellStates = new int[cells * states];
+            touchedCells = new int[cells];
+        }
+
+        touchedCount = 0;
+        for (int i = 0; i < visibleCount; i++) {
+            int column = Math.max(0, Math.min(columns - 1, visibleX[i] / CLUSTER_CELL));
+            int row = Math.max(0, Math.min(rows - 1, visibleY[i] / CLUSTER_CELL));
+            int cell = row * columns + column;
+            if (cellCount[cell] == 0) {
+                touchedCells[touchedCount++] = cell;
+                cellFirst[cell] = i;
+            }
+            cellCount[cell]++;
+            cellSumX[cell] += visibleX[i];
+            cellSumY[cell] += visibleY[i];
+            cellStates[cell * states + visibleState[i]]++;
+        }
+
+        clusterCount = 0;
+        for (int t = 0; t < touchedCount; t++) {
+            int cell = touchedCells[t];
+            int count = cellCount[cell];
+            if (count == 1) {
+                int i = cellFirst[cell];
+                drawTaxi(g2d, visibleId[i], visibleX[i], visibleY[i], visibleState[i]);
+            } else {
+                drawCluster(g2d, cell, count, states);
+                clusterCount++;
+            }
+
+            cellCount[cell] = 0;
+            cellSumX[cell] = 0;
+            cellSumY[cell] = 0;
+            Arrays.fill(cellStates, cell * states, cell * states + states, 0);
+        }
+    }
+
+    private void drawTaxi(Graphics2D g2d, int taxiId, int x, int y, int state) {
+        g2d.setColor(STATE_COLORS[state]);
+        g2d.fillOval(x - TAXI_RADIUS, y - TAXI_RADIUS, TAXI_RADIUS * 2, TAXI_RADIUS * 2);
+        g2d.setColor(Color.BLACK);
+        g2d.drawOval(x - TAXI_RADIUS, y - TAXI_RADIUS, TAXI_RADIUS * 2, TAXI_RADIUS * 2);
+        g2d.setFont(TAXI_FONT);
+        g2d.drawString(label(taxiId), x - 4, y + 4);
+    }
+
+    private String label(int taxiId) {
+        if (taxiId >= labels.length) {
+            labels = Arrays.copyOf(labels, Math.max(taxiId + 1, labels.length * 2));
+        }
+        String label = labels[taxiId];
+        if (label == null) {
+            label = Integer.toString(taxiId);
+            labels[taxiId] = label;
+        }
+        return label;
+    }
+
+    private void drawCluster(Graphics2D g2d, int cell, int count, int states) {
+        int dominant = 0;
+        for (int s = 1; s < states; s++) {
+            if (cellStates[cell * states + s] > cellStates[cell * states + dominant]) {
+                dominant = s;
+            }
+        }
+
+        int x = cellSumX[cell] / count;
+        int y = cellSumY[cell] / count;
+        int radius = 9 + Math.min(10, 31 - Integer.numberOfLeadingZeros(count));
+        g2d.drawImage(clusterSprite(dominant, radius), x - radius, y - radius, null);
+
+        if (count < CACHED_LABELS) {
+            BufferedImage label = countLabel(count);
+            int ascent = clusterMetrics.getAscent();
+            g2d.drawImage(label, x - label.getWidth() / 2, y + ascent / 2 - 1 - ascent, null);
+        } else {
+            String label = Integer.toString(count);
+            g2d.setColor(CLUSTER_OUTLINE);
+            g2d.setFont(CLUSTER_FONT);
+            FontMetrics metrics = g2d.getFontMetrics();
+            g2d.drawString(label, x - metrics.stringWidth(label) / 2, y + metrics.getAscent() / 2 - 1);
+        }
+    }
+
+    private BufferedImage clusterSprite(int state, int radius) {
+        BufferedImage sprite = clusterSprites[state][radius];
+        if (sprite == null) {
+            sprite = new BufferedImage(radius * 2 + 1, radius * 2 + 1, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g2d = sprite.createGraphics();
+            try {
+                g2d.setColor(STATE_COLORS[state]);
+                g2d.fillOval(0, 0, radius * 2, radius * 2);
+                g2d.setColor(CLUSTER_OUTLINE);
+                g2d.drawOval(0, 0, radius * 2, radius * 2);
+            } finally {
+                g2d.dispose();
+            }
+            clusterSprites[state][radius] = sprite;
+        }
+        return sprite;
+    }
+
+    private BufferedImage countLabel(int count) {
+        BufferedImage label = countLabels[count];
+        if (label == null) {
+            if (clusterMetrics == null) {
+                clusterMetrics = spriteGraphicsMetrics();
+            }
+            String text = Integer.toString(count);
+            label = new BufferedImage(Math.max(1, clusterMetrics.stringWidth(text)), clusterMetrics.getHeight(),
+                    BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g2d = label.createGraphics();
+            try {
+                g2d.setFont(CLUSTER_FONT);
+                g2d.setColor(CLUSTER_OUTLINE);
+                g2d.drawString(text, 0, clusterMetrics.getAscent());
+            } finally {
+                g2d.dispose();
+            }
+            countLabels[count] = label;
+        }
+        return label;
+    }
+
+    private static FontMetrics spriteGraphicsMetrics() {
+        Graphics2D g2d = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB_PRE).createGraphics();
+        try {
+            return g2d.getFontMetrics(CLUSTER_FONT);
+        } finally {
+            g2d.dispose();
+        }
+    }
+
+    private void drawDensity(Graphics2D g2d, int width, int height) {
+        int rasterWidth = (width + DENSITY_PIXEL - 1) / DENSITY_PIXEL;
+        int rasterHeight = (height + DENSITY_PIXEL - 1) / DENSITY_PIXEL;
+        if (densityImage == null || densityImage.getWidth() != rasterWidth || densityImage.getHeight() != rasterHeight) {
+            densityImage = new BufferedImage(rasterWidth, rasterHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+            densityPixels = ((DataBufferInt) densityImage.getRaster().getDataBuffer()).getData();
+            densityCounts = new int[rasterWidth * rasterHeight];
+            densityBusy = new int[rasterWidth * rasterHeight];
+        } else {
+            Arrays.fill(densityCounts, 0);
+            Arrays.fill(densityBusy, 0);
+        }
+
+        int available = TaxiState.AVAILABLE.ordinal();
+        int max = 0;
+        for (int i = 0; i < visibleCount; i++) {
+            int px = Math.max(0, Math.min(rasterWidth - 1, visibleX[i] / DENSITY_PIXEL));
+            int py = Math.max(0, Math.min(rasterHeight - 1, visibleY[i] / DENSITY_PIXEL));
+            int index = py * rasterWidth + px;
+            int count = ++densityCounts[index];
+            if (visibleState[i] != available) {
+                densityBusy[index]++;
+            }
+            if (count > max) {
+                max = count;
+            }
+        }
+
+        if (densityAlpha.length <= max) {
+            densityAlpha = new int[Integer.highestOneBit(max) << 1];
+        }
+        double logMax = Math.log1p(max);
+        for (int count = 1; count <= max; count++) {
+            densityAlpha[count] = 90 + (int) (165 * Math.log1p(count) / logMax);
+        }
+
+        for (int i = 0; i < densityPixels.length; i++) {
+            int count = densityCounts[i];
+            if (count == 0) {
+                densityPixels[i] = 0;
+                continue;
+            }
+            int alpha = densityAlpha[count];
+            int busy = densityBusy[i] * 255 / count;
+            int red = (40 + busy * 200 / 255) * alpha / 255;
+            int green = (190 - busy * 170 / 255) * alpha / 255;
+            int blue = 30 * alpha / 255;
+            densityPixels[i] = alpha << 24 | red << 16 | green << 8 | blue;
+        }
+
+        g2d.drawImage(densityImage, 0, 0, rasterWidth * DENSITY_PIXEL, rasterHeight * DENSITY_PIXEL, null);
+    }
+
+    int getVisibleCount() {
+        return visibleCount;
+    }
+
+    int getClusterCount() {
+        return clusterCount;
+    }
+
+    boolean isDensityMode() {
+        return densityMode;
+    }
+}
@@ -1,9 +1,20 @@
 package ui;
 
 import dispatcher.Dispatcher;
+import dispatcher.OrderQueue;
+import events.EventBus;
+import events.HistoryConsumer;
+import events.JournalConsumer;
+import events.StatisticsConsumer;
+import export.HistoryExporter;
 import generator.ClientGenerator;
+import jfr.FlightRecording;
+import journal.EventJournal;
 import model.RideRequest;
 import model.TaxiType;
+import replay.ReplayRecorder;
+import simulation.SimulationClock;
+import statistics.DemandHeatmap;
 import statistics.Statistics;
 import statistics.RideHistory;
 import taxi.Taxi;
@@ -26,36 +37,53 @@ public class TaxiSystemUI extends JFrame {
     private final HistoryPanel historyPanel;
     private final ControlPanel controlPanel;
 
-    private final PriorityBlockingQueue<RideRequest> orderQueue;
+    private final OrderQueue orderQueue;
     private final ConcurrentHashMap<Integer, BlockingQueue<RideRequest>> taxiQueues;
     private final List<Taxi> taxiFleet;
     private final ExecutorService executorService;
     private final Statistics statistics;
     private final RideHistory history;
+    private final EventBus eventBus;
+    private final SimulationClock simulationClock;
 
     private Dispatcher dispatcher;
     private ClientGenerator clientGenerator;
-    private javax.swing.Timer uiUpdateTimer;
+    private final RefreshScheduler refreshScheduler;
+    private final FleetMotion fleetMotion;
+    private final ReplayRecorder replayRecorder;
+    private final ReplayController replayController;
+    private final List<JPanel> replaySlots;
+    private boolean replayMode;
+    private FlightRecording flightRecording;
+    private EventJournal journal;
+    private HistoryExporter exporter;
 
     public TaxiSystemUI() {
         super("Система управления беспилотными такси v2.0");
 
-        this.orderQueue = new PriorityBlockingQueue<>(100);
+        this.orderQueue = new OrderQueue(100);
         this.taxiQueues = new ConcurrentHashMap<>();
         this.taxiFleet = new ArrayList<>();
         this.executorService = Executors.newCachedThreadPool();
         this.statistics = new Statistics();
         this.history = new RideHistory();
+        this.eventBus = new EventBus();
+        this.simulationClock = new SimulationClock();
+        this.refreshScheduler = new RefreshScheduler();
+        this.fleetMotion = new FleetMotion();
 
-        mapPanel = new CityMapPanel(taxiFleet, orderQueue);
+        mapPanel = new CityMapPanel(taxiFleet, orderQueue, statistics.getHeatmap());
         statsPanel = new StatisticsPanel(statistics);
         orderPanel = new OrderQueuePanel(orderQueue);
-        taxiPanel = new TaxiListPanel(taxiFleet);
+        taxiPanel = new TaxiListPanel(taxiFleet, statistics);
         historyPanel = new HistoryPanel(history);
         controlPanel = new ControlPanel(this);
+        replayRecorder = new ReplayRecorder();
+        replayController = new ReplayController(replayRecorder.getLog(), statistics, controlPanel);
+        replaySlots = new ArrayList<>();
 
         setupUI();
-        setupUpdateTimer();
+        setupRefresh();
         initializeTaxiFleet();
     }
 
@@ -65,16 +93,16 @@ public class TaxiSystemUI extends JFrame {
         setLocationRelativeTo(null);
         setLayout(new BorderLayout(10, 10));
 
-        add(statsPanel, BorderLayout.NORTH);
+        add(replaySlot(statsPanel, replayController.getStatsPanel()), BorderLayout.NORTH);
 
         JPanel centerPanel = new JPanel(new GridLayout(1, 2, 10, 0));
-        centerPanel.add(mapPanel);
-        centerPanel.add(historyPanel);
+        centerPanel.add(replaySlot(mapPanel, replayController.getMapPanel()));
+        centerPanel.add(replaySlot(historyPanel, replayController.getHistoryPanel()));
         add(centerPanel, BorderLayout.CENTER);
 
         JPanel rightPanel = new JPanel(new GridLayout(2, 1, 5, 5));
         rightPanel.setPreferredSize(new Dimension(350, WINDOW_HEIGHT));
-        rightPanel.add(orderPanel);
+        rightPanel.add(replaySlot(orderPanel, replayController.getOrderPanel()));
         rightPanel.add(taxiPanel);
         add(rightPanel, BorderLayout.EAST);
 
@@ -97,29 +125,26 @@ public class TaxiSystemUI extends JFrame {
         });
     }
 
-    private int updateCounter = 0;
-
-    private void setupUpdateTimer() {
-        uiUpdateTimer = new javax.swing.Timer(500, e -> updateUI());
+    /**
+     * Место панели, где живой экземпляр в режиме повтора подменяется
+     * экземпляром повтора.
+     */
+    private JPanel replaySlot(JComponent live, JComponent replay) {
+        JPanel slot = new JPanel(new CardLayout());
+        slot.add(live, "live");
+        slot.add(replay, "replay");
+        replaySlots.add(slot);
+        return slot;
     }
 
-    private void updateUI() {
-        try {
-            updateCounter++;
-
-            mapPanel.repaint();
-
-            if (updateCounter % 2 == 0) {
-                statsPanel.updateStats();
-            }
-
-            if (updateCounter % 3 == 0) {
-                orderPanel.updateOrders();
-                taxiPanel.updateTaxis();
-                historyPanel.updateHistory();
-            }
-        } catch (Exception e) {
-        }
+    private void setupRefresh() {
+        mapPanel.setMotion(fleetMotion);
+        mapPanel.setAnimated(true);
+        refreshScheduler.register(RefreshScheduler.MAP, mapPanel::refresh);
+        refreshScheduler.register(RefreshScheduler.STATS, statsPanel::updateStats);
+        refreshScheduler.register(RefreshScheduler.ORDERS, orderPanel::updateOrders);
+        refreshScheduler.register(RefreshScheduler.TAXIS, taxiPanel::updateTaxis);
+        refreshScheduler.register(RefreshScheduler.HISTORY, historyPanel::updateHistory);
     }
 
     private void initializeTaxiFleet() {
@@ -140,45 +165,121 @@ public class TaxiSystemUI extends JFrame {
     private void createTaxi(int id, TaxiType type, Random random) {
         model.Point initialLocation = new model.Point(random.nextDouble() * 100, random.nextDouble() * 100);
         BlockingQueue<RideRequest> taxiQueue = new LinkedBlockingQueue<>();
-        Taxi taxi = new Taxi(id, type, initialLocation, taxiQueue, statistics, history);
+        Taxi taxi = new Taxi(id, type, initialLocation, taxiQueue, statistics, eventBus, simulationClock);
 
         taxiFleet.add(taxi);
         taxiQueues.put(id, taxiQueue);
+        fleetMotion.place(id, taxi.getState(), initialLocation);
+        replayRecorder.place(id, taxi.getState(), initialLocation);
     }
 
     public void startSystem() {
         new Thread(() -> {
+            flightRecording = FlightRecording.startIfRequested();
+
+            eventBus.addConsumer(new StatisticsConsumer(statistics));
+            eventBus.addConsumer(new HistoryConsumer(history));
+            eventBus.addConsumer(new RefreshConsumer(refreshScheduler, fleetMotion));
+            eventBus.addConsumer(replayRecorder);
+
+            journal = EventJournal.openIfRequested();
+            if (journal != null) {
+                eventBus.addConsumer(new JournalConsumer(journal));
+            }
+            exporter = HistoryExporter.openIfRequested();
+            if (exporter != null) {
+                eventBus.addConsumer(exporter);
+            }
+            eventBus.start();
+            SwingUtilities.invokeLater(refreshScheduler::start);
+
             for (Taxi taxi : taxiFleet) {
                 executorService.execute(taxi);
             }
 
-            dispatcher = new Dispatcher(orderQueue, taxiFleet, taxiQueues, statistics, history);
+            dispatcher = new Dispatcher(orderQueue, taxiFleet, taxiQueues, statistics, eventBus, simulationClock);
             executorService.execute(dispatcher);
 
-            clientGenerator = new ClientGenerator(orderQueue, 2000, 1000, history);
+            clientGenerator = new ClientGenerator(orderQueue, 2000, 1000, eventBus, simulationClock);
             executorService.execute(clientGenerator);
 
-            SwingUtilities.invokeLater(() -> {
-                uiUpdateTimer.start();
-                controlPanel.onSystemStarted();
-            });
+            SwingUtilities.invokeLater(controlPanel::onSystemStarted);
         }, "System-Starter").start();
     }
 
+    public void setHeatmapLayer(DemandHeatmap.Layer layer) {
+        mapPanel.setHeatmapLayer(layer);
+    }
+
+    public void setAnimationEnabled(boolean enabled) {
+        mapPanel.setAnimated(enabled);
+    }
+
+    /**
+     * Останавливает время симуляции: такси замирают посреди участка,
+     * диспетчер и генератор ждут. Панели продолжают обновляться.
+     */
     public void pauseSystem() {
-        uiUpdateTimer.stop();
+        simulationClock.pause();
         controlPanel.onSystemPaused();
     }
 
     public void resumeSystem() {
-        uiUpdateTimer.start();
+        simulationClock.resume();
         controlPanel.onSystemResumed();
     }
 
-    public void shutdown() {
-        if (uiUpdateTimer != null) {
-            uiUpdateTimer.stop();
+    public void stepSystem() {
+        simulationClock.step();
+    }
+
+    public void setSimulationSpeed(double speed) {
+        simulationClock.setSpeed(speed);
+    }
+
+    /**
+     * Переключает окно между живыми панелями и повтором записанных событий.
+     * Пока открыт повтор, живые панели не обновляются, а запись продолжается.
+     */
+    public void setReplayMode(boolean active) {
+        if (active == replayMode) {
+            return;
         }
+        if (active) {
+            if (!replayController.enter()) {
+                controlPanel.onReplayModeChanged(false);
+                return;
+            }
+            refreshScheduler.pause();
+        } else {
+            replayController.exit();
+            refreshScheduler.resume();
+        }
+        replayMode = active;
+        for (JPanel slot : replaySlots) {
+            ((CardLayout) slot.getLayout()).show(slot, active ? "replay" : "live");
+        }
+        controlPanel.onReplayModeChanged(active);
+    }
+
+    public void toggleReplayPlayback() {
+        if (replayMode) {
+            replayController.togglePlayback();
+        }
+    }
+
+    public void setReplaySpeed(double speed) {
+        replayController.setSpeed(speed);
+    }
+
+    public void seekReplay(double fraction) {
+        if (replayMode) {
+            replayController.seekFraction(fraction);
+        }
+    }
+
+    public void shutdown() {
+        refreshScheduler.stop();
 
         new Thread(() -> {
             try {
@@ -199,6 +300,20 @@ public class TaxiSystemUI extends JFrame {
                     executorService.shutdownNow();
                 }
 
+                boolean consumersStopped = eventBus.shutdown();
+
+                if (exporter != null && consumersStopped) {
+                    exporter.close();
+                }
+
+                if (flightRecording != null) {
+                    flightRecording.stop();
+                }
+
+                if (journal != null && consumersStopped) {
+                    journal.close();
+                }
+
                 showFinalStatistics();
             } catch (Exception e) {
                 executorService.shutdownNow();
@@ -211,6 +326,7 @@ public class TaxiSystemUI extends JFrame {
     private void showFinalStatistics() {
         statistics.printSummary();
         statistics.printTaxiStats();
+        statistics.printSlowestOrders();
     }
 
     public static void main(String[] args) {
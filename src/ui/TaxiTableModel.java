@@ -0,0 +1,162 @@
+package ui;
+
+import model.Point;
+import model.TaxiState;
+import model.TaxiType;
+import statistics.TaxiStatsTable;
+import taxi.Taxi;
+
+import java.awt.*;
+import java.util.List;
+
+/**
+ * Таблица такси. Снимок хранится в массивах примитивов; координаты
+ * округляются до десятых, как и в подписи, чтобы движение в пределах
+ * одной отображаемой позиции не порождало событий обновления.
+ */
+class TaxiTableModel extends SnapshotTableModel {
+    private static final Color AVAILABLE_COLOR = new Color(200, 255, 200);
+    private static final Color GOING_COLOR = new Color(255, 255, 200);
+    private static final Color TRANSPORTING_COLOR = new Color(255, 220, 220);
+    private static final TaxiType[] TYPES = TaxiType.values();
+    private static final TaxiState[] STATES = TaxiState.values();
+
+    private Rows current = new Rows(0);
+    private Rows previous = new Rows(0);
+    private int available;
+    private int busy;
+
+    TaxiTableModel() {
+        super("ID", "Тип", "Состояние", "Локация", "Загрузка");
+    }
+
+    void update(List<Taxi> taxiFleet, TaxiStatsTable.Snapshot stats) {
+        int size = taxiFleet.size();
+        Rows next = previous.capacity() >= size ? previous : new Rows(size);
+        available = 0;
+        busy = 0;
+
+        for (int i = 0; i < size; i++) {
+            Taxi taxi = taxiFleet.get(i);
+            TaxiState state = taxi.getState();
+            Point location = taxi.getCurrentLocation();
+            int statsIndex = stats.indexOf(taxi.getId());
+
+            next.ids[i] = taxi.getId();
+            next.types[i] = (byte) taxi.getType().ordinal();
+            next.states[i] = (byte) state.ordinal();
+            next.xTenths[i] = (int) Math.round(location.getX() * 10);
+            next.yTenths[i] = (int) Math.round(location.getY() * 10);
+            next.utilization[i] = statsIndex >= 0
+                    ? (short) Math.round(stats.getUtilization(statsIndex) * 100)
+                    : -1;
+
+            if (state == TaxiState.AVAILABLE) {
+                available++;
+            } else if (state == TaxiState.GOING_TO_CLIENT || state == TaxiState.TRANSPORTING) {
+                busy++;
+            }
+        }
+        next.size = size;
+
+        previous = current;
+        current = next;
+        fireSnapshotChanged(previous.size, current.size);
+    }
+
+    int getAvailable() {
+        return available;
+    }
+
+    int getBusy() {
+        return busy;
+    }
+
+    @Override
+    public int getRowCount() {
+        return current.size;
+    }
+
+    @Override
+    boolean sameRow(int row) {
+        return previous.ids[row] == current.ids[row]
+                && previous.types[row] == current.types[row]
+                && previous.states[row] == current.states[row]
+                && previous.xTenths[row] == current.xTenths[row]
+                && previous.yTenths[row] == current.yTenths[row]
+                && previous.utilization[row] == current.utilization[row];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        switch (column) {
+            case 0:
+                return current.ids[row];
+            case 1:
+                return TYPES[current.types[row]];
+            case 2:
+                return STATES[current.states[row]];
+            case 3:
+                return new Point(current.xTenths[row] / 10.0, current.yTenths[row] / 10.0);
+            default:
+                return current.utilization[row];
+        }
+    }
+
+    @Override
+    String formatCell(int row, int column) {
+        switch (column) {
+            case 0:
+                return "#" + current.ids[row];
+            case 1:
+                return TYPES[current.types[row]].getDisplayName();
+            case 2:
+                return STATES[current.states[row]].getDisplayName();
+            case 3:
+                return String.format("(%.1f, %.1f)", current.xTenths[row] / 10.0, current.yTenths[row] / 10.0);
+            default:
+                short utilization = current.utilization[row];
+                return utilization >= 0 ? utilization + "%" : "-";
+        }
+    }
+
+    @Override
+    Color cellBackground(int row, int column) {
+        if (column != 2) {
+            return Color.WHITE;
+        }
+        switch (STATES[current.states[row]]) {
+            case AVAILABLE:
+                return AVAILABLE_COLOR;
+            case GOING_TO_CLIENT:
+                return GOING_COLOR;
+            case TRANSPORTING:
+                return TRANSPORTING_COLOR;
+            default:
+                return Color.LIGHT_GRAY;
+        }
+    }
+
+    private static final class Rows {
+        final int[] ids;
+        final byte[] types;
+        final byte[] states;
+        final int[] xTenths;
+        final int[] yTenths;
+        final short[] utilization;
+        int size;
+
+        Rows(int capacity) {
+            ids = new int[capacity];
+            types = new byte[capacity];
+            states = new byte[capacity];
+            xTenths = new int[capacity];
+            yTenths = new int[capacity];
+            utilization = new short[capacity];
+        }
+
+        int capacity() {
+            return ids.length;
+        }
+    }
+}